@@ -0,0 +1,46 @@
+package io.shubham0204;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Computes the password messages sent while authenticating: the MD5 response and a SCRAM-SHA-256
+ * client-final-message whose derived keys are already cached, as they are on a reconnect.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthBenchmark {
+
+    private static final byte[] MD5_SALT = {0x12, 0x34, 0x56, 0x78};
+    private static final String CLIENT_NONCE = "rOprNGfwEbeRWgbNEkqO";
+    private static final byte[] MECHANISMS = "SCRAM-SHA-256\0\0".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SERVER_FIRST =
+            "r=rOprNGfwEbeRWgbNEkqO%hvYDpWUa2RaTCAfuxFIlj)hNlF$k0,s=W22ZaJ0SNY7soEsUEjb6gQ==,i=4096"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public PgMessage md5PasswordMessage() {
+        return PgClient.buildPasswordMessage(MD5_SALT, "postgres", "secret-password");
+    }
+
+    @Benchmark
+    public PgMessage scramCachedKeys() {
+        var scram = new PgScramAuthenticator("postgres", "secret-password", CLIENT_NONCE);
+        scram.clientFirstMessage(ByteBuffer.wrap(MECHANISMS));
+        return scram.clientFinalMessage(ByteBuffer.wrap(SERVER_FIRST));
+    }
+}
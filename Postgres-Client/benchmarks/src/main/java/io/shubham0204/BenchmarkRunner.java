@@ -0,0 +1,25 @@
+package io.shubham0204;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached, so every result comes with its allocation
+ * rate ({@code gc.alloc.rate.norm} is bytes per operation). Accepts the usual JMH command line,
+ * e.g. {@code java -jar target/benchmarks.jar CStringUtils -f 1}.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        var options =
+                new OptionsBuilder()
+                        .parent(new CommandLineOptions(args))
+                        .addProfiler(GCProfiler.class)
+                        .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,84 @@
+package io.shubham0204;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decodes the column names of a 16-column RowDescription from a direct buffer, as read by {@link
+ * PgTransport}, and encodes a StartupMessage parameter. {@code byteArrayOutputStream} is the
+ * byte-at-a-time decoder {@link CStringUtils} used to have, kept as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CStringUtilsBenchmark {
+
+    private static final int COLUMNS = 16;
+
+    private ByteBuffer names;
+    private ByteBuffer encodeBuffer;
+
+    @Setup
+    public void setup() {
+        var builder = new StringBuilder();
+        for (int i = 0; i < COLUMNS; i++) {
+            builder.append("customer_column_").append(i).append('\0');
+        }
+        byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+        names = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        encodeBuffer = ByteBuffer.allocateDirect(256);
+    }
+
+    @Benchmark
+    public void byteArrayOutputStream(Blackhole blackhole) {
+        names.position(0);
+        for (int i = 0; i < COLUMNS; i++) {
+            var baos = new ByteArrayOutputStream();
+            byte b;
+            while ((b = names.get()) != 0) {
+                baos.write(b);
+            }
+            blackhole.consume(baos.toString());
+        }
+    }
+
+    @Benchmark
+    public void getCString(Blackhole blackhole) {
+        names.position(0);
+        for (int i = 0; i < COLUMNS; i++) {
+            blackhole.consume(CStringUtils.getCString(names));
+        }
+    }
+
+    @Benchmark
+    public void getInternedCString(Blackhole blackhole) {
+        names.position(0);
+        for (int i = 0; i < COLUMNS; i++) {
+            blackhole.consume(CStringUtils.getInternedCString(names));
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer putCString() {
+        encodeBuffer.clear();
+        CStringUtils.putCString(encodeBuffer, "application_name");
+        CStringUtils.putCString(encodeBuffer, "Postgres-Client benchmark");
+        return encodeBuffer;
+    }
+}
@@ -0,0 +1,90 @@
+package io.shubham0204;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads and writes one DataRow message through the stream-based {@link
+ * PgMessage#read(DataInputStream)} / {@link PgMessage#write(DataOutputStream)} and through the
+ * buffer-based framing used by {@link PgTransport}. Payload sizes cover a narrow row and a row with
+ * a few kilobytes of text.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PgMessageBenchmark {
+
+    @Param({"64", "8192"})
+    public int payloadSize;
+
+    private PgMessage message;
+    private ByteArrayInputStream input;
+    private DataInputStream dataInput;
+    private ByteArrayOutputStream output;
+    private DataOutputStream dataOutput;
+    private ByteBuffer framed;
+    private ByteBuffer encodeBuffer;
+
+    @Setup
+    public void setup() {
+        byte[] payload = new byte[payloadSize];
+        for (int i = 0; i < payloadSize; i++) {
+            payload[i] = (byte) ('a' + i % 26);
+        }
+        message = new PgMessage(PgMessageType.ROW_DATA, payload);
+        encodeBuffer = ByteBuffer.allocateDirect(PgMessage.HEADER_LENGTH + payloadSize);
+        message.encode(encodeBuffer);
+
+        byte[] encoded = new byte[encodeBuffer.position()];
+        encodeBuffer.flip().get(encoded);
+        input = new ByteArrayInputStream(encoded);
+        dataInput = new DataInputStream(input);
+        output = new ByteArrayOutputStream(encoded.length);
+        dataOutput = new DataOutputStream(output);
+        framed = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+    }
+
+    @Benchmark
+    public PgMessage readStream() {
+        input.reset();
+        return PgMessage.read(dataInput);
+    }
+
+    @Benchmark
+    public int writeStream() {
+        output.reset();
+        message.write(dataOutput);
+        return output.size();
+    }
+
+    @Benchmark
+    public PgMessage frame() {
+        framed.position(0);
+        return PgMessage.frame(framed);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        encodeBuffer.clear();
+        message.encode(encodeBuffer);
+        return encodeBuffer;
+    }
+}
@@ -0,0 +1,168 @@
+package io.shubham0204;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses the RowDescription of a typical ten-column table and reads every column of a DataRow
+ * through the flyweight {@link Row}, with all columns in text format and with binary format for
+ * the columns that have a binary decoder. The mapping benchmarks compare {@link PgRowMapper} with
+ * calling the record constructor by hand.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowParsingBenchmark {
+
+    private static final String[] NAMES = {
+        "id", "customer_id", "order_total", "quantity", "is_paid",
+        "status", "shipping_address", "notes", "created_at", "updated_at"
+    };
+    private static final int[] TYPES = {
+        PgTypes.INT8, PgTypes.INT4, PgTypes.FLOAT8, PgTypes.INT4, PgTypes.BOOL,
+        25, 25, 25, PgTypes.TIMESTAMP, PgTypes.TIMESTAMP
+    };
+
+    private ByteBuffer descriptionPayload;
+    private RowDescription textDescription;
+    private RowDescription binaryDescription;
+    private ByteBuffer textRow;
+    private ByteBuffer binaryRow;
+    private final Row row = new Row();
+    private PgRowMapper<Order> orderMapper;
+
+    public record Order(
+            long id,
+            int customerId,
+            double orderTotal,
+            int quantity,
+            boolean isPaid,
+            String status,
+            String shippingAddress,
+            String notes,
+            LocalDateTime createdAt,
+            LocalDateTime updatedAt) {}
+
+    @Setup
+    public void setup() {
+        descriptionPayload = rowDescription(PgFrontendMessages.TEXT_FORMAT);
+        textDescription = RowDescription.parse(descriptionPayload.duplicate());
+        binaryDescription = RowDescription.parse(rowDescription(PgFrontendMessages.BINARY_FORMAT));
+
+        var text = ByteBuffer.allocateDirect(512);
+        for (String value :
+                new String[] {
+                    "1234567890", "42", "1999.95", "3", "t", "shipped",
+                    "221B Baker Street, London NW1 6XE", "leave at the door",
+                    "2024-03-01 12:34:56.789", "2024-03-02 08:00:00"
+                }) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            text.putInt(bytes.length).put(bytes);
+        }
+        textRow = rowPayload(text);
+
+        var binary = ByteBuffer.allocateDirect(512);
+        binary.putInt(8).putLong(1234567890L);
+        binary.putInt(4).putInt(42);
+        binary.putInt(8).putDouble(1999.95);
+        binary.putInt(4).putInt(3);
+        binary.putInt(1).put((byte) 1);
+        for (String value :
+                new String[] {"shipped", "221B Baker Street, London NW1 6XE", "leave at the door"}) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            binary.putInt(bytes.length).put(bytes);
+        }
+        binary.putInt(8).putLong(762_525_296_789_000L);
+        binary.putInt(8).putLong(762_595_200_000_000L);
+        binaryRow = rowPayload(binary);
+        orderMapper = PgRowMapper.of(Order.class, binaryDescription);
+    }
+
+    @Benchmark
+    public RowDescription parseRowDescription() {
+        return RowDescription.parse(descriptionPayload.duplicate());
+    }
+
+    @Benchmark
+    public void readTextRow(Blackhole blackhole) {
+        readRow(textDescription, textRow, blackhole);
+    }
+
+    @Benchmark
+    public void readBinaryRow(Blackhole blackhole) {
+        readRow(binaryDescription, binaryRow, blackhole);
+    }
+
+    @Benchmark
+    public Order mapBinaryRowByHand() {
+        row.reset(binaryDescription, binaryRow.duplicate());
+        return new Order(
+                row.getLong(0),
+                row.getInt(1),
+                row.getDouble(2),
+                row.getInt(3),
+                row.getBoolean(4),
+                row.getString(5),
+                row.getString(6),
+                row.getString(7),
+                row.getTimestamp(8),
+                row.getTimestamp(9));
+    }
+
+    @Benchmark
+    public Order mapBinaryRowWithMapper() {
+        row.reset(binaryDescription, binaryRow.duplicate());
+        return orderMapper.map(row);
+    }
+
+    private void readRow(RowDescription description, ByteBuffer payload, Blackhole blackhole) {
+        row.reset(description, payload.duplicate());
+        blackhole.consume(row.getLong(0));
+        blackhole.consume(row.getInt(1));
+        blackhole.consume(row.getDouble(2));
+        blackhole.consume(row.getInt(3));
+        blackhole.consume(row.getBoolean(4));
+        blackhole.consume(row.getString(5));
+        blackhole.consume(row.getString(6));
+        blackhole.consume(row.getString(7));
+        blackhole.consume(row.getTimestamp(8));
+        blackhole.consume(row.getTimestamp(9));
+    }
+
+    private static ByteBuffer rowDescription(short format) {
+        var payload = ByteBuffer.allocateDirect(512);
+        payload.putShort((short) NAMES.length);
+        for (int i = 0; i < NAMES.length; i++) {
+            CStringUtils.putCString(payload, NAMES[i]);
+            payload.putInt(16384).putShort((short) (i + 1)).putInt(TYPES[i]);
+            // like PgTypes.resultFormats(), only types with a binary decoder are sent in binary
+            short columnFormat =
+                    PgTypes.hasBinaryDecoder(TYPES[i]) ? format : PgFrontendMessages.TEXT_FORMAT;
+            payload.putShort((short) -1).putInt(-1).putShort(columnFormat);
+        }
+        return payload.flip();
+    }
+
+    private static ByteBuffer rowPayload(ByteBuffer columns) {
+        columns.flip();
+        var payload = ByteBuffer.allocateDirect(2 + columns.remaining());
+        payload.putShort((short) NAMES.length).put(columns);
+        return payload.flip();
+    }
+}
@@ -1,21 +1,171 @@
 package io.shubham0204;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
+/**
+ * Reads and writes the NUL-terminated strings used throughout the protocol.
+ *
+ * <p>The terminator is searched for directly in the buffer, a word at a time for the direct buffers
+ * of {@link PgTransport}, and the string is decoded from the backing array of heap buffers or from
+ * a per-thread scratch array, so no intermediate stream is allocated. ASCII input, which covers
+ * nearly all identifiers and command tags, skips the UTF-8 decoder. Column names and other short
+ * strings which repeat for every query can be read with {@link #getInternedCString(ByteBuffer)},
+ * which returns the same {@link String} instance for the same bytes.
+ */
 public class CStringUtils {
 
+    static final int INTERN_CACHE_SIZE = 256;
+    static final int MAX_INTERNED_LENGTH = 64;
+
+    private record InternedString(byte[] bytes, String value) {}
+
+    private static final InternedString[] internCache = new InternedString[INTERN_CACHE_SIZE];
+    private static final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[256]);
+
     public static String getCString(ByteBuffer buf) {
-        var baos = new ByteArrayOutputStream();
-        byte b;
-        while ((b = buf.get()) != 0) {
-            baos.write(b);
+        int start = buf.position();
+        int length = indexOfNul(buf, start) - start;
+        String value;
+        if (buf.hasArray()) {
+            value = decode(buf.array(), buf.arrayOffset() + start, length);
+        } else {
+            value = decode(copyToScratch(buf, start, length), 0, length);
+        }
+        buf.position(start + length + 1);
+        return value;
+    }
+
+    /**
+     * Decodes {@code length} bytes of UTF-8 at the absolute {@code offset}, e.g. a text field of a
+     * DataRow, without moving the buffer and without an intermediate copy of the bytes.
+     */
+    static String getString(ByteBuffer buf, int offset, int length) {
+        if (buf.hasArray()) {
+            return decode(buf.array(), buf.arrayOffset() + offset, length);
+        }
+        return decode(copyToScratch(buf, offset, length), 0, length);
+    }
+
+    /**
+     * Same as {@link #getCString(ByteBuffer)}, but repeated strings of up to {@value
+     * #MAX_INTERNED_LENGTH} bytes are served from a small cache instead of being decoded again.
+     */
+    public static String getInternedCString(ByteBuffer buf) {
+        int start = buf.position();
+        int length = indexOfNul(buf, start) - start;
+        if (length > MAX_INTERNED_LENGTH) {
+            return getCString(buf);
+        }
+        // hash the length and the first and last eight bytes, enough to tell column names apart
+        long hash = length;
+        if (length >= Long.BYTES) {
+            hash = 31 * hash + buf.getLong(start);
+            hash = 31 * hash + buf.getLong(start + length - Long.BYTES);
+        } else {
+            for (int i = start; i < start + length; i++) {
+                hash = 31 * hash + buf.get(i);
+            }
+        }
+        int slot = (int) (hash ^ (hash >>> 32) ^ (hash >>> 16)) & (INTERN_CACHE_SIZE - 1);
+        // entries are immutable, so a racy read sees either a complete entry or a stale one
+        InternedString entry = internCache[slot];
+        String value;
+        if (entry != null && matches(entry.bytes(), buf, start, length)) {
+            value = entry.value();
+        } else {
+            byte[] copy = new byte[length];
+            buf.get(start, copy);
+            value = decode(copy, 0, length);
+            internCache[slot] = new InternedString(copy, value);
         }
-        return baos.toString();
+        buf.position(start + length + 1);
+        return value;
     }
 
     public static void putCString(ByteBuffer buf, String str) {
-        buf.put(str.getBytes());
+        int length = str.length();
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            if (str.charAt(i) >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            for (int i = 0; i < length; i++) {
+                buf.put((byte) str.charAt(i));
+            }
+        } else {
+            buf.put(str.getBytes(StandardCharsets.UTF_8));
+        }
         buf.put((byte) 0);
     }
+
+    /** Compares {@code bytes} with {@code length} bytes of the buffer at the absolute start. */
+    private static boolean matches(byte[] bytes, ByteBuffer buf, int start, int length) {
+        if (bytes.length != length) {
+            return false;
+        }
+        if (buf.hasArray()) {
+            int offset = buf.arrayOffset() + start;
+            return Arrays.equals(bytes, 0, length, buf.array(), offset, offset + length);
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != buf.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOfNul(ByteBuffer buf, int from) {
+        int limit = buf.limit();
+        int i = from;
+        if (buf.hasArray()) {
+            byte[] array = buf.array();
+            int offset = buf.arrayOffset();
+            for (; i < limit; i++) {
+                if (array[offset + i] == 0) {
+                    return i;
+                }
+            }
+        } else {
+            // test eight bytes at a time for a zero byte, then locate it within the word
+            for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+                long word = buf.getLong(i);
+                if (((word - 0x0101010101010101L) & ~word & 0x8080808080808080L) != 0) {
+                    break;
+                }
+            }
+            for (; i < limit; i++) {
+                if (buf.get(i) == 0) {
+                    return i;
+                }
+            }
+        }
+        throw new BufferUnderflowException();
+    }
+
+    private static byte[] copyToScratch(ByteBuffer buf, int start, int length) {
+        byte[] bytes = scratch.get();
+        if (bytes.length < length) {
+            bytes = new byte[Integer.highestOneBit(length) << 1];
+            scratch.set(bytes);
+        }
+        buf.get(start, bytes, 0, length);
+        return bytes;
+    }
+
+    private static String decode(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] < 0) {
+                return new String(bytes, offset, length, StandardCharsets.UTF_8);
+            }
+        }
+        // ASCII is a subset of Latin-1, which is copied into a compact string without decoding
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
 }
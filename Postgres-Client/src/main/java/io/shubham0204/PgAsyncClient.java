@@ -0,0 +1,366 @@
+package io.shubham0204;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A non-blocking connection driven by a {@link PgEventLoop}, so that a few loop threads can serve
+ * hundreds of connections.
+ *
+ * <p>Queries may be submitted from any thread and are written immediately, so several queries can
+ * be in flight on one connection; their results arrive in order. Incoming bytes are framed with the
+ * same {@link PgMessage#frame(ByteBuffer)} logic as {@link PgTransport}, which leaves a partially
+ * received message in the buffer until the rest arrives; like there, a buffer grown for a large
+ * message shrinks back to the default size afterwards. Futures are completed on the loop thread,
+ * so callbacks attached to them must not block.
+ */
+public class PgAsyncClient implements AutoCloseable {
+
+    private enum State {
+        CONNECTING,
+        AUTHENTICATING,
+        READY,
+        CLOSED
+    }
+
+    private static class PendingQuery {
+        final PgResultCollector collector = new PgResultCollector();
+        final CompletableFuture<PgQueryResult> future = new CompletableFuture<>();
+        PgQueryResult result;
+        PgServerException error;
+    }
+
+    private final PgEventLoop loop;
+    private final SocketChannel channel;
+    private final String database;
+    private final String user;
+    private final String password;
+    private final CompletableFuture<PgAsyncClient> connected = new CompletableFuture<>();
+    private final ArrayDeque<PendingQuery> pending = new ArrayDeque<>();
+    private final PgEventLoop.Handler handler =
+            new PgEventLoop.Handler() {
+                @Override
+                public void onReady(SelectionKey key) throws IOException {
+                    handleReady(key);
+                }
+
+                @Override
+                public void onFailure(Throwable cause) {
+                    fail(cause);
+                }
+            };
+    private SelectionKey key;
+    private ByteBuffer inbound = PgBufferPool.acquire(PgTransport.DEFAULT_BUFFER_SIZE);
+    private ByteBuffer outbound = PgBufferPool.acquire(PgTransport.DEFAULT_BUFFER_SIZE);
+    private State state = State.CONNECTING;
+    // why the connection was closed, reported to queries submitted afterwards
+    private Throwable failure;
+    private PgScramAuthenticator scram;
+
+    private PgAsyncClient(
+            PgEventLoop loop,
+            SocketChannel channel,
+            String database,
+            String user,
+            String password) {
+        this.loop = loop;
+        this.channel = channel;
+        this.database = database;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     *
+     * Connects and authenticates without blocking the calling thread.
+     *
+     * @param loop event loop driving the connection
+     * @param host host-name of the Postgres DB server
+     * @param port port of the Postgres DB server
+     * @param database Name of the database to connect
+     * @param user User name
+     * @param password Password (plain-text)
+     * @return a future completed once the server is ready for queries
+     */
+    public static CompletableFuture<PgAsyncClient> connect(
+            PgEventLoop loop,
+            String host,
+            int port,
+            String database,
+            String user,
+            String password) {
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(
+                    new RuntimeException("I/O failed in connect(): %s".formatted(e.getMessage())));
+        }
+        var client = new PgAsyncClient(loop, channel, database, user, password);
+        var address = new InetSocketAddress(host, port);
+        loop.execute(
+                () -> {
+                    try {
+                        client.key =
+                                loop.register(channel, SelectionKey.OP_CONNECT, client.handler);
+                        if (channel.connect(address)) {
+                            client.handleConnected();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        client.fail(e);
+                    }
+                });
+        return client.connected;
+    }
+
+    /**
+     *
+     * Executes the given query with the simple query protocol.
+     *
+     * @param query Postgres SQL query to be executed
+     * @return a future completed with the result of the last statement in the query,
+     *     or with a {@link PgServerException}
+     */
+    public CompletableFuture<PgQueryResult> query(String query) {
+        return submit(List.of(PgClient.buildQueryMessage(query)));
+    }
+
+    /**
+     *
+     * Executes the given query with the extended query protocol, binding
+     * {@code params} to the placeholders $1, $2, ... of the query. The unnamed
+     * statement is used, so nothing is cached on the server.
+     *
+     * @param query Postgres SQL query to be executed
+     * @param params values for the placeholders, sent as text except for {@code byte[]}
+     * @return a future completed with the result, or with a {@link PgServerException}
+     */
+    public CompletableFuture<PgQueryResult> query(String query, Object... params) {
+        return submit(
+                List.of(
+                        PgFrontendMessages.parse("", query),
+                        PgFrontendMessages.bind("", "", params, new short[0]),
+                        PgFrontendMessages.describe('P', ""),
+                        PgFrontendMessages.execute("", 0),
+                        PgFrontendMessages.sync()));
+    }
+
+    /** Closes the connection, failing queries still in flight. */
+    @Override
+    public void close() {
+        if (loop.inEventLoop()) {
+            fail(new RuntimeException("Connection was closed"));
+        } else {
+            loop.execute(() -> fail(new RuntimeException("Connection was closed")));
+        }
+    }
+
+    private CompletableFuture<PgQueryResult> submit(List<PgMessage> messages) {
+        var query = new PendingQuery();
+        loop.execute(
+                () -> {
+                    if (state == State.CLOSED) {
+                        query.future.completeExceptionally(
+                                new RuntimeException(
+                                        "Connection is closed: %s"
+                                                .formatted(failure.getMessage())));
+                        return;
+                    }
+                    if (state != State.READY) {
+                        query.future.completeExceptionally(
+                                new RuntimeException("Connection is %s".formatted(state)));
+                        return;
+                    }
+                    pending.add(query);
+                    try {
+                        messages.forEach(this::encode);
+                        flush();
+                    } catch (IOException | RuntimeException e) {
+                        fail(e);
+                    }
+                });
+        return query.future;
+    }
+
+    private void handleReady(SelectionKey key) throws IOException {
+        if (key.isConnectable() && channel.finishConnect()) {
+            handleConnected();
+            return;
+        }
+        if (key.isWritable()) {
+            flush();
+        }
+        if (key.isReadable()) {
+            readMessages();
+        }
+    }
+
+    private void handleConnected() throws IOException {
+        state = State.AUTHENTICATING;
+        key.interestOps(SelectionKey.OP_READ);
+        ensureOutboundCapacity(256);
+        outbound.put(PgClient.buildStartupMessage(database, user));
+        flush();
+    }
+
+    private void readMessages() throws IOException {
+        if (channel.read(inbound) == -1) {
+            throw new IOException("Connection closed by the Postgres DB server");
+        }
+        inbound.flip();
+        PgMessage msg;
+        while (state != State.CLOSED && (msg = PgMessage.frame(inbound)) != null) {
+            handleMessage(msg);
+        }
+        if (state == State.CLOSED) {
+            return;
+        }
+        int frameLength = PgMessage.frameLength(inbound);
+        if (frameLength > inbound.capacity()
+                || (frameLength <= PgTransport.DEFAULT_BUFFER_SIZE
+                        && inbound.capacity() > PgTransport.DEFAULT_BUFFER_SIZE)) {
+            // make room for a message larger than the buffer, or shrink back once a small one
+            // follows; the unread bytes are part of that message, so they fit either way
+            int capacity = Math.max(frameLength, PgTransport.DEFAULT_BUFFER_SIZE);
+            var resized = PgBufferPool.acquire(capacity);
+            resized.put(inbound);
+            PgBufferPool.release(inbound);
+            inbound = resized;
+        } else {
+            inbound.compact();
+        }
+    }
+
+    private void handleMessage(PgMessage msg) throws IOException {
+        if (state == State.AUTHENTICATING) {
+            handleAuthenticationMessage(msg);
+            return;
+        }
+        PendingQuery query = pending.peek();
+        if (query == null) {
+            if (msg.type() == PgMessageType.ERROR) {
+                // e.g. FATAL when the server shuts down, after which it closes the connection
+                fail(PgServerException.fromErrorResponse(msg.payload()));
+            }
+            return;
+        }
+        switch (msg.type()) {
+            case ROW_DESC -> query.collector.onRowDescription(msg);
+            case ROW_DATA -> query.collector.onDataRow(msg);
+            case COMMAND_COMPLETE -> query.result = query.collector.onCommandComplete(msg);
+            case EMPTY_QUERY_RESPONSE -> query.result = query.collector.onEmptyQuery();
+            case ERROR -> query.error = PgServerException.fromErrorResponse(msg.payload());
+            case READY_FOR_QUERY -> {
+                pending.poll();
+                if (query.error != null) {
+                    query.future.completeExceptionally(query.error);
+                } else {
+                    query.future.complete(query.result);
+                }
+            }
+            default -> {}
+        }
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-flow.html#PROTOCOL-FLOW-START-UP">Start-up</a> message flow.
+     */
+    private void handleAuthenticationMessage(PgMessage msg) throws IOException {
+        switch (msg.type()) {
+            case AUTHENTICATION_REQUEST -> {
+                int code = PgBackendMessages.authenticationCode(msg.payload());
+                var data = msg.payload().duplicate().position(4);
+                if (code == PgClient.AUTH_MD5_PASSWORD) {
+                    byte[] salt = new byte[4];
+                    msg.payload().get(4, salt);
+                    encode(PgClient.buildPasswordMessage(salt, user, password));
+                    flush();
+                } else if (code == PgClient.AUTH_SASL) {
+                    scram = new PgScramAuthenticator(user, password);
+                    encode(scram.clientFirstMessage(data));
+                    flush();
+                } else if (code == PgClient.AUTH_SASL_CONTINUE && scram != null) {
+                    encode(scram.clientFinalMessage(data));
+                    flush();
+                } else if (code == PgClient.AUTH_SASL_FINAL && scram != null) {
+                    scram.verifyServerFinal(data);
+                } else if (code == PgClient.AUTH_OK) {
+                    if (scram != null) {
+                        scram.checkServerVerified();
+                    }
+                } else {
+                    throw new IOException(
+                            "Unsupported authentication request code: %d".formatted(code));
+                }
+            }
+            case ERROR -> throw PgServerException.fromErrorResponse(msg.payload());
+            case READY_FOR_QUERY -> {
+                state = State.READY;
+                connected.complete(this);
+            }
+            default -> {}
+        }
+    }
+
+    private void encode(PgMessage message) {
+        ensureOutboundCapacity(PgMessage.HEADER_LENGTH + message.length());
+        message.encode(outbound);
+    }
+
+    private void ensureOutboundCapacity(int required) {
+        if (outbound.remaining() < required) {
+            var grown = PgBufferPool.acquire(outbound.position() + required);
+            grown.put(outbound.flip());
+            PgBufferPool.release(outbound);
+            outbound = grown;
+        }
+    }
+
+    /** Writes as much of the outbound buffer as the socket accepts, else waits for OP_WRITE. */
+    private void flush() throws IOException {
+        outbound.flip();
+        channel.write(outbound);
+        outbound.compact();
+        if (outbound.position() == 0 && outbound.capacity() > PgTransport.DEFAULT_BUFFER_SIZE) {
+            // only keep a large buffer while large messages are written
+            PgBufferPool.release(outbound);
+            outbound = PgBufferPool.acquire(PgTransport.DEFAULT_BUFFER_SIZE);
+        }
+        int interestOps = outbound.position() > 0
+                ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                : SelectionKey.OP_READ;
+        if (key.interestOps() != interestOps) {
+            key.interestOps(interestOps);
+        }
+    }
+
+    private void fail(Throwable cause) {
+        if (state == State.CLOSED) {
+            return;
+        }
+        state = State.CLOSED;
+        failure = cause;
+        connected.completeExceptionally(cause);
+        PendingQuery query;
+        while ((query = pending.poll()) != null) {
+            query.future.completeExceptionally(cause);
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // already failing
+        }
+        // nothing reads or writes the buffers once the state is CLOSED
+        PgBufferPool.release(inbound);
+        PgBufferPool.release(outbound);
+    }
+}
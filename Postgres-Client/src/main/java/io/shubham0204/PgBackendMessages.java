@@ -0,0 +1,80 @@
+package io.shubham0204;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Decoders for the payloads of backend messages. They read with absolute indexes or from a
+ * duplicate, so the payload, usually a view into the transport's read buffer, is neither copied
+ * nor moved. Messages with more structure have their own parsers: {@link RowDescription#parse},
+ * {@link Row} for DataRow, {@link PgServerException#fromErrorResponse} for ErrorResponse and
+ * NoticeResponse, and {@link PgNotification#fromNotificationResponse}.
+ */
+final class PgBackendMessages {
+
+    private PgBackendMessages() {}
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-AUTHENTICATIONOK">Authentication</a> message formats.
+     * Returns the request code, e.g. 0 for AuthenticationOk or 5 for AuthenticationMD5Password.
+     */
+    static int authenticationCode(ByteBuffer payload) {
+        return payload.getInt(payload.position());
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-COMMANDCOMPLETE">CommandComplete</a> message format.
+     */
+    static String commandTag(ByteBuffer payload) {
+        return CStringUtils.getCString(payload.duplicate());
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-READYFORQUERY">ReadyForQuery</a> message format.
+     * Returns 'I' when idle, 'T' in a transaction block or 'E' in a failed transaction block.
+     */
+    static char transactionStatus(ByteBuffer payload) {
+        return (char) payload.get(payload.position());
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-BACKENDKEYDATA">BackendKeyData</a> message format.
+     */
+    static int backendProcessId(ByteBuffer payload) {
+        return payload.getInt(payload.position());
+    }
+
+    static int backendSecretKey(ByteBuffer payload) {
+        return payload.getInt(payload.position() + 4);
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-PARAMETERSTATUS">ParameterStatus</a> message format.
+     */
+    static Map.Entry<String, String> parameterStatus(ByteBuffer payload) {
+        var buf = payload.duplicate();
+        String name = CStringUtils.getInternedCString(buf);
+        return Map.entry(name, CStringUtils.getCString(buf));
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-PARAMETERDESCRIPTION">ParameterDescription</a> message format.
+     * Returns the type OID of each parameter.
+     */
+    static int[] parameterTypes(ByteBuffer payload) {
+        int start = payload.position();
+        var types = new int[payload.getShort(start)];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = payload.getInt(start + 2 + 4 * i);
+        }
+        return types;
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-NEGOTIATEPROTOCOLVERSION">NegotiateProtocolVersion</a> message format.
+     * Returns the newest minor protocol version the server supports.
+     */
+    static int negotiatedMinorVersion(ByteBuffer payload) {
+        return payload.getInt(payload.position());
+    }
+}
@@ -0,0 +1,203 @@
+package io.shubham0204;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A process-wide pool of direct buffers in power-of-two size classes, from {@value #MIN_CAPACITY}
+ * bytes up to {@value #MAX_POOLED_CAPACITY} bytes, which back the read and write buffers of the
+ * transports. Messages are framed in place in these buffers, so once every connection holds
+ * buffers large enough for its messages, receiving and sending allocates nothing; a message which
+ * outgrows its buffer swaps it for one of the next size class instead of allocating and zeroing
+ * a fresh direct buffer.
+ *
+ * <p>Every {@link #acquire(int)} must be paired with exactly one {@link #release(ByteBuffer)},
+ * after which the buffer must not be used, as it may already back another connection. Buffers
+ * larger than {@value #MAX_POOLED_CAPACITY} bytes are not kept, so one huge message does not pin
+ * memory in the pool.
+ *
+ * <p>With leak detection, which is on when assertions are enabled (as in tests) or with {@code
+ * -Dio.shubham0204.bufferLeakDetection=true}, each acquired buffer is tracked with a phantom
+ * reference. A buffer garbage-collected without being released is logged at SEVERE level with the
+ * stack trace of its acquisition, and releasing a buffer twice throws.
+ */
+final class PgBufferPool {
+
+    static final int MIN_CAPACITY = PgTransport.DEFAULT_BUFFER_SIZE;
+    static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+    // buffers kept per size class, at most 1 MiB of memory per class
+    private static final int MAX_POOLED_BYTES_PER_CLASS = 1024 * 1024;
+    private static final int MIN_CLASS_SHIFT = Integer.numberOfTrailingZeros(MIN_CAPACITY);
+    private static final int CLASS_COUNT =
+            Integer.numberOfTrailingZeros(MAX_POOLED_CAPACITY) - MIN_CLASS_SHIFT + 1;
+
+    static final boolean LEAK_DETECTION =
+            Boolean.getBoolean("io.shubham0204.bufferLeakDetection")
+                    || PgBufferPool.class.desiredAssertionStatus();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final ConcurrentLinkedQueue<ByteBuffer>[] classes =
+            new ConcurrentLinkedQueue[CLASS_COUNT];
+
+    private static final AtomicInteger[] classSizes = new AtomicInteger[CLASS_COUNT];
+
+    static {
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            classes[i] = new ConcurrentLinkedQueue<>();
+            classSizes[i] = new AtomicInteger();
+        }
+    }
+
+    private static final ReferenceQueue<ByteBuffer> collected = new ReferenceQueue<>();
+
+    /** An acquired buffer, found again on release by identity hash code and referent. */
+    private static final class Tracker extends PhantomReference<ByteBuffer> {
+        final int identityHash;
+        final Throwable acquiredAt;
+
+        Tracker(ByteBuffer buffer, Throwable acquiredAt) {
+            super(buffer, collected);
+            this.identityHash = System.identityHashCode(buffer);
+            this.acquiredAt = acquiredAt;
+        }
+    }
+
+    private static final ConcurrentHashMap<Integer, List<Tracker>> outstanding =
+            new ConcurrentHashMap<>();
+    private static final LongAdder leaks = new LongAdder();
+    private static final Logger logger = Logger.getLogger(PgBufferPool.class.getName());
+
+    private PgBufferPool() {}
+
+    /**
+     * Returns a cleared direct buffer with a capacity of at least {@code minCapacity}, rounded up
+     * to the size class.
+     */
+    static ByteBuffer acquire(int minCapacity) {
+        int capacity = capacityFor(minCapacity);
+        int sizeClass = sizeClassOf(capacity);
+        ByteBuffer buffer = null;
+        if (sizeClass >= 0) {
+            buffer = classes[sizeClass].poll();
+            if (buffer != null) {
+                classSizes[sizeClass].decrementAndGet();
+                buffer.clear();
+            }
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(capacity);
+        }
+        if (LEAK_DETECTION) {
+            track(buffer);
+        }
+        return buffer;
+    }
+
+    /** Returns a buffer obtained from {@link #acquire(int)} to the pool. */
+    static void release(ByteBuffer buffer) {
+        if (LEAK_DETECTION) {
+            untrack(buffer);
+        }
+        int sizeClass = sizeClassOf(buffer.capacity());
+        if (sizeClass < 0) {
+            return;
+        }
+        int maxPooled = MAX_POOLED_BYTES_PER_CLASS / buffer.capacity();
+        if (classSizes[sizeClass].incrementAndGet() <= maxPooled) {
+            classes[sizeClass].offer(buffer);
+        } else {
+            classSizes[sizeClass].decrementAndGet();
+        }
+    }
+
+    /** Returns the capacity of the size class holding {@code minCapacity} bytes. */
+    static int capacityFor(int minCapacity) {
+        if (minCapacity <= MIN_CAPACITY) {
+            return MIN_CAPACITY;
+        }
+        return Integer.highestOneBit(minCapacity - 1) << 1;
+    }
+
+    /** Number of buffers acquired and not released yet; only counted with leak detection. */
+    static int outstanding() {
+        int count = 0;
+        for (List<Tracker> trackers : outstanding.values()) {
+            count += trackers.size();
+        }
+        return count;
+    }
+
+    /** Number of buffers found garbage-collected without being released so far. */
+    static long leaks() {
+        reportLeaks();
+        return leaks.sum();
+    }
+
+    /** Returns the index of the size class, or -1 if buffers of this capacity are not pooled. */
+    private static int sizeClassOf(int capacity) {
+        if (capacity < MIN_CAPACITY
+                || capacity > MAX_POOLED_CAPACITY
+                || Integer.bitCount(capacity) != 1) {
+            return -1;
+        }
+        return Integer.numberOfTrailingZeros(capacity) - MIN_CLASS_SHIFT;
+    }
+
+    private static void track(ByteBuffer buffer) {
+        reportLeaks();
+        var tracker = new Tracker(buffer, new Throwable("buffer acquired here"));
+        outstanding.compute(
+                tracker.identityHash,
+                (hash, trackers) -> {
+                    var updated = trackers == null ? new ArrayList<Tracker>(1) : trackers;
+                    updated.add(tracker);
+                    return updated;
+                });
+    }
+
+    private static void untrack(ByteBuffer buffer) {
+        var found = new boolean[1];
+        outstanding.computeIfPresent(
+                System.identityHashCode(buffer),
+                (hash, trackers) -> {
+                    for (int i = 0; i < trackers.size(); i++) {
+                        if (trackers.get(i).refersTo(buffer)) {
+                            trackers.remove(i).clear();
+                            found[0] = true;
+                            break;
+                        }
+                    }
+                    return trackers.isEmpty() ? null : trackers;
+                });
+        if (!found[0]) {
+            throw new IllegalStateException("Buffer released twice or not acquired from the pool");
+        }
+    }
+
+    private static void reportLeaks() {
+        Tracker tracker;
+        while ((tracker = (Tracker) collected.poll()) != null) {
+            var leaked = tracker;
+            outstanding.computeIfPresent(
+                    leaked.identityHash,
+                    (hash, trackers) -> {
+                        trackers.remove(leaked);
+                        return trackers.isEmpty() ? null : trackers;
+                    });
+            leaks.increment();
+            logger.log(
+                    Level.SEVERE,
+                    "A buffer was garbage-collected without PgBufferPool.release()",
+                    leaked.acquiredAt);
+        }
+    }
+}
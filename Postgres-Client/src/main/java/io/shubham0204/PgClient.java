@@ -1,25 +1,70 @@
 package io.shubham0204;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class PgClient {
 
-    private DataInputStream socketInputStream;
-    private DataOutputStream socketOutputStream;
-    private Socket connectionSocket;
+    static final int AUTH_OK = 0;
+    static final int AUTH_MD5_PASSWORD = 5;
+    static final int AUTH_SASL = 10;
+    static final int AUTH_SASL_CONTINUE = 11;
+    static final int AUTH_SASL_FINAL = 12;
+    static final int CANCEL_REQUEST_CODE = 80877102;
+
+    // fires the deadlines of all clients; the CancelRequests are sent from virtual threads
+    private static final ScheduledExecutorService deadlineTimer =
+            Executors.newSingleThreadScheduledExecutor(
+                    r -> Thread.ofPlatform().name("pg-query-deadline").daemon().unstarted(r));
+
+    private PgTransport transport;
+    private String host;
+    private int port;
+    private int backendProcessId;
+    private int backendSecretKey;
+    private volatile boolean hasBackendKey = false;
+    private long queryTimeoutNanos = 0;
+    private ScheduledFuture<?> deadline;
+    private long querySequence = 0;
+    // sequence number of the query whose deadline is armed, 0 if none
+    private final AtomicLong deadlineQuery = new AtomicLong();
+    private boolean readyForQuery = false;
+    private char transactionStatus = 'I';
+    private RowCursor openCursor;
+    private boolean binaryResults = true;
+    private int fetchSize = 0;
+    private int streamingThreshold = 0;
+    private Path spillDirectory;
+    private PgMetricsListener metrics = PgMetricsListener.NONE;
+    private final Map<String, String> serverParameters = new HashMap<>();
+    private final PgStatementCache statementCache =
+            new PgStatementCache(PgStatementCache.DEFAULT_CAPACITY);
     private final Logger logger = Logger.getLogger(PgClient.class.getName());
 
     public PgClient() {
     }
 
+    PgClient(PgTransport transport) {
+        this.transport = transport;
+        this.readyForQuery = true;
+    }
+
     /**
      *
      * Connects to the given Postgres DB at host:port
@@ -28,41 +73,84 @@ public class PgClient {
      * @param port port of the Postgres DB server
      */
     public void connect(String host, int port) {
-        try {
-            this.connectionSocket = new Socket(host, port);
-            this.socketInputStream = new DataInputStream(connectionSocket.getInputStream());
-            this.socketOutputStream = new DataOutputStream(connectionSocket.getOutputStream());
-            logger.log(
-                    Level.INFO,
-                    "connected to Postgres DB server on host %s and port %d".formatted(host, port));
-        } catch (IOException e) {
-            throw new RuntimeException("I/O failed when running connect(): %s".formatted(e.getMessage()));
-        }
+        this.transport = PgTransport.open(host, port);
+        this.host = host;
+        this.port = port;
+        this.transport.setMetricsListener(this.metrics);
+        logger.log(
+                Level.INFO,
+                "connected to Postgres DB server on host %s and port %d".formatted(host, port));
     }
 
     /**
      *
      * Authenticate against the DB with given credentials
-     * using MD5 user/password method.
+     * using the MD5 or SCRAM-SHA-256 user/password method,
+     * whichever the server asks for.
      *
      * @param database Name of the database to connect
      * @param user User name
      * @param password Password (plain-text)
+     * @throws PgServerException if the server rejects the credentials
      */
     public void authenticate(String database, String user, String password) {
+        long startNanos = System.nanoTime();
         sendStartupMessage(database, user);
-        PgMessage authRequestMessage = PgMessage.read(this.socketInputStream);
-        sendMD5AuthMessage(authRequestMessage, user, password);
-        PgMessage authOkMessage = PgMessage.read(this.socketInputStream);
-        logger.log(Level.INFO, "AuthenticationOk message received");
+        PgScramAuthenticator scram = null;
+        while (true) {
+            PgMessage msg = this.transport.read();
+            if (msg.type() == PgMessageType.ERROR) {
+                throw PgServerException.fromErrorResponse(msg.payload());
+            }
+            if (msg.type() == PgMessageType.NEGOTIATE_PROTOCOL_VERSION) {
+                int minorVersion = PgBackendMessages.negotiatedMinorVersion(msg.payload());
+                logger.log(Level.INFO, "server supports protocol 3.%d".formatted(minorVersion));
+                continue;
+            }
+            if (msg.type() != PgMessageType.AUTHENTICATION_REQUEST) {
+                // e.g. a NoticeResponse, or a type byte outside the protocol
+                logger.log(Level.FINE, "Discarding message type: " + msg.type());
+                continue;
+            }
+            int code = PgBackendMessages.authenticationCode(msg.payload());
+            var data = msg.payload().duplicate().position(4);
+            if (code == AUTH_OK) {
+                if (scram != null) {
+                    scram.checkServerVerified();
+                }
+                logger.log(Level.INFO, "AuthenticationOk message received");
+                break;
+            } else if (code == AUTH_MD5_PASSWORD) {
+                sendMD5AuthMessage(msg, user, password);
+            } else if (code == AUTH_SASL) {
+                logger.log(Level.INFO, "AuthenticationSASL message received");
+                scram = new PgScramAuthenticator(user, password);
+                this.transport.write(scram.clientFirstMessage(data));
+            } else if (code == AUTH_SASL_CONTINUE && scram != null) {
+                this.transport.write(scram.clientFinalMessage(data));
+            } else if (code == AUTH_SASL_FINAL && scram != null) {
+                scram.verifyServerFinal(data);
+            } else {
+                throw new RuntimeException(
+                        "Unsupported authentication request code: %d".formatted(code));
+            }
+        }
 
         while (true) {
-            PgMessage msg = PgMessage.read(this.socketInputStream);
+            PgMessage msg = this.transport.read();
             if (msg.type() == PgMessageType.READY_FOR_QUERY) {
+                handleReadyForQueryMessage(msg);
+                this.metrics.authenticated(System.nanoTime() - startNanos);
                 logger.log(Level.INFO, "READY_FOR_QUERY received, authentication complete");
                 break;
+            } else if (msg.type() == PgMessageType.BACKEND_KEY_DATA) {
+                handleBackendKeyDataMessage(msg);
+            } else if (msg.type() == PgMessageType.PARAMETER_STATUS) {
+                var parameter = PgBackendMessages.parameterStatus(msg.payload());
+                this.serverParameters.put(parameter.getKey(), parameter.getValue());
+            } else {
+                logger.log(Level.FINE, "Discarding message type: " + msg.type());
             }
-            logger.log(Level.FINE, "Discarding message type: " + msg.type());
         }
     }
 
@@ -73,60 +161,459 @@ public class PgClient {
      * @param query Postgres SQL query to be executed
      */
     public void executeQuery(String query) {
-        buildQueryMessage(query).write(this.socketOutputStream);
+        closeOpenCursor();
+        long startNanos = System.nanoTime();
+        this.readyForQuery = false;
+        this.transport.write(buildQueryMessage(query));
+        startDeadline();
+        RowDescription description = null;
+        Row row = new Row();
+        long rows = 0;
+        PgServerException error = null;
         while (true) {
-            PgMessage msg = PgMessage.read(this.socketInputStream);
+            PgMessage msg = this.transport.read();
             if (msg.type() == PgMessageType.ROW_DESC) {
-                handleRowDescMessage(msg);
+                description = RowDescription.parse(msg.payload());
+                printHeader(description);
             } else if (msg.type() == PgMessageType.ROW_DATA) {
-                handleRowDataMessage(msg);
+                row.reset(description, msg.payload());
+                printRow(row);
+                rows++;
             } else if (msg.type() == PgMessageType.COMMAND_COMPLETE) {
-                System.out.println("\n" + new String(msg.data()));
+                System.out.println("\n" + PgBackendMessages.commandTag(msg.payload()));
             } else if (msg.type() == PgMessageType.READY_FOR_QUERY) {
+                handleReadyForQueryMessage(msg);
                 break;
             } else if (msg.type() == PgMessageType.ERROR) {
+                // the server still sends ReadyForQuery after an error, keep reading until then
+                error = PgServerException.fromErrorResponse(msg.payload());
                 System.out.println("Query error: " + new String(msg.data()));
-                break;
             }
         }
+        this.metrics.queryCompleted(query, System.nanoTime() - startNanos, rows, error);
     }
 
-    public void close() {
+    /**
+     *
+     * Executes the given query with the extended query protocol and prints
+     * its result, see {@link #query(String, Object...)}.
+     *
+     * @param query Postgres SQL query to be executed
+     * @param params values for the placeholders, sent as text except for {@code byte[]}
+     * @throws PgServerException if the server reports an error
+     */
+    public void executePrepared(String query, Object... params) {
+        try (RowCursor cursor = query(query, params)) {
+            if (cursor.description() != null) {
+                printHeader(cursor.description());
+            }
+            while (cursor.next()) {
+                printRow(cursor.row());
+            }
+            System.out.println("\n" + cursor.commandTag());
+        }
+    }
+
+    /**
+     *
+     * Executes the given query with the extended query protocol,
+     * binding {@code params} to the placeholders $1, $2, ... of the query.
+     * The query is parsed once per connection and kept as a named prepared
+     * statement, so repeated executions skip parsing and planning on the server.
+     * Rows are read from the connection one at a time as the returned cursor
+     * advances. Starting another query closes the cursor. With a fetch size set
+     * by {@link #setFetchSize(int)}, the server sends the rows in batches of that
+     * size, each requested only when the cursor has consumed the previous one.
+     *
+     * @param query Postgres SQL query to be executed
+     * @param params values for the placeholders, sent as text except for {@code byte[]}
+     * @throws PgServerException if the server rejects the query
+     */
+    public RowCursor query(String query, Object... params) {
+        return openCursor(query, params, this.fetchSize);
+    }
+
+    /**
+     *
+     * Returns a publisher which runs the query once it has a subscriber with demand,
+     * and emits a copy of every row, see {@link #publish(Function, String, Object...)}.
+     *
+     * @param query Postgres SQL query to be executed
+     * @param params values for the placeholders, sent as text except for {@code byte[]}
+     */
+    public Flow.Publisher<Row> publish(String query, Object... params) {
+        return new PgRowPublisher<>(this, Row::copy, query, params);
+    }
+
+    /**
+     *
+     * Returns a publisher which runs the query once it has a subscriber with demand,
+     * and emits every row converted by {@code mapper}. The mapper sees the cursor's
+     * flyweight {@link Row}, so rows need not be copied to be turned into records
+     * or values. Subscriber demand drives the portal fetch
+     * size, so rows are only read from the socket as they are requested, see
+     * {@link PgRowPublisher}. The connection must not be used for anything else
+     * until the publisher completed, failed or was cancelled.
+     *
+     * @param mapper converts each row to the emitted item
+     * @param query Postgres SQL query to be executed
+     * @param params values for the placeholders, sent as text except for {@code byte[]}
+     */
+    public <T> Flow.Publisher<T> publish(Function<Row, T> mapper, String query, Object... params) {
+        return new PgRowPublisher<>(this, mapper, query, params);
+    }
+
+    /** Runs the query like {@link #query(String, Object...)}, with the given fetch size. */
+    RowCursor openCursor(String query, Object[] params, int fetchSize) {
+        closeOpenCursor();
+        long startNanos = System.nanoTime();
+        var statement = this.statementCache.get(query);
+        boolean parse = statement == null;
+        if (parse) {
+            statement = this.statementCache.create(query);
+        }
+        this.readyForQuery = false;
+        for (String evictedName : this.statementCache.drainEvicted()) {
+            this.transport.queue(PgFrontendMessages.close('S', evictedName));
+        }
+        if (parse) {
+            this.transport.queue(PgFrontendMessages.parse(statement.name, query));
+        }
+        short[] resultFormats =
+                this.binaryResults && statement.resultFormats != null
+                        ? statement.resultFormats
+                        : new short[0];
+        this.transport.queue(PgFrontendMessages.bind("", statement.name, params, resultFormats));
+        this.transport.queue(PgFrontendMessages.describe('P', ""));
+        if (fetchSize > 0) {
+            // no Sync yet, it would close the portal before the remaining rows are fetched
+            this.transport.queue(PgFrontendMessages.execute("", fetchSize));
+            this.transport.queue(PgFrontendMessages.flush());
+        } else {
+            this.transport.queue(PgFrontendMessages.execute("", 0));
+            this.transport.queue(PgFrontendMessages.sync());
+        }
+        this.transport.flush();
+        startDeadline();
+
+        var cursor = new RowCursor(this, statement, parse, "", fetchSize, startNanos);
+        if (!cursor.isDone()) {
+            this.openCursor = cursor;
+        }
+        return cursor;
+    }
+
+    /**
+     *
+     * Executes the given query like {@link #query(String, Object...)} and maps
+     * every row to an instance of {@code type}, a record or a class with a no-arg
+     * constructor, see {@link PgRowMapper}.
+     *
+     * <pre>{@code
+     * record User(long id, String name, Integer age) {}
+     * List<User> users = client.queryAs(User.class, "SELECT id, name, age FROM users");
+     * }</pre>
+     *
+     * @param type class of the returned elements
+     * @param query Postgres SQL query to be executed
+     * @param params values for the placeholders, sent as text except for {@code byte[]}
+     * @throws PgServerException if the server rejects the query
+     * @throws IllegalArgumentException if the columns cannot be mapped to {@code type}
+     */
+    public <R> List<R> queryAs(Class<R> type, String query, Object... params) {
+        var results = new ArrayList<R>();
+        try (RowCursor cursor = query(query, params)) {
+            if (cursor.description() == null) {
+                return results;
+            }
+            var mapper = PgRowMapper.of(type, cursor.description());
+            while (cursor.next()) {
+                results.add(mapper.map(cursor.row()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     *
+     * Starts a {@code COPY ... FROM STDIN} command for bulk loading.
+     *
+     * <pre>{@code
+     * try (PgCopyWriter writer = client.copyIn("COPY users (name, email, age) FROM STDIN")) {
+     *     writer.writeRow("Alice Johnson", "alice@example.com", 28);
+     * }
+     * }</pre>
+     *
+     * @param copyQuery a COPY command reading from STDIN
+     * @return a stream which sends the written data in CopyData messages
+     * @throws PgServerException if the server rejects the command
+     */
+    public PgCopyWriter copyIn(String copyQuery) {
+        startCopy(copyQuery, PgMessageType.COPY_IN_RESPONSE);
+        return new PgCopyWriter(this, PgCopyWriter.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     *
+     * Starts a {@code COPY ... TO STDOUT} command for bulk export.
+     *
+     * @param copyQuery a COPY command writing to STDOUT
+     * @return a stream over the data of the CopyData messages
+     * @throws PgServerException if the server rejects the command
+     */
+    public PgCopyReader copyOut(String copyQuery) {
+        startCopy(copyQuery, PgMessageType.COPY_OUT_RESPONSE);
+        return new PgCopyReader(this);
+    }
+
+    /**
+     *
+     * Enables or disables binary result formats for {@link #query(String, Object...)}.
+     * When enabled (the default), int2/int4/int8, float4/float8, bool, timestamp,
+     * timestamptz, uuid and bytea columns are requested in binary format from the
+     * second execution of a cached statement onwards, once their types are known.
+     * This saves the server from formatting them as text and lets {@link Row}
+     * decode them without parsing.
+     */
+    public void setBinaryResults(boolean binaryResults) {
+        this.binaryResults = binaryResults;
+    }
+
+    /**
+     *
+     * Starts a pipeline of extended-protocol queries which are sent together
+     * with a single Sync. If one query fails, the server skips the rest of the
+     * pipeline.
+     */
+    public PgPipeline pipeline() {
+        return new PgPipeline(this, false);
+    }
+
+    /**
+     *
+     * Starts a pipeline of extended-protocol queries which are sent together.
+     *
+     * @param syncEachQuery if true, every query is followed by its own Sync so that
+     *                      a failing query does not abort the queries after it
+     */
+    public PgPipeline pipeline(boolean syncEachQuery) {
+        return new PgPipeline(this, syncEachQuery);
+    }
+
+    /**
+     *
+     * Sets the number of rows fetched per round trip by the cursors returned from
+     * {@link #query(String, Object...)}. The default of 0 has the server send the
+     * whole result at once; a positive size keeps the rows in flight bounded no
+     * matter how large the result is. See {@link RowCursor#setFetchSize(int)}.
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) {
+            throw new IllegalArgumentException("Fetch size must be >= 0");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     *
+     * Sets the size in bytes above which the cursors returned from
+     * {@link #query(String, Object...)} do not buffer a DataRow. The fields of
+     * such a row are read from the connection in column order as they are accessed,
+     * and fields above the threshold only through {@link Row#getInputStream(int)} or
+     * {@link Row#getChannel(int)}, so a value of hundreds of MB is never held in
+     * memory. With a spill directory, see {@link #setSpillDirectory(Path)}, the row is
+     * written to a memory-mapped file instead. The default of 0 buffers every row.
+     */
+    public void setStreamingThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Streaming threshold must be >= 0");
+        }
+        this.streamingThreshold = threshold;
+    }
+
+    /**
+     *
+     * Makes rows above the streaming threshold, see {@link #setStreamingThreshold(int)},
+     * go from the socket into a memory-mapped temporary file in {@code directory},
+     * rather than being read field by field. All {@link Row} accessors then work in
+     * any order, the pages are only read as the fields are, and a row stays off the
+     * heap unless it is decoded or copied. {@code null} (the default) disables spilling.
+     */
+    public void setSpillDirectory(Path directory) {
+        this.spillDirectory = directory;
+    }
+
+    /**
+     *
+     * Reports query and authentication timings, row counts, and the
+     * messages, bytes and socket waits of this connection to the listener.
+     * Set it before {@link #connect(String, int)} to include authentication.
+     *
+     * @param metrics listener such as {@link PgMetrics}, or {@link PgMetricsListener#NONE}
+     */
+    public void setMetricsListener(PgMetricsListener metrics) {
+        this.metrics = metrics;
+        if (this.transport != null) {
+            this.transport.setMetricsListener(metrics);
+        }
+    }
+
+    /**
+     *
+     * Sets a deadline for every following query, pipeline and {@link #executeQuery(String)}:
+     * if the server has not finished it this long after it was sent, it is cancelled as
+     * with {@link #cancel()} and fails with a {@link PgServerException} whose
+     * {@link PgServerException#isQueryCanceled()} is true, while the connection stays usable.
+     * The deadline covers everything up to the final ReadyForQuery, including the
+     * time a cursor takes to consume the rows; once the server has sent all rows or
+     * suspended the portal, there is nothing left to cancel.
+     * A timeout of zero (the default) disables deadlines.
+     */
+    public void setQueryTimeout(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Query timeout must be >= 0");
+        }
+        this.queryTimeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     *
+     * Asks the server to cancel the query currently running on this connection.
+     * Unlike all other methods, this one may be called from any thread.
+     * See <a href="https://www.postgresql.org/docs/current/protocol-flow.html#PROTOCOL-FLOW-CANCELING-REQUESTS">Canceling Requests in Progress</a>.
+     * <p>
+     * The CancelRequest is sent over a new connection, with the process ID and secret key
+     * received in BackendKeyData during {@link #authenticate(String, String, String)}.
+     * The server does not answer it: if the query was still running, it fails with
+     * SQLSTATE 57014 and the connection returns to ReadyForQuery; otherwise nothing happens.
+     * Since the request travels separately, it can arrive after the query finished and
+     * cancel the next one instead, if that one was sent in the meantime.
+     *
+     * @throws IllegalStateException if the client has not authenticated yet
+     */
+    public void cancel() {
+        if (!this.hasBackendKey) {
+            throw new IllegalStateException("No BackendKeyData received, authenticate first");
+        }
+        try (var cancelTransport = PgTransport.open(this.host, this.port)) {
+            cancelTransport.writeRaw(
+                    buildCancelRequest(this.backendProcessId, this.backendSecretKey));
+        }
+        logger.log(
+                Level.INFO,
+                "cancel request sent for backend process %d".formatted(this.backendProcessId));
+    }
+
+    /**
+     * Sets the number of prepared statements kept per connection by
+     * {@link #query(String, Object...)}. A size of 0 disables caching,
+     * so every execution parses the query into the unnamed statement.
+     */
+    public void setStatementCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Statement cache size must be >= 0");
+        }
+        this.statementCache.setCapacity(size);
+    }
+
+    /**
+     *
+     * Checks whether the connection is alive with a single round trip.
+     * A Sync message outside of an extended-query sequence is answered
+     * with ReadyForQuery without executing anything on the server.
+     *
+     * @return true if the server answered with ReadyForQuery
+     */
+    public boolean ping() {
         try {
-            this.connectionSocket.close();
-        } catch (IOException e) {
-            throw new RuntimeException("I/O error in close(): %s".formatted(e.getMessage()));
+            closeOpenCursor();
+            this.readyForQuery = false;
+            this.transport.write(new PgMessage(PgMessageType.SYNC, new byte[0]));
+            while (true) {
+                PgMessage msg = this.transport.read();
+                if (msg.type() == PgMessageType.READY_FOR_QUERY) {
+                    handleReadyForQueryMessage(msg);
+                    return true;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "ping() failed: %s".formatted(e.getMessage()));
+            return false;
         }
     }
 
+    /**
+     * Returns a run-time parameter the server reported during authentication, e.g.
+     * "server_version" or "client_encoding", or {@code null} if it was not reported.
+     */
+    public String getParameterStatus(String name) {
+        return this.serverParameters.get(name);
+    }
+
+    public boolean isConnected() {
+        return this.transport != null && this.transport.isOpen();
+    }
+
+    /**
+     * Returns true if the last message received from the server was ReadyForQuery, i.e. no query
+     * is in flight and the connection can accept a new one.
+     */
+    public boolean isReadyForQuery() {
+        return this.readyForQuery;
+    }
+
+    /**
+     * Returns the transaction status reported by the last ReadyForQuery message: 'I' when idle,
+     * 'T' inside a transaction block and 'E' inside a failed transaction block.
+     */
+    public char getTransactionStatus() {
+        return this.transactionStatus;
+    }
+
+    public void close() {
+        this.readyForQuery = false;
+        this.transport.close();
+    }
+
     /**
      * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-STARTUPMESSAGE">StartupMessage</a> message format.
      */
     private void sendStartupMessage(String database, String user) {
-        try {
-            ByteBuffer messageBuffer = ByteBuffer.allocate(256);
-            messageBuffer.putInt(0);
-            messageBuffer.putInt(0x00030000);
-            CStringUtils.putCString(messageBuffer, "user");
-            CStringUtils.putCString(messageBuffer, user);
-            CStringUtils.putCString(messageBuffer, "database");
-            CStringUtils.putCString(messageBuffer, database);
-            messageBuffer.put((byte) 0);
-            int messageLength = messageBuffer.position();
-            messageBuffer.putInt(0, messageLength);
-            this.socketOutputStream.write(messageBuffer.array(), 0, messageLength);
-            this.socketOutputStream.flush();
-            logger.log(Level.INFO, "startup message sent");
-        } catch (IOException e) {
-            throw new RuntimeException(
-                    "I/O failed in sendStartupMessage(): %s".formatted(e.getMessage()));
-        }
+        this.transport.writeRaw(buildStartupMessage(database, user));
+        logger.log(Level.INFO, "startup message sent");
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-CANCELREQUEST">CancelRequest</a> message format.
+     */
+    static ByteBuffer buildCancelRequest(int processId, int secretKey) {
+        return ByteBuffer.allocate(16)
+                .putInt(16)
+                .putInt(CANCEL_REQUEST_CODE)
+                .putInt(processId)
+                .putInt(secretKey)
+                .flip();
+    }
+
+    /** Builds the StartupMessage for protocol version 3.0, which has no type byte. */
+    static ByteBuffer buildStartupMessage(String database, String user) {
+        ByteBuffer messageBuffer = ByteBuffer.allocate(256);
+        messageBuffer.putInt(0);
+        messageBuffer.putInt(0x00030000);
+        CStringUtils.putCString(messageBuffer, "user");
+        CStringUtils.putCString(messageBuffer, user);
+        CStringUtils.putCString(messageBuffer, "database");
+        CStringUtils.putCString(messageBuffer, database);
+        messageBuffer.put((byte) 0);
+        int messageLength = messageBuffer.position();
+        messageBuffer.putInt(0, messageLength);
+        return messageBuffer.flip();
     }
 
     /**
      * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-AUTHENTICATIONMD5PASSWORD">AuthenticationMD5Password</a> message format.
      */
-    private PgMessage buildPasswordMessage(byte[] salt, String user, String password) {
+    static PgMessage buildPasswordMessage(byte[] salt, String user, String password) {
         byte[] md5Response = pgMd5Auth(user, password, salt);
         ByteBuffer pwMsg = ByteBuffer.allocate(64);
         pwMsg.put("md5".getBytes());
@@ -141,7 +628,7 @@ public class PgClient {
     /**
      * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-QUERY">Query</a> message format.
      */
-    private PgMessage buildQueryMessage(String query) {
+    static PgMessage buildQueryMessage(String query) {
         byte[] queryBytes = query.getBytes();
         byte[] withNull = new byte[queryBytes.length + 1];
         System.arraycopy(queryBytes, 0, withNull, 0, queryBytes.length);
@@ -149,54 +636,213 @@ public class PgClient {
         return new PgMessage(PgMessageType.QUERY, withNull);
     }
 
+    private void printHeader(RowDescription description) {
+        System.out.println("Columns: " + description.columnCount());
+        for (int i = 0; i < description.columnCount(); i++) {
+            System.out.printf("%-20s", description.name(i));
+        }
+        System.out.println();
+        for (int i = 0; i < description.columnCount() * 20; i++) System.out.print("-");
+        System.out.println();
+    }
+
+    private void printRow(Row row) {
+        for (int i = 0; i < row.size(); i++) {
+            System.out.printf("%-20s", row.isNull(i) ? "NULL" : row.getString(i));
+        }
+        System.out.println();
+    }
+
+    PgTransport transport() {
+        return this.transport;
+    }
+
+    PgStatementCache statementCache() {
+        return this.statementCache;
+    }
+
+    int streamingThreshold() {
+        return this.streamingThreshold;
+    }
+
+    Path spillDirectory() {
+        return this.spillDirectory;
+    }
+
+    PgMetricsListener metrics() {
+        return this.metrics;
+    }
+
     /**
-     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-ROWDESCRIPTION">RowDescription</a> message format.
+     * Restores the settings made with the setters to their defaults, so that a pooled connection
+     * does not pass them on to its next user. Prepared statements above the default cache size are
+     * closed with the next query.
      */
-    private void handleRowDescMessage(PgMessage message) {
-        var buf = ByteBuffer.wrap(message.data());
-        int columnCount = buf.getShort();
+    void resetSettings() {
+        this.binaryResults = true;
+        this.fetchSize = 0;
+        this.streamingThreshold = 0;
+        this.spillDirectory = null;
+        this.queryTimeoutNanos = 0;
+        this.statementCache.setCapacity(PgStatementCache.DEFAULT_CAPACITY);
+    }
 
-        System.out.println("Columns: " + columnCount);
+    /** Drains the rows of a cursor that is still open so that the connection can be reused. */
+    void closeOpenCursor() {
+        if (this.openCursor != null) {
+            this.openCursor.close();
+        }
+    }
 
-        for (int i = 0; i < columnCount; i++) {
-            String colName = CStringUtils.getCString(buf);
-            System.out.printf("%-20s", colName);
-            buf.position(buf.position() + 18); // Skip field info
+    void cursorFinished(RowCursor cursor) {
+        if (this.openCursor == cursor) {
+            this.openCursor = null;
         }
-        System.out.println();
-        for (int i = 0; i < columnCount * 20; i++) System.out.print("-");
-        System.out.println();
+    }
+
+    /** Marks the connection busy until the next ReadyForQuery message. */
+    void markBusy() {
+        this.readyForQuery = false;
     }
 
     /**
-     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-DATAROW">DataRow</a> message format.
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-READYFORQUERY">ReadyForQuery</a> message format.
      */
-    private void handleRowDataMessage(PgMessage message) {
-        var buf = ByteBuffer.wrap(message.data());
-        int fieldCount = buf.getShort();
+    void handleReadyForQueryMessage(PgMessage message) {
+        clearDeadline();
+        this.transactionStatus = PgBackendMessages.transactionStatus(message.payload());
+        this.readyForQuery = true;
+    }
 
-        for (int i = 0; i < fieldCount; i++) {
-            int fieldLen = buf.getInt();
-            if (fieldLen == -1) {
-                System.out.printf("%-20s", "NULL");
-            } else {
-                byte[] fieldValue = new byte[fieldLen];
-                buf.get(fieldValue);
-                System.out.printf("%-20s", new String(fieldValue));
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-BACKENDKEYDATA">BackendKeyData</a> message format.
+     */
+    private void handleBackendKeyDataMessage(PgMessage message) {
+        this.backendProcessId = PgBackendMessages.backendProcessId(message.payload());
+        this.backendSecretKey = PgBackendMessages.backendSecretKey(message.payload());
+        this.hasBackendKey = true;
+    }
+
+    /**
+     * Arms the query timeout for the query just sent. It is disarmed by the next ReadyForQuery
+     * message, see {@link #setQueryTimeout(Duration)}.
+     */
+    void startDeadline() {
+        if (this.queryTimeoutNanos == 0 || !this.hasBackendKey) {
+            return;
+        }
+        clearDeadline();
+        long query = ++this.querySequence;
+        this.deadlineQuery.set(query);
+        this.deadline =
+                deadlineTimer.schedule(
+                        () -> {
+                            if (this.deadlineQuery.get() == query) {
+                                Thread.ofVirtual()
+                                        .name("pg-cancel")
+                                        .start(() -> cancelOnDeadline(query));
+                            }
+                        },
+                        this.queryTimeoutNanos,
+                        TimeUnit.NANOSECONDS);
+    }
+
+    private void clearDeadline() {
+        if (this.deadline != null) {
+            this.deadlineQuery.set(0);
+            this.deadline.cancel(false);
+            this.deadline = null;
+        }
+    }
+
+    private void cancelOnDeadline(long query) {
+        try (var cancelTransport = PgTransport.open(this.host, this.port)) {
+            // the query may have finished meanwhile, and the CancelRequest would then hit the
+            // next statement on this backend, e.g. another caller's after a pool checkout
+            if (this.deadlineQuery.get() != query) {
+                return;
             }
+            logger.log(Level.WARNING, "query timeout expired, cancelling the query");
+            cancelTransport.writeRaw(
+                    buildCancelRequest(this.backendProcessId, this.backendSecretKey));
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "cancel() failed: %s".formatted(e.getMessage()));
         }
-        System.out.println();
+    }
+
+    /**
+     * Sends a COPY command with the simple query protocol and waits for the CopyInResponse or
+     * CopyOutResponse message.
+     */
+    private void startCopy(String copyQuery, PgMessageType expectedResponse) {
+        closeOpenCursor();
+        this.readyForQuery = false;
+        this.transport.write(buildQueryMessage(copyQuery));
+        while (true) {
+            PgMessage msg = this.transport.read();
+            if (msg.type() == expectedResponse) {
+                return;
+            } else if (msg.type() == PgMessageType.ERROR) {
+                var error = PgServerException.fromErrorResponse(msg.payload());
+                readUntilReadyForQuery();
+                throw error;
+            } else if (msg.type() == PgMessageType.READY_FOR_QUERY) {
+                handleReadyForQueryMessage(msg);
+                throw new RuntimeException(
+                        "Expected %s, but the query did not start a COPY"
+                                .formatted(expectedResponse));
+            }
+        }
+    }
+
+    /**
+     * Reads messages up to ReadyForQuery.
+     *
+     * @return the tag of the last CommandComplete message, or {@code null} if there was none
+     * @throws PgServerException if an ErrorResponse was received on the way
+     */
+    String readUntilReadyForQuery() {
+        String commandTag = null;
+        PgServerException error = null;
+        while (true) {
+            PgMessage msg = this.transport.read();
+            if (msg.type() == PgMessageType.COMMAND_COMPLETE) {
+                commandTag = PgBackendMessages.commandTag(msg.payload());
+            } else if (msg.type() == PgMessageType.ERROR) {
+                error = PgServerException.fromErrorResponse(msg.payload());
+            } else if (msg.type() == PgMessageType.READY_FOR_QUERY) {
+                handleReadyForQueryMessage(msg);
+                break;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return commandTag;
+    }
+
+    /** Parses the row count at the end of a command tag like "COPY 42" or "INSERT 0 1". */
+    static long rowCountOf(String commandTag) {
+        return Long.parseLong(commandTag.substring(commandTag.lastIndexOf(' ') + 1));
+    }
+
+    /**
+     * Returns true if the error means that a cached statement can no longer be used, e.g. it was
+     * deallocated on the server or its result type changed after a schema change.
+     */
+    static boolean isStaleStatementError(PgServerException error) {
+        return error.getSqlState().equals("26000") || error.getSqlState().equals("0A000");
     }
 
     private void sendMD5AuthMessage(PgMessage authRequestMessage, String user, String password) {
         logger.log(Level.INFO, "AuthenticationMD5Password message received");
         byte[] salt = new byte[4];
-        System.arraycopy(authRequestMessage.data(), 4, salt, 0, 4);
+        authRequestMessage.payload().get(4, salt);
         var passwordMessage = buildPasswordMessage(salt, user, password);
-        passwordMessage.write(this.socketOutputStream);
+        this.transport.write(passwordMessage);
     }
 
-    private byte[] pgMd5Auth(String user, String password, byte[] salt) {
+    private static byte[] pgMd5Auth(String user, String password, byte[] salt) {
         MessageDigest md5;
         try {
             md5 = MessageDigest.getInstance("MD5");
@@ -216,7 +862,7 @@ public class PgClient {
         }
     }
 
-    private String bytesToHex(byte[] bytes) {
+    private static String bytesToHex(byte[] bytes) {
         StringBuilder sb = new StringBuilder();
         for (byte b : bytes) {
             sb.append(String.format("%02x", b));
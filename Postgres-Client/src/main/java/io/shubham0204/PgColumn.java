@@ -0,0 +1,390 @@
+package io.shubham0204;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * The values of one column of a {@link PgColumnarResult}, stored in a primitive buffer instead of
+ * one object per value.
+ *
+ * <p>Depending on its {@link Kind}, a column holds its values in {@link #ints()}, {@link #longs()}
+ * or {@link #doubles()}, or as variable-length bytes in {@link #bytes()} delimited by {@link
+ * #offsets()}. NULLs are marked in {@link #nullBitmap()}, bit {@code row % 64} of word {@code row /
+ * 64}, and read as 0 from the primitive buffers. On-heap columns are backed by arrays of exactly
+ * {@link PgColumnarResult#rowCount()} elements, see {@link #intArray()}. Off-heap columns use
+ * direct buffers in native byte order, which vectorized or native code can read in place; their
+ * memory is released when the column is garbage collected.
+ */
+public final class PgColumn {
+
+    /** How the values of a column are stored. */
+    public enum Kind {
+        /** int2, int4, and bool as 0 or 1, in {@link #ints()} */
+        INT,
+        /** int8, and timestamp/timestamptz as microseconds since 1970-01-01, in {@link #longs()} */
+        LONG,
+        /** float4 and float8 in {@link #doubles()} */
+        DOUBLE,
+        /** All other types as UTF-8 text, and bytea as its raw bytes, in {@link #bytes()} */
+        BYTES
+    }
+
+    /** Microseconds from the Unix epoch to the Postgres epoch, 2000-01-01 00:00:00 UTC */
+    private static final long PG_EPOCH_MICROS = 946_684_800_000_000L;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_BYTES_PER_VALUE = 16;
+
+    private final String name;
+    private final int typeOid;
+    private final Kind kind;
+    private final boolean offHeap;
+    private int rowCount = 0;
+    private int capacity = INITIAL_CAPACITY;
+    private LongBuffer nulls;
+    private IntBuffer ints;
+    private LongBuffer longs;
+    private DoubleBuffer doubles;
+    private IntBuffer offsets;
+    private ByteBuffer bytes;
+
+    PgColumn(String name, int typeOid, boolean offHeap) {
+        this.name = name;
+        this.typeOid = typeOid;
+        this.kind = kindOf(typeOid);
+        this.offHeap = offHeap;
+        this.nulls = allocateLongs(capacity / Long.SIZE);
+        switch (kind) {
+            case INT -> ints = allocateInts(capacity);
+            case LONG -> longs = allocateLongs(capacity);
+            case DOUBLE -> doubles = allocateDoubles(capacity);
+            case BYTES -> {
+                offsets = allocateInts(capacity + 1);
+                bytes = allocateBytes(capacity * INITIAL_BYTES_PER_VALUE);
+            }
+        }
+    }
+
+    static Kind kindOf(int typeOid) {
+        return switch (typeOid) {
+            case PgTypes.INT2, PgTypes.INT4, PgTypes.BOOL -> Kind.INT;
+            case PgTypes.INT8, PgTypes.TIMESTAMP, PgTypes.TIMESTAMPTZ -> Kind.LONG;
+            case PgTypes.FLOAT4, PgTypes.FLOAT8 -> Kind.DOUBLE;
+            default -> Kind.BYTES;
+        };
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** OID of the column's data type, see the pg_type system catalog. */
+    public int typeOid() {
+        return typeOid;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public boolean isNull(int row) {
+        checkRow(row);
+        return (nulls.get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    /** Returns the value of an {@link Kind#INT} column, 0 for NULL. */
+    public int getInt(int row) {
+        checkKind(Kind.INT, "int");
+        return ints.get(checkRow(row));
+    }
+
+    /** Returns the value of an {@link Kind#INT} or {@link Kind#LONG} column, 0 for NULL. */
+    public long getLong(int row) {
+        if (kind == Kind.INT) {
+            return getInt(row);
+        }
+        checkKind(Kind.LONG, "long");
+        return longs.get(checkRow(row));
+    }
+
+    /** Returns the value of a numeric column, 0 for NULL. */
+    public double getDouble(int row) {
+        if (kind == Kind.DOUBLE) {
+            return doubles.get(checkRow(row));
+        } else if (kind == Kind.BYTES) {
+            checkKind(Kind.DOUBLE, "double");
+        }
+        return getLong(row);
+    }
+
+    public boolean getBoolean(int row) {
+        return getInt(row) != 0;
+    }
+
+    /**
+     * Returns the value of a {@link Kind#BYTES} column as a string, or {@code null} for SQL NULL.
+     * For bytea columns, use {@link #getBytes(int)}.
+     */
+    public String getString(int row) {
+        checkKind(Kind.BYTES, "String");
+        if (isNull(row)) {
+            return null;
+        }
+        int start = offsets.get(row);
+        int length = offsets.get(row + 1) - start;
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), start, length, StandardCharsets.UTF_8);
+        }
+        return new String(copyBytes(start, length), StandardCharsets.UTF_8);
+    }
+
+    /** Returns a copy of the value of a {@link Kind#BYTES} column, or {@code null} for SQL NULL. */
+    public byte[] getBytes(int row) {
+        checkKind(Kind.BYTES, "byte[]");
+        if (isNull(row)) {
+            return null;
+        }
+        int start = offsets.get(row);
+        return copyBytes(start, offsets.get(row + 1) - start);
+    }
+
+    /** Values of an {@link Kind#INT} column, one per row. */
+    public IntBuffer ints() {
+        checkKind(Kind.INT, "int");
+        return ints.slice(0, rowCount);
+    }
+
+    /** Values of a {@link Kind#LONG} column, one per row. */
+    public LongBuffer longs() {
+        checkKind(Kind.LONG, "long");
+        return longs.slice(0, rowCount);
+    }
+
+    /** Values of a {@link Kind#DOUBLE} column, one per row. */
+    public DoubleBuffer doubles() {
+        checkKind(Kind.DOUBLE, "double");
+        return doubles.slice(0, rowCount);
+    }
+
+    /** One bit per row, set for NULL values. */
+    public LongBuffer nullBitmap() {
+        return nulls.slice(0, wordsFor(rowCount));
+    }
+
+    /**
+     * Start offsets of the values of a {@link Kind#BYTES} column in {@link #bytes()}, with one more
+     * entry than there are rows so that row {@code i} spans {@code offsets[i]} to {@code
+     * offsets[i + 1]}.
+     */
+    public IntBuffer offsets() {
+        checkKind(Kind.BYTES, "byte[]");
+        return offsets.slice(0, rowCount + 1);
+    }
+
+    /** The concatenated values of a {@link Kind#BYTES} column, see {@link #offsets()}. */
+    public ByteBuffer bytes() {
+        checkKind(Kind.BYTES, "byte[]");
+        return bytes.slice(0, offsets.get(rowCount)).order(bytes.order());
+    }
+
+    /**
+     * Returns the array backing {@link #ints()}, without copying.
+     *
+     * @throws IllegalStateException if the column is off-heap
+     */
+    public int[] intArray() {
+        checkKind(Kind.INT, "int");
+        checkOnHeap();
+        return ints.array();
+    }
+
+    /**
+     * Returns the array backing {@link #longs()}, without copying.
+     *
+     * @throws IllegalStateException if the column is off-heap
+     */
+    public long[] longArray() {
+        checkKind(Kind.LONG, "long");
+        checkOnHeap();
+        return longs.array();
+    }
+
+    /**
+     * Returns the array backing {@link #doubles()}, without copying.
+     *
+     * @throws IllegalStateException if the column is off-heap
+     */
+    public double[] doubleArray() {
+        checkKind(Kind.DOUBLE, "double");
+        checkOnHeap();
+        return doubles.array();
+    }
+
+    /** Appends the field of the row, decoding it from either format without boxing. */
+    void append(Row row, int column) {
+        if (rowCount == capacity) {
+            grow(capacity * 2);
+        }
+        if (row.fieldLength(column) == -1) {
+            int word = rowCount >>> 6;
+            nulls.put(word, nulls.get(word) | (1L << rowCount));
+            if (kind == Kind.BYTES) {
+                offsets.put(rowCount + 1, offsets.get(rowCount));
+            }
+            rowCount++;
+            return;
+        }
+        switch (kind) {
+            case INT -> {
+                boolean bool = typeOid == PgTypes.BOOL;
+                ints.put(rowCount, bool ? (row.getBoolean(column) ? 1 : 0) : row.getInt(column));
+            }
+            case LONG -> {
+                boolean timestamp = typeOid != PgTypes.INT8;
+                longs.put(rowCount, timestamp ? epochMicros(row, column) : row.getLong(column));
+            }
+            case DOUBLE -> doubles.put(rowCount, row.getDouble(column));
+            case BYTES -> appendBytes(row, column);
+        }
+        rowCount++;
+    }
+
+    /** Trims on-heap buffers so that the backing arrays have one element per row. */
+    void finish() {
+        if (offHeap) {
+            return;
+        }
+        nulls = LongBuffer.wrap(Arrays.copyOf(nulls.array(), wordsFor(rowCount)));
+        switch (kind) {
+            case INT -> ints = IntBuffer.wrap(Arrays.copyOf(ints.array(), rowCount));
+            case LONG -> longs = LongBuffer.wrap(Arrays.copyOf(longs.array(), rowCount));
+            case DOUBLE -> doubles = DoubleBuffer.wrap(Arrays.copyOf(doubles.array(), rowCount));
+            case BYTES -> {
+                offsets = IntBuffer.wrap(Arrays.copyOf(offsets.array(), rowCount + 1));
+                bytes = ByteBuffer.wrap(Arrays.copyOf(bytes.array(), offsets.get(rowCount)));
+            }
+        }
+        capacity = rowCount;
+    }
+
+    private void appendBytes(Row row, int column) {
+        byte[] value = null;
+        if (typeOid == PgTypes.BYTEA) {
+            value = row.getBytes(column);
+        } else if (row.isBinary(column)) {
+            value = row.getString(column).getBytes(StandardCharsets.UTF_8);
+        }
+        int start = offsets.get(rowCount);
+        int length = value != null ? value.length : row.fieldLength(column);
+        if (bytes.capacity() - start < length) {
+            var grown = allocateBytes(Math.max(bytes.capacity() * 2, start + length));
+            grown.put(0, bytes, 0, start);
+            bytes = grown;
+        }
+        if (value != null) {
+            bytes.put(start, value);
+        } else {
+            row.copyField(column, bytes, start);
+        }
+        offsets.put(rowCount + 1, start + length);
+    }
+
+    private static long epochMicros(Row row, int column) {
+        if (row.isBinary(column)) {
+            long micros = row.getTimestampMicros(column);
+            // infinity and -infinity keep their representation
+            if (micros == Long.MAX_VALUE || micros == Long.MIN_VALUE) {
+                return micros;
+            }
+            return micros + PG_EPOCH_MICROS;
+        }
+        var timestamp = row.getTimestamp(column);
+        // the same representation as the binary format uses for infinity and -infinity
+        if (timestamp.equals(LocalDateTime.MAX)) {
+            return Long.MAX_VALUE;
+        } else if (timestamp.equals(LocalDateTime.MIN)) {
+            return Long.MIN_VALUE;
+        }
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1000;
+    }
+
+    private void grow(int newCapacity) {
+        var grownNulls = allocateLongs(newCapacity / Long.SIZE);
+        nulls = grownNulls.put(0, nulls, 0, wordsFor(rowCount));
+        switch (kind) {
+            case INT -> ints = allocateInts(newCapacity).put(0, ints, 0, rowCount);
+            case LONG -> longs = allocateLongs(newCapacity).put(0, longs, 0, rowCount);
+            case DOUBLE -> doubles = allocateDoubles(newCapacity).put(0, doubles, 0, rowCount);
+            case BYTES -> offsets = allocateInts(newCapacity + 1).put(0, offsets, 0, rowCount + 1);
+        }
+        capacity = newCapacity;
+    }
+
+    private byte[] copyBytes(int start, int length) {
+        byte[] value = new byte[length];
+        bytes.get(start, value);
+        return value;
+    }
+
+    private static int wordsFor(int rows) {
+        return (rows + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private ByteBuffer allocateBytes(int size) {
+        if (offHeap) {
+            return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        }
+        return ByteBuffer.allocate(size);
+    }
+
+    private IntBuffer allocateInts(int size) {
+        return offHeap
+                ? allocateBytes(size * Integer.BYTES).asIntBuffer()
+                : IntBuffer.allocate(size);
+    }
+
+    private LongBuffer allocateLongs(int size) {
+        return offHeap
+                ? allocateBytes(size * Long.BYTES).asLongBuffer()
+                : LongBuffer.allocate(size);
+    }
+
+    private DoubleBuffer allocateDoubles(int size) {
+        return offHeap
+                ? allocateBytes(size * Double.BYTES).asDoubleBuffer()
+                : DoubleBuffer.allocate(size);
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException(
+                    "Row index %d out of range for %d rows".formatted(row, rowCount));
+        }
+        return row;
+    }
+
+    private void checkKind(Kind expected, String javaType) {
+        if (kind != expected) {
+            throw new UnsupportedOperationException(
+                    "Cannot read %s column %s of type OID %d as %s"
+                            .formatted(kind, name, typeOid, javaType));
+        }
+    }
+
+    private void checkOnHeap() {
+        if (offHeap) {
+            throw new IllegalStateException(
+                    "Column %s is stored off-heap and has no backing array".formatted(name));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.shubham0204;
+
+/**
+ * A query result stored column by column, for scans whose values are processed per column rather
+ * than per row.
+ *
+ * <pre>{@code
+ * try (RowCursor cursor = client.query("SELECT id, price FROM orders WHERE day = $1", day)) {
+ *     PgColumnarResult result = PgColumnarResult.collect(cursor, true);
+ *     DoubleBuffer prices = result.column("price").doubles();
+ * }
+ * }</pre>
+ *
+ * <p>Each DataRow message is decoded straight into the {@link PgColumn}s through the cursor's
+ * flyweight {@link Row}, so numeric values of either format are never boxed and no per-row object
+ * outlives the message. With {@code offHeap}, the columns live in direct buffers and a large scan
+ * only keeps a few objects per column on the heap.
+ */
+public final class PgColumnarResult {
+
+    private final RowDescription description;
+    private final PgColumn[] columns;
+    private final int rowCount;
+    private final String commandTag;
+
+    private PgColumnarResult(
+            RowDescription description, PgColumn[] columns, int rowCount, String commandTag) {
+        this.description = description;
+        this.columns = columns;
+        this.rowCount = rowCount;
+        this.commandTag = commandTag;
+    }
+
+    /** Reads the remaining rows of the cursor into on-heap columns. */
+    public static PgColumnarResult collect(RowCursor cursor) {
+        return collect(cursor, false);
+    }
+
+    /**
+     * Reads the remaining rows of the cursor into columns.
+     *
+     * @param cursor a cursor which has not been advanced yet
+     * @param offHeap whether to store the columns in direct buffers instead of arrays
+     * @throws PgServerException if the server reports an error while executing the query
+     */
+    public static PgColumnarResult collect(RowCursor cursor, boolean offHeap) {
+        var description = cursor.description();
+        var columns = new PgColumn[description == null ? 0 : description.columnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new PgColumn(description.name(i), description.typeOid(i), offHeap);
+        }
+        int rowCount = 0;
+        while (cursor.next()) {
+            var row = cursor.row();
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].append(row, i);
+            }
+            rowCount++;
+        }
+        for (PgColumn column : columns) {
+            column.finish();
+        }
+        return new PgColumnarResult(description, columns, rowCount, cursor.commandTag());
+    }
+
+    /** Returns the column metadata, or {@code null} if the query does not return rows. */
+    public RowDescription description() {
+        return description;
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public int columnCount() {
+        return columns.length;
+    }
+
+    public PgColumn column(int column) {
+        return columns[column];
+    }
+
+    public PgColumn column(String column) {
+        return columns[description.indexOf(column)];
+    }
+
+    /** Returns the tag of the CommandComplete message, e.g. "SELECT 5". */
+    public String commandTag() {
+        return commandTag;
+    }
+}
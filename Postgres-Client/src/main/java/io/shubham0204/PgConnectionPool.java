@@ -0,0 +1,306 @@
+package io.shubham0204;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pool of authenticated {@link PgClient} connections.
+ *
+ * <p>Connections are handed out most-recently-used first and only return to the pool if they are
+ * in the ReadyForQuery state outside of a transaction block; anything else is closed. Waiting for a
+ * free connection uses a {@link ReentrantLock} condition instead of {@code synchronized}, so a
+ * virtual thread parks without pinning its carrier thread. A background task closes connections
+ * that stayed idle for longer than {@link PgPoolConfig#idleTimeout()} and tops the pool back up to
+ * {@link PgPoolConfig#minSize()}.
+ *
+ * <p>Settings such as the fetch size or the query timeout are reset when a connection is released,
+ * so every caller of {@link #acquire()} starts from the defaults.
+ */
+public final class PgConnectionPool implements AutoCloseable {
+
+    private record IdleConnection(PgClient client, long idleSinceNanos) {}
+
+    private final PgPoolConfig config;
+    private final Supplier<PgClient> connectionFactory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition connectionReleased = lock.newCondition();
+    private final ArrayDeque<IdleConnection> idleConnections = new ArrayDeque<>();
+    private final Set<PgClient> checkedOut = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ScheduledExecutorService evictor;
+    private final Logger logger = Logger.getLogger(PgConnectionPool.class.getName());
+    private int openConnections = 0;
+    private boolean closed = false;
+
+    public PgConnectionPool(PgPoolConfig config) {
+        this(config, PgMetricsListener.NONE);
+    }
+
+    /**
+     * Creates a pool whose connections all report to the given listener, see {@link
+     * PgClient#setMetricsListener(PgMetricsListener)}.
+     */
+    public PgConnectionPool(PgPoolConfig config, PgMetricsListener metrics) {
+        this(
+                config,
+                () -> {
+                    var client = new PgClient();
+                    client.setMetricsListener(metrics);
+                    client.connect(config.host(), config.port());
+                    try {
+                        client.authenticate(config.database(), config.user(), config.password());
+                    } catch (RuntimeException e) {
+                        client.close();
+                        throw e;
+                    }
+                    return client;
+                });
+    }
+
+    PgConnectionPool(PgPoolConfig config, Supplier<PgClient> connectionFactory) {
+        this.config = config;
+        this.connectionFactory = connectionFactory;
+        fillToMinSize();
+        this.evictor =
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> Thread.ofPlatform().name("pg-pool-evictor").daemon().unstarted(r));
+        long periodMillis = Math.max(1000, config.idleTimeout().toMillis() / 2);
+        evictor.scheduleWithFixedDelay(
+                this::evictIdleConnections, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     *
+     * Checks out a connection, opening a new one if none is idle and the
+     * pool is below its maximum size. Otherwise, waits up to
+     * {@link PgPoolConfig#checkoutTimeout()} for another caller to release one.
+     *
+     * @return a connection in the ReadyForQuery state, to be returned with {@link
+     *     #release(PgClient)}
+     */
+    public PgClient acquire() {
+        long deadline = System.nanoTime() + config.checkoutTimeout().toNanos();
+        while (true) {
+            IdleConnection idle;
+            lock.lock();
+            try {
+                while ((idle = idleConnections.pollFirst()) == null) {
+                    if (closed) {
+                        throw new RuntimeException("acquire() called on a closed pool");
+                    }
+                    if (openConnections < config.maxSize()) {
+                        openConnections++;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new RuntimeException(
+                                "Timed out after %d ms waiting for a connection"
+                                        .formatted(config.checkoutTimeout().toMillis()));
+                    }
+                    connectionReleased.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for a connection");
+            } finally {
+                lock.unlock();
+            }
+            if (idle == null) {
+                return checkOut(openConnection());
+            }
+            if (isHealthy(idle)) {
+                return checkOut(idle.client());
+            }
+            discard(idle.client());
+        }
+    }
+
+    /**
+     * Returns a connection obtained from {@link #acquire()}. Connections that are not idle in the
+     * ReadyForQuery state, e.g. after an I/O failure or with an open transaction, are closed.
+     *
+     * @throws IllegalStateException if the connection is not checked out from this pool, e.g.
+     *     because it was released already
+     */
+    public void release(PgClient client) {
+        lock.lock();
+        try {
+            if (!checkedOut.remove(client)) {
+                throw new IllegalStateException("Connection is not checked out from this pool");
+            }
+        } finally {
+            lock.unlock();
+        }
+        addIdle(client);
+    }
+
+    /** Runs {@code action} with a pooled connection, releasing it afterwards. */
+    public <T> T withClient(Function<PgClient, T> action) {
+        var client = acquire();
+        try {
+            return action.apply(client);
+        } finally {
+            release(client);
+        }
+    }
+
+    public int getOpenConnections() {
+        lock.lock();
+        try {
+            return openConnections;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleConnections() {
+        lock.lock();
+        try {
+            return idleConnections.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Closes idle connections. Connections still checked out are closed when released. */
+    @Override
+    public void close() {
+        var toClose = new ArrayList<IdleConnection>();
+        lock.lock();
+        try {
+            closed = true;
+            toClose.addAll(idleConnections);
+            idleConnections.clear();
+            openConnections -= toClose.size();
+            connectionReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        evictor.shutdownNow();
+        toClose.forEach(idle -> closeQuietly(idle.client()));
+    }
+
+    private boolean isHealthy(IdleConnection idle) {
+        if (!idle.client().isConnected()) {
+            return false;
+        }
+        long idleNanos = System.nanoTime() - idle.idleSinceNanos();
+        return idleNanos < config.validationInterval().toNanos() || idle.client().ping();
+    }
+
+    private PgClient checkOut(PgClient client) {
+        lock.lock();
+        try {
+            checkedOut.add(client);
+        } finally {
+            lock.unlock();
+        }
+        return client;
+    }
+
+    /** Puts a connection back into the idle deque if it can be reused, otherwise closes it. */
+    private void addIdle(PgClient client) {
+        boolean reusable = client.isReadyForQuery() && client.getTransactionStatus() == 'I';
+        if (reusable) {
+            client.resetSettings();
+        }
+        lock.lock();
+        try {
+            if (reusable && !closed) {
+                idleConnections.addFirst(new IdleConnection(client, System.nanoTime()));
+                connectionReleased.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        discard(client);
+    }
+
+    /** Opens a connection for a slot already counted in {@code openConnections}. */
+    private PgClient openConnection() {
+        try {
+            return connectionFactory.get();
+        } catch (RuntimeException e) {
+            releaseSlot();
+            throw e;
+        }
+    }
+
+    private void discard(PgClient client) {
+        closeQuietly(client);
+        releaseSlot();
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            openConnections--;
+            connectionReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictIdleConnections() {
+        var evicted = new ArrayList<IdleConnection>();
+        long idleTimeoutNanos = config.idleTimeout().toNanos();
+        lock.lock();
+        try {
+            // the least recently used connections are at the tail of the deque
+            IdleConnection oldest;
+            while (openConnections > config.minSize()
+                    && (oldest = idleConnections.peekLast()) != null
+                    && System.nanoTime() - oldest.idleSinceNanos() > idleTimeoutNanos) {
+                evicted.add(idleConnections.pollLast());
+                openConnections--;
+            }
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(idle -> closeQuietly(idle.client()));
+        if (!evicted.isEmpty()) {
+            logger.log(Level.FINE, "evicted %d idle connections".formatted(evicted.size()));
+        }
+        try {
+            fillToMinSize();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "could not open connection: %s".formatted(e.getMessage()));
+        }
+    }
+
+    private void fillToMinSize() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || openConnections >= config.minSize()) {
+                    return;
+                }
+                openConnections++;
+            } finally {
+                lock.unlock();
+            }
+            addIdle(openConnection());
+        }
+    }
+
+    private void closeQuietly(PgClient client) {
+        try {
+            client.close();
+        } catch (RuntimeException e) {
+            logger.log(Level.FINE, "close() failed: %s".formatted(e.getMessage()));
+        }
+    }
+}
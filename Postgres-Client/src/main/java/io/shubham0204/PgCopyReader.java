@@ -0,0 +1,109 @@
+package io.shubham0204;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Streams the output of a {@code COPY ... TO STDOUT} command, obtained from {@link
+ * PgClient#copyOut(String)}.
+ *
+ * <p>CopyData messages are read from the connection only when the previous one has been consumed,
+ * so memory use does not depend on the size of the export. {@link #readChunk()} gives zero-copy
+ * access to the message payloads; with the text format, each chunk holds one row. The connection
+ * is busy until the stream is exhausted or closed.
+ */
+public class PgCopyReader extends InputStream {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final PgClient client;
+    private ByteBuffer chunk = EMPTY;
+    private boolean done = false;
+    private String commandTag;
+    private PgServerException error;
+
+    PgCopyReader(PgClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Returns the unread part of the next CopyData message, or {@code null} at the end of the
+     * data. The buffer is a view into the connection's read buffer and is only valid until the
+     * next read from this stream.
+     *
+     * @throws PgServerException if the server reports an error during the COPY
+     */
+    public ByteBuffer readChunk() {
+        if (!chunk.hasRemaining() && !nextChunk()) {
+            return null;
+        }
+        var current = chunk;
+        chunk = EMPTY;
+        return current;
+    }
+
+    @Override
+    public int read() {
+        if (!chunk.hasRemaining() && !nextChunk()) {
+            return -1;
+        }
+        return chunk.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!chunk.hasRemaining() && !nextChunk()) {
+            return -1;
+        }
+        int n = Math.min(len, chunk.remaining());
+        chunk.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return chunk.remaining();
+    }
+
+    /** Returns the number of rows copied, or -1 if the stream has not been read to the end yet. */
+    public long rowCount() {
+        return commandTag == null ? -1 : PgClient.rowCountOf(commandTag);
+    }
+
+    /** Reads and discards the rest of the data, leaving the connection ready for the next query. */
+    @Override
+    public void close() {
+        while (nextChunk()) {
+            // discard
+        }
+    }
+
+    private boolean nextChunk() {
+        while (!done) {
+            PgMessage msg = client.transport().read();
+            switch (msg.type()) {
+                case COPY_DATA -> {
+                    chunk = msg.payload();
+                    if (chunk.hasRemaining()) {
+                        return true;
+                    }
+                }
+                case COMMAND_COMPLETE -> commandTag = PgBackendMessages.commandTag(msg.payload());
+                case ERROR -> error = PgServerException.fromErrorResponse(msg.payload());
+                case READY_FOR_QUERY -> {
+                    done = true;
+                    chunk = EMPTY;
+                    client.handleReadyForQueryMessage(msg);
+                    if (error != null) {
+                        throw error;
+                    }
+                }
+                default -> {}
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,175 @@
+package io.shubham0204;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams data to the server for a {@code COPY ... FROM STDIN} command, obtained from {@link
+ * PgClient#copyIn(String)}.
+ *
+ * <p>Bytes are collected in a fixed-size chunk which is sent as one CopyData message whenever it
+ * fills up, so memory use does not depend on the amount of data. {@link #writeRow(Object...)}
+ * encodes a row in the default text format of COPY. The connection is busy until {@link #finish()}
+ * or {@link #close()} is called.
+ */
+public class PgCopyWriter extends OutputStream {
+
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final PgClient client;
+    private final byte[] chunk;
+    private int chunkLength = 0;
+    private boolean finished = false;
+    private long rowCount = -1;
+
+    PgCopyWriter(PgClient client, int chunkSize) {
+        this.client = client;
+        this.chunk = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) {
+        checkNotFinished();
+        if (chunkLength == chunk.length) {
+            sendChunk();
+        }
+        chunk[chunkLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        checkNotFinished();
+        while (len > 0) {
+            if (chunkLength == chunk.length) {
+                sendChunk();
+            }
+            int n = Math.min(len, chunk.length - chunkLength);
+            System.arraycopy(b, off, chunk, chunkLength, n);
+            chunkLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes one row in the text format of COPY: columns separated by tabs, {@code \N} for NULL
+     * and backslash escapes for special characters. Values are converted with {@link
+     * String#valueOf(Object)}.
+     */
+    public void writeRow(Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                write('\t');
+            }
+            if (values[i] == null) {
+                write('\\');
+                write('N');
+            } else {
+                writeEscaped(String.valueOf(values[i]));
+            }
+        }
+        write('\n');
+    }
+
+    /**
+     * Sends the buffered data and CopyDone, and waits for the server to complete the command.
+     *
+     * @return the number of rows copied
+     * @throws PgServerException if the server rejected the data
+     */
+    public long finish() {
+        if (finished) {
+            return rowCount;
+        }
+        finished = true;
+        sendChunk();
+        client.transport().write(new PgMessage(PgMessageType.COPY_DONE, new byte[0]));
+        String commandTag = client.readUntilReadyForQuery();
+        rowCount = PgClient.rowCountOf(commandTag);
+        return rowCount;
+    }
+
+    /**
+     * Aborts the COPY command with a CopyFail message. Nothing written so far is stored.
+     *
+     * @param reason error message reported by the server
+     */
+    public void abort(String reason) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        byte[] message = reason.getBytes(StandardCharsets.UTF_8);
+        var payload = ByteBuffer.allocate(message.length + 1).put(message).put((byte) 0);
+        client.transport().write(new PgMessage(PgMessageType.COPY_FAIL, payload.array()));
+        try {
+            client.readUntilReadyForQuery();
+        } catch (PgServerException e) {
+            // expected, the server reports the CopyFail reason as an error
+        }
+    }
+
+    /** Same as {@link #finish()}. */
+    @Override
+    public void close() {
+        finish();
+    }
+
+    private void writeEscaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> writeEscape('\\');
+                case '\t' -> writeEscape('t');
+                case '\n' -> writeEscape('n');
+                case '\r' -> writeEscape('r');
+                default -> {
+                    if (c < 0x80) {
+                        write(c);
+                    } else {
+                        // encode the rest of the value in one go, escaping is only needed for ASCII
+                        writeEscaped(value, i);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeEscaped(String value, int from) {
+        byte[] bytes = value.substring(from).getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            switch (b) {
+                case '\\' -> writeEscape('\\');
+                case '\t' -> writeEscape('t');
+                case '\n' -> writeEscape('n');
+                case '\r' -> writeEscape('r');
+                default -> write(b);
+            }
+        }
+    }
+
+    private void checkNotFinished() {
+        if (finished) {
+            throw new IllegalStateException("COPY has already been finished or aborted");
+        }
+    }
+
+    private void writeEscape(char c) {
+        write('\\');
+        write(c);
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-COPYDATA">CopyData</a> message format.
+     */
+    private void sendChunk() {
+        if (chunkLength == 0) {
+            return;
+        }
+        var payload = ByteBuffer.wrap(chunk, 0, chunkLength);
+        client.transport().write(new PgMessage(PgMessageType.COPY_DATA, payload));
+        chunkLength = 0;
+    }
+}
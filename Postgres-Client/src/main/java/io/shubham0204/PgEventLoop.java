@@ -0,0 +1,128 @@
+package io.shubham0204;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single thread multiplexing the non-blocking channels of many {@link PgAsyncClient} connections
+ * with a {@link Selector}. Work from other threads is handed to the loop with {@link
+ * #execute(Runnable)}; a gateway talking to many databases can spread its connections over a few
+ * loops.
+ */
+public class PgEventLoop implements AutoCloseable {
+
+    /** Callbacks of a channel registered with the loop, always invoked on the loop thread. */
+    interface Handler {
+        void onReady(SelectionKey key) throws IOException;
+
+        void onFailure(Throwable cause);
+    }
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Logger logger = Logger.getLogger(PgEventLoop.class.getName());
+    private volatile boolean running = true;
+
+    public PgEventLoop() {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new RuntimeException("I/O failed in PgEventLoop(): %s".formatted(e.getMessage()));
+        }
+        this.thread =
+                Thread.ofPlatform()
+                        .name("pg-event-loop-" + threadCount.incrementAndGet())
+                        .daemon()
+                        .start(this::run);
+    }
+
+    /** Runs {@code task} on the loop thread. */
+    public void execute(Runnable task) {
+        if (!running) {
+            throw new RuntimeException("execute() called on a closed PgEventLoop");
+        }
+        tasks.add(task);
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /** Registers {@code channel}, which must be in non-blocking mode. Call on the loop thread. */
+    SelectionKey register(SelectableChannel channel, int interestOps, Handler handler)
+            throws IOException {
+        return channel.register(selector, interestOps, handler);
+    }
+
+    /** Stops the loop, failing the connections still registered with it. */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        if (!inEventLoop()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "select() failed: %s".formatted(e.getMessage()));
+                break;
+            }
+            runTasks();
+            var selectedKeys = selector.selectedKeys().iterator();
+            while (selectedKeys.hasNext()) {
+                SelectionKey key = selectedKeys.next();
+                selectedKeys.remove();
+                var handler = (Handler) key.attachment();
+                try {
+                    if (key.isValid()) {
+                        handler.onReady(key);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    handler.onFailure(e);
+                }
+            }
+        }
+        runTasks();
+        var closed = new RuntimeException("PgEventLoop was closed");
+        for (SelectionKey key : selector.keys()) {
+            ((Handler) key.attachment()).onFailure(closed);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "close() failed: %s".formatted(e.getMessage()));
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "task failed: %s".formatted(e.getMessage()));
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package io.shubham0204;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The value of one field, read either from a region of a buffer or, for a field larger than the
+ * streaming threshold of a {@link RowCursor}, from the connection while the DataRow arrives. It is
+ * both an {@link InputStream} and a {@link ReadableByteChannel}; reading through the channel with a
+ * large buffer, e.g. with {@link java.nio.channels.FileChannel#transferFrom}, lets the socket
+ * fill that buffer directly.
+ *
+ * <p>A stream over the connection is cut off once its row is left behind, after which reads fail.
+ */
+final class PgFieldStream extends InputStream implements ReadableByteChannel {
+
+    private final ByteBuffer region;
+    private final PgTransport transport;
+    private int remaining;
+    private boolean open = true;
+    private final byte[] single = new byte[1];
+
+    /** Reads the bytes between the position and the limit of {@code region}. */
+    PgFieldStream(ByteBuffer region) {
+        this.region = region;
+        this.transport = null;
+        this.remaining = region.remaining();
+    }
+
+    /** Reads the next {@code length} bytes of the message being streamed by {@code transport}. */
+    PgFieldStream(PgTransport transport, int length) {
+        this.region = null;
+        this.transport = transport;
+        this.remaining = length;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        checkOpen();
+        return transfer(dst);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        var dst = ByteBuffer.wrap(b, off, len);
+        int n;
+        while ((n = read(dst)) == 0) {
+            // a blocking read returns at least one byte, but keep the InputStream contract anyway
+        }
+        return n;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkOpen();
+        return skipBytes((int) Math.min(n, remaining));
+    }
+
+    @Override
+    public int available() {
+        return region != null ? remaining : 0;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /** Stops reading. The rest of the field is discarded when the row moves on. */
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    /**
+     * Skips the rest of the field, even if the stream was closed, so that the connection is
+     * positioned at the next field. Reads fail afterwards.
+     */
+    void discard() {
+        open = false;
+        try {
+            skipBytes(remaining);
+        } catch (IOException e) {
+            throw new RuntimeException("I/O failed in discard(): %s".formatted(e.getMessage()));
+        }
+    }
+
+    private int transfer(ByteBuffer dst) throws IOException {
+        if (remaining == 0) {
+            return -1;
+        }
+        int n = Math.min(dst.remaining(), remaining);
+        if (region != null) {
+            dst.put(dst.position(), region, region.position(), n);
+            region.position(region.position() + n);
+            dst.position(dst.position() + n);
+        } else {
+            var limited = dst.slice(dst.position(), n);
+            try {
+                n = transport.readStreamed(limited);
+            } catch (RuntimeException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            if (n == -1) {
+                throw new EOFException("DataRow ended before the field");
+            }
+            dst.position(dst.position() + n);
+        }
+        remaining -= n;
+        return n;
+    }
+
+    private int skipBytes(int n) throws IOException {
+        if (region != null) {
+            region.position(region.position() + n);
+        } else {
+            try {
+                transport.skipStreamed(n);
+            } catch (RuntimeException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        remaining -= n;
+        return n;
+    }
+
+    private void checkOpen() throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package io.shubham0204;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** Builders for the frontend messages of the extended query protocol. */
+final class PgFrontendMessages {
+
+    static final short TEXT_FORMAT = 0;
+    static final short BINARY_FORMAT = 1;
+
+    private static final PgMessage SYNC = new PgMessage(PgMessageType.SYNC, new byte[0]);
+    private static final PgMessage FLUSH = new PgMessage(PgMessageType.FLUSH, new byte[0]);
+
+    private PgFrontendMessages() {}
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-PARSE">Parse</a> message format.
+     * Parameter types are left for the server to infer.
+     */
+    static PgMessage parse(String statementName, String query) {
+        byte[] name = statementName.getBytes(StandardCharsets.UTF_8);
+        byte[] sql = query.getBytes(StandardCharsets.UTF_8);
+        var buffer = ByteBuffer.allocate(name.length + 1 + sql.length + 1 + 2);
+        buffer.put(name).put((byte) 0);
+        buffer.put(sql).put((byte) 0);
+        buffer.putShort((short) 0);
+        return new PgMessage(PgMessageType.PARSE, buffer.array());
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-BIND">Bind</a> message format.
+     * {@code byte[]} parameters are sent in binary format, everything else as text via {@link
+     * String#valueOf(Object)}.
+     *
+     * @param resultFormats format code per result column, or an empty array for all-text results
+     */
+    static PgMessage bind(
+            String portalName, String statementName, Object[] params, short[] resultFormats) {
+        byte[] portal = portalName.getBytes(StandardCharsets.UTF_8);
+        byte[] statement = statementName.getBytes(StandardCharsets.UTF_8);
+        byte[][] values = new byte[params.length][];
+        boolean anyBinary = false;
+        int size = portal.length + 1 + statement.length + 1 + 2 + 2 + 2 + 2 * resultFormats.length;
+        for (int i = 0; i < params.length; i++) {
+            values[i] = encodeParameter(params[i]);
+            anyBinary |= params[i] instanceof byte[];
+            size += 4 + (values[i] == null ? 0 : values[i].length);
+        }
+        if (anyBinary) {
+            size += 2 * params.length;
+        }
+
+        var buffer = ByteBuffer.allocate(size);
+        buffer.put(portal).put((byte) 0);
+        buffer.put(statement).put((byte) 0);
+        if (anyBinary) {
+            buffer.putShort((short) params.length);
+            for (Object param : params) {
+                buffer.putShort(param instanceof byte[] ? BINARY_FORMAT : TEXT_FORMAT);
+            }
+        } else {
+            buffer.putShort((short) 0);
+        }
+        buffer.putShort((short) params.length);
+        for (byte[] value : values) {
+            if (value == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(value.length);
+                buffer.put(value);
+            }
+        }
+        buffer.putShort((short) resultFormats.length);
+        for (short format : resultFormats) {
+            buffer.putShort(format);
+        }
+        return new PgMessage(PgMessageType.BIND, buffer.array());
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-DESCRIBE">Describe</a> message format.
+     *
+     * @param kind 'S' to describe a prepared statement, 'P' to describe a portal
+     */
+    static PgMessage describe(char kind, String name) {
+        return new PgMessage(PgMessageType.DESCRIBE, kindAndName(kind, name));
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-EXECUTE">Execute</a> message format.
+     *
+     * @param maxRows maximum number of rows to return, 0 for no limit
+     */
+    static PgMessage execute(String portalName, int maxRows) {
+        byte[] portal = portalName.getBytes(StandardCharsets.UTF_8);
+        var buffer = ByteBuffer.allocate(portal.length + 1 + 4);
+        buffer.put(portal).put((byte) 0);
+        buffer.putInt(maxRows);
+        return new PgMessage(PgMessageType.EXECUTE, buffer.array());
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-CLOSE">Close</a> message format.
+     *
+     * @param kind 'S' to close a prepared statement, 'P' to close a portal
+     */
+    static PgMessage close(char kind, String name) {
+        return new PgMessage(PgMessageType.CLOSE, kindAndName(kind, name));
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-SYNC">Sync</a> message format.
+     */
+    static PgMessage sync() {
+        return SYNC;
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-FLUSH">Flush</a> message format.
+     */
+    static PgMessage flush() {
+        return FLUSH;
+    }
+
+    private static byte[] kindAndName(char kind, String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        var buffer = ByteBuffer.allocate(1 + nameBytes.length + 1);
+        buffer.put((byte) kind);
+        buffer.put(nameBytes).put((byte) 0);
+        return buffer.array();
+    }
+
+    private static byte[] encodeParameter(Object param) {
+        if (param == null) {
+            return null;
+        } else if (param instanceof byte[] bytes) {
+            return bytes;
+        }
+        return String.valueOf(param).getBytes(StandardCharsets.UTF_8);
+    }
+}
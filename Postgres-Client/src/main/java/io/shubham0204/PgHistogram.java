@@ -0,0 +1,121 @@
+package io.shubham0204;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative long values, like query latencies in nanoseconds.
+ *
+ * <p>Values are counted in log-linear buckets in the style of HdrHistogram: values below {@value
+ * #SUB_BUCKET_COUNT} get a bucket each, and every power-of-two range above is split into {@value
+ * #HALF_SUB_BUCKET_COUNT} equal buckets. Any recorded value is therefore reported within 1/64
+ * (about 1.6%) of its true value, while the whole range of a long fits in a fixed array of
+ * counters. Recording is a few shifts and one atomic increment, so it can be called on every query
+ * from any number of connections.
+ */
+public class PgHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT = index(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one occurrence of the value.
+     *
+     * @param value a value >= 0; negative values, e.g. from a clock going backwards, count as 0
+     */
+    public void record(long value) {
+        long clamped = Math.max(0, value);
+        counts.incrementAndGet(index(clamped));
+        totalCount.increment();
+        sum.add(clamped);
+        max.accumulate(clamped);
+    }
+
+    public long count() {
+        return totalCount.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Returns the value below or at which the given percentage of the recorded values lie, as the
+     * highest value of its bucket, capped at {@link #max()}. Returns 0 if nothing was recorded.
+     *
+     * @param percentile a percentage in [0, 100], e.g. 99.9
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be in [0, 100]: " + percentile);
+        }
+        long count = count();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max());
+            }
+        }
+        return max();
+    }
+
+    /** Clears all recorded values. Values recorded concurrently may or may not be kept. */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "count=%d mean=%.1f p50=%d p99=%d p99.9=%d max=%d"
+                .formatted(
+                        count(),
+                        mean(),
+                        percentile(50),
+                        percentile(99),
+                        percentile(99.9),
+                        max());
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // shift so that the value keeps SUB_BUCKET_BITS - 1 bits below its highest one bit
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - HALF_SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / HALF_SUB_BUCKET_COUNT + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+        // for the last bucket, this wraps around to exactly Long.MAX_VALUE
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -3,8 +3,25 @@ package io.shubham0204;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
-public record PgMessage(PgMessageType type, byte[] data) {
+/**
+ * A single protocol message. The {@code payload} excludes the type byte and the length field. When
+ * the message was framed by {@link PgTransport}, the payload is a view into the transport's read
+ * buffer and is only valid until the next message is read.
+ *
+ * <p>Received type bytes are decoded with a single index into a 256-entry table, see {@link
+ * PgMessageType#fromBackend(byte)}. A byte outside the protocol yields {@link
+ * PgMessageType#UNKNOWN}, which readers skip, instead of failing the connection. The payloads are
+ * decoded by {@link PgBackendMessages} and the parsers it lists.
+ */
+public record PgMessage(PgMessageType type, ByteBuffer payload) {
+
+    static final int HEADER_LENGTH = 5;
+
+    public PgMessage(PgMessageType type, byte[] data) {
+        this(type, ByteBuffer.wrap(data));
+    }
 
     public static PgMessage read(DataInputStream inputStream) {
         try {
@@ -12,55 +29,84 @@ public record PgMessage(PgMessageType type, byte[] data) {
             int length = inputStream.readInt() - 4;
             byte[] data = new byte[length];
             inputStream.readFully(data);
-            return new PgMessage(mapRawMessageType(type), data);
+            return new PgMessage(PgMessageType.fromBackend(type), data);
         } catch (IOException e) {
             throw new RuntimeException("I/O failed in read(): %s".formatted(e.getMessage()));
         }
     }
 
+    /**
+     * Frames one message in place from the bytes between {@code buffer}'s position and limit. On
+     * success, the position is advanced past the message and the returned payload is a slice of
+     * {@code buffer}. Returns {@code null}, leaving the buffer untouched, if the message is not
+     * complete yet.
+     */
+    static PgMessage frame(ByteBuffer buffer) {
+        int frameLength = frameLength(buffer);
+        if (frameLength == -1 || buffer.remaining() < frameLength) {
+            return null;
+        }
+        int start = buffer.position();
+        var payload = buffer.slice(start + HEADER_LENGTH, frameLength - HEADER_LENGTH);
+        buffer.position(start + frameLength);
+        return new PgMessage(PgMessageType.fromBackend(buffer.get(start)), payload);
+    }
+
+    /**
+     * Returns the number of bytes (type byte included) of the message starting at {@code buffer}'s
+     * position, or -1 if not even the header has been received.
+     */
+    static int frameLength(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_LENGTH) {
+            return -1;
+        }
+        int length = buffer.getInt(buffer.position() + 1);
+        if (length < 4) {
+            throw new RuntimeException("Invalid message length received: %d".formatted(length));
+        }
+        return 1 + length;
+    }
+
+    /** Returns a copy of the payload bytes. */
+    public byte[] data() {
+        byte[] data = new byte[payload.remaining()];
+        payload.get(payload.position(), data);
+        return data;
+    }
+
+    public int length() {
+        return payload.remaining();
+    }
+
+    /**
+     * Writes the message to {@code outputStream} without flushing it, so that several messages can
+     * be collected by a buffered stream and sent together.
+     */
     public void write(DataOutputStream outputStream) {
         try {
-            outputStream.writeByte((byte) mapPgMessageType(type));
-            outputStream.writeInt(4 + data.length);
-            outputStream.write(data);
-            outputStream.flush();
+            outputStream.writeByte((byte) type.code());
+            outputStream.writeInt(4 + payload.remaining());
+            if (payload.hasArray()) {
+                outputStream.write(
+                        payload.array(),
+                        payload.arrayOffset() + payload.position(),
+                        payload.remaining());
+            } else {
+                outputStream.write(data());
+            }
         } catch (IOException e) {
             throw new RuntimeException("I/O failed in write(): %s".formatted(e.getMessage()));
         }
     }
 
-    private static char mapPgMessageType(PgMessageType type) {
-        return switch (type) {
-            case AUTHENTICATION_REQUEST -> 'R';
-            case ERROR -> 'E';
-            case BACKEND_KEY_DATA -> 'K';
-            case READY_FOR_QUERY -> 'Z';
-            case NOTICE -> 'N';
-            case PARAMETER_STATUS -> 'S';
-            case ROW_DESC -> 'T';
-            case ROW_DATA -> 'D';
-            case PASSWORD_RESPONSE -> 'p';
-            case QUERY -> 'Q';
-            case CLOSE -> 'C';
-            default -> throw new RuntimeException(
-                    "Could not parse raw message type from PgMessageType received: %s".formatted(type));
-        };
+    /** Writes the header and payload to {@code buffer}, which must have enough space remaining. */
+    void encode(ByteBuffer buffer) {
+        encodeHeader(buffer);
+        buffer.put(payload.duplicate());
     }
 
-    private static PgMessageType mapRawMessageType(byte rawMessageType) {
-        return switch ((char) rawMessageType) {
-            case 'R' -> PgMessageType.AUTHENTICATION_REQUEST;
-            case 'E' -> PgMessageType.ERROR;
-            case 'K' -> PgMessageType.BACKEND_KEY_DATA;
-            case 'Z' -> PgMessageType.READY_FOR_QUERY;
-            case 'N' -> PgMessageType.NOTICE;
-            case 'S' -> PgMessageType.PARAMETER_STATUS;
-            case 'T' -> PgMessageType.ROW_DESC;
-            case 'D' -> PgMessageType.ROW_DATA;
-            case 'C' -> PgMessageType.CLOSE;
-            default -> throw new RuntimeException(
-                    "Could not parse PgMessageType from raw message type received: %d"
-                            .formatted(rawMessageType));
-        };
+    void encodeHeader(ByteBuffer buffer) {
+        buffer.put((byte) type.code());
+        buffer.putInt(4 + payload.remaining());
     }
 }
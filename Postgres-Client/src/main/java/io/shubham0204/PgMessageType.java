@@ -1,16 +1,86 @@
 package io.shubham0204;
 
+import java.util.Arrays;
+
+/**
+ * Message types of protocol version 3.0, each with the type byte it has on the wire when sent by
+ * the backend, the frontend or both. A few bytes mean different messages depending on the sender,
+ * e.g. 'C' is CommandComplete from the backend but Close from the frontend, so decoding always
+ * goes through the table of one direction, see {@link #fromBackend(byte)}.
+ */
 public enum PgMessageType {
-    AUTHENTICATION_REQUEST,
-    ERROR,
-    NOTICE,
-    ROW_DATA,
-    ROW_DESC,
-    COMMAND_COMPLETE,
-    READY_FOR_QUERY,
-    BACKEND_KEY_DATA,
-    PARAMETER_STATUS,
-    PASSWORD_RESPONSE,
-    QUERY,
-    CLOSE
+    AUTHENTICATION_REQUEST('R', '\0'),
+    ERROR('E', '\0'),
+    NOTICE('N', '\0'),
+    NOTIFICATION_RESPONSE('A', '\0'),
+    ROW_DATA('D', '\0'),
+    ROW_DESC('T', '\0'),
+    COMMAND_COMPLETE('C', '\0'),
+    READY_FOR_QUERY('Z', '\0'),
+    BACKEND_KEY_DATA('K', '\0'),
+    PARAMETER_STATUS('S', '\0'),
+    PARSE_COMPLETE('1', '\0'),
+    BIND_COMPLETE('2', '\0'),
+    CLOSE_COMPLETE('3', '\0'),
+    NO_DATA('n', '\0'),
+    PARAMETER_DESCRIPTION('t', '\0'),
+    PORTAL_SUSPENDED('s', '\0'),
+    EMPTY_QUERY_RESPONSE('I', '\0'),
+    COPY_IN_RESPONSE('G', '\0'),
+    COPY_OUT_RESPONSE('H', '\0'),
+    COPY_BOTH_RESPONSE('W', '\0'),
+    COPY_DATA('d', 'd'),
+    COPY_DONE('c', 'c'),
+    COPY_FAIL('\0', 'f'),
+    FUNCTION_CALL_RESPONSE('V', '\0'),
+    NEGOTIATE_PROTOCOL_VERSION('v', '\0'),
+    /** PasswordMessage, and the SASL and GSSAPI responses, which share its type byte. */
+    PASSWORD_RESPONSE('\0', 'p'),
+    QUERY('\0', 'Q'),
+    PARSE('\0', 'P'),
+    BIND('\0', 'B'),
+    DESCRIBE('\0', 'D'),
+    EXECUTE('\0', 'E'),
+    SYNC('\0', 'S'),
+    FLUSH('\0', 'H'),
+    CLOSE('\0', 'C'),
+    FUNCTION_CALL('\0', 'F'),
+    TERMINATE('\0', 'X'),
+    /** A type byte that is not part of the protocol; such messages are skipped by all readers. */
+    UNKNOWN('\0', '\0');
+
+    private static final PgMessageType[] backendTypes = new PgMessageType[256];
+
+    static {
+        Arrays.fill(backendTypes, UNKNOWN);
+        for (PgMessageType type : values()) {
+            if (type.backendCode != '\0') {
+                backendTypes[type.backendCode] = type;
+            }
+        }
+    }
+
+    private final char backendCode;
+    private final char frontendCode;
+
+    PgMessageType(char backendCode, char frontendCode) {
+        this.backendCode = backendCode;
+        this.frontendCode = frontendCode;
+    }
+
+    /** Returns the type of a message received from the backend, {@link #UNKNOWN} if invalid. */
+    static PgMessageType fromBackend(byte code) {
+        return backendTypes[code & 0xFF];
+    }
+
+    /**
+     * Returns the type byte to encode the message with: the frontend's, or the backend's for
+     * messages only the backend sends.
+     */
+    char code() {
+        if (this == UNKNOWN) {
+            throw new RuntimeException("UNKNOWN messages cannot be encoded");
+        }
+        return frontendCode != '\0' ? frontendCode : backendCode;
+    }
 }
@@ -0,0 +1,152 @@
+package io.shubham0204;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link PgMetricsListener} aggregating the callbacks of any number of connections.
+ *
+ * <pre>{@code
+ * var metrics = new PgMetrics(Duration.ofMillis(100));
+ * var pool = new PgConnectionPool(config, metrics);
+ * ...
+ * System.out.println(metrics.queryLatency()); // count=... p50=... p99=... in nanoseconds
+ * }</pre>
+ *
+ * <p>Message counts are kept in arrays indexed by {@link PgMessageType#ordinal()}, and all other
+ * counters are {@link LongAdder}s or {@link PgHistogram}s, so recording never takes a lock. Queries
+ * slower than the optional threshold are logged as warnings with their SQL text.
+ */
+public class PgMetrics implements PgMetricsListener {
+
+    private static final int MESSAGE_TYPE_COUNT = PgMessageType.values().length;
+
+    private final long slowQueryThresholdNanos;
+    private final PgHistogram queryLatency = new PgHistogram();
+    private final PgHistogram rowsPerQuery = new PgHistogram();
+    private final PgHistogram authLatency = new PgHistogram();
+    private final LongAdder failedQueries = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder socketBlockedNanos = new LongAdder();
+    private final AtomicLongArray messagesSent = new AtomicLongArray(MESSAGE_TYPE_COUNT);
+    private final AtomicLongArray messagesReceived = new AtomicLongArray(MESSAGE_TYPE_COUNT);
+    private final Logger logger = Logger.getLogger(PgMetrics.class.getName());
+
+    /** Creates metrics which do not log slow queries. */
+    public PgMetrics() {
+        this.slowQueryThresholdNanos = Long.MAX_VALUE;
+    }
+
+    /**
+     * @param slowQueryThreshold queries taking at least this long are logged at WARNING level
+     */
+    public PgMetrics(Duration slowQueryThreshold) {
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+    }
+
+    @Override
+    public void messageSent(PgMessageType type, int bytes) {
+        messagesSent.incrementAndGet(type.ordinal());
+        bytesSent.add(bytes);
+    }
+
+    @Override
+    public void messageReceived(PgMessageType type, int bytes) {
+        messagesReceived.incrementAndGet(type.ordinal());
+        bytesReceived.add(bytes);
+    }
+
+    @Override
+    public void socketBlocked(long nanos) {
+        socketBlockedNanos.add(nanos);
+    }
+
+    @Override
+    public void authenticated(long nanos) {
+        authLatency.record(nanos);
+    }
+
+    @Override
+    public void queryCompleted(String sql, long nanos, long rows, PgServerException error) {
+        queryLatency.record(nanos);
+        rowsPerQuery.record(rows);
+        if (error != null) {
+            failedQueries.increment();
+        }
+        if (nanos >= slowQueryThresholdNanos) {
+            logger.log(
+                    Level.WARNING,
+                    "slow query took %d ms for %d rows: %s"
+                            .formatted(nanos / 1_000_000, rows, sql));
+        }
+    }
+
+    /** Latency of completed queries in nanoseconds. */
+    public PgHistogram queryLatency() {
+        return queryLatency;
+    }
+
+    /** Rows received per completed query. */
+    public PgHistogram rowsPerQuery() {
+        return rowsPerQuery;
+    }
+
+    /** Time from the StartupMessage to ReadyForQuery in nanoseconds. */
+    public PgHistogram authLatency() {
+        return authLatency;
+    }
+
+    public long queries() {
+        return queryLatency.count();
+    }
+
+    public long failedQueries() {
+        return failedQueries.sum();
+    }
+
+    /** Bytes of all messages sent, except the StartupMessage which has no type byte. */
+    public long bytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long bytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    /** Total time spent blocked in socket reads and writes, in nanoseconds. */
+    public long socketBlockedNanos() {
+        return socketBlockedNanos.sum();
+    }
+
+    public long messagesSent(PgMessageType type) {
+        return messagesSent.get(type.ordinal());
+    }
+
+    public long messagesReceived(PgMessageType type) {
+        return messagesReceived.get(type.ordinal());
+    }
+
+    @Override
+    public String toString() {
+        var builder = new StringBuilder();
+        builder.append("queries: %d (%d failed)\n".formatted(queries(), failedQueries()));
+        builder.append("query latency (ns): %s\n".formatted(queryLatency));
+        builder.append("rows per query: %s\n".formatted(rowsPerQuery));
+        builder.append("auth latency (ns): %s\n".formatted(authLatency));
+        builder.append(
+                "bytes sent: %d, received: %d, socket blocked: %d ms\n"
+                        .formatted(bytesSent(), bytesReceived(), socketBlockedNanos() / 1_000_000));
+        for (PgMessageType type : PgMessageType.values()) {
+            long sent = messagesSent(type);
+            long received = messagesReceived(type);
+            if (sent > 0 || received > 0) {
+                builder.append("%s: sent %d, received %d\n".formatted(type, sent, received));
+            }
+        }
+        return builder.toString();
+    }
+}
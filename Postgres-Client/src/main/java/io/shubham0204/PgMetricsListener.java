@@ -0,0 +1,55 @@
+package io.shubham0204;
+
+/**
+ * Receives timings and counts from {@link PgClient} and its {@link PgTransport}, see {@link
+ * PgClient#setMetricsListener(PgMetricsListener)}.
+ *
+ * <p>Callbacks run synchronously on the thread using the connection, in the middle of reading or
+ * writing messages, so they must be cheap and must not use the connection. A listener shared by
+ * several connections, e.g. through {@link PgConnectionPool}, is called from several threads at
+ * once. All methods do nothing by default; {@link PgMetrics} aggregates them into counters and
+ * histograms.
+ */
+public interface PgMetricsListener {
+
+    /** Listener which ignores everything, used when none is set. */
+    PgMetricsListener NONE = new PgMetricsListener() {};
+
+    /**
+     * Called for every message queued for the server.
+     *
+     * @param bytes size of the message including its type byte and length
+     */
+    default void messageSent(PgMessageType type, int bytes) {}
+
+    /**
+     * Called for every message read from the server.
+     *
+     * @param bytes size of the message including its type byte and length
+     */
+    default void messageReceived(PgMessageType type, int bytes) {}
+
+    /**
+     * Called after the transport waited for the socket, i.e. a blocking read or write returned.
+     *
+     * @param nanos time spent in the read or write calls
+     */
+    default void socketBlocked(long nanos) {}
+
+    /**
+     * Called once authentication succeeded.
+     *
+     * @param nanos time from the StartupMessage to ReadyForQuery
+     */
+    default void authenticated(long nanos) {}
+
+    /**
+     * Called when a query finished, successfully or not.
+     *
+     * @param sql the query as given by the caller
+     * @param nanos time from sending the query to reading its last message
+     * @param rows number of DataRow messages received for the query
+     * @param error the error reported by the server, or {@code null}
+     */
+    default void queryCompleted(String sql, long nanos, long rows, PgServerException error) {}
+}
@@ -0,0 +1,23 @@
+package io.shubham0204;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A notification raised with {@code NOTIFY} on a channel the connection listens to.
+ *
+ * @param processId process ID of the notifying backend
+ * @param channel name of the channel
+ * @param payload payload string, empty if none was given
+ */
+public record PgNotification(int processId, String channel, String payload) {
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-NOTIFICATIONRESPONSE">NotificationResponse</a> message format.
+     */
+    static PgNotification fromNotificationResponse(ByteBuffer payload) {
+        var buf = payload.duplicate();
+        int processId = buf.getInt();
+        String channel = CStringUtils.getCString(buf);
+        return new PgNotification(processId, channel, CStringUtils.getCString(buf));
+    }
+}
@@ -0,0 +1,351 @@
+package io.shubham0204;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A dedicated connection which LISTENs to channels and hands every NotificationResponse to the
+ * handlers registered for its channel.
+ *
+ * <pre>{@code
+ * var listener = new PgNotificationListener(config, executor, Duration.ofMillis(500));
+ * listener.listen("orders_changed", notification -> cache.invalidate(notification.payload()));
+ * listener.setReconnectHandler(cache::invalidateAll);
+ * }</pre>
+ *
+ * <p>A virtual thread blocks on the socket and does nothing but read notifications, so they arrive
+ * as soon as the notifying transaction commits instead of on the next poll. Handlers run on the
+ * given executor, so a slow handler never delays reading; with a single-threaded executor they see
+ * the notifications in the order they were sent. If the connection is lost, the listener
+ * reconnects with exponential backoff, starting at {@code reconnectDelay}, and LISTENs to all
+ * channels again. Notifications sent while it was disconnected are lost, which the reconnect
+ * handler can make up for, e.g. by invalidating the whole cache.
+ */
+public class PgNotificationListener implements AutoCloseable {
+
+    // the reconnect delay doubles per failed attempt up to 32 times the initial delay
+    private static final int MAX_BACKOFF_SHIFT = 5;
+
+    private final PgPoolConfig config;
+    private final Executor executor;
+    private final Duration reconnectDelay;
+    private final ConcurrentHashMap<String, List<Consumer<PgNotification>>> handlers =
+            new ConcurrentHashMap<>();
+    // serializes writes to the connection, and guards replacing it, against the reading thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition acknowledged = lock.newCondition();
+    // held by listen() and unlisten() until the server confirmed the change, so changes to the
+    // same channel reach the server in the order they are made to the handlers
+    private final ReentrantLock subscriptionLock = new ReentrantLock();
+    private final Thread reader;
+    private final Logger logger = Logger.getLogger(PgNotificationListener.class.getName());
+    private PgClient client;
+    // incremented per connection, so that waiting for a reply stops when the connection is lost
+    private long generation = 0;
+    private long queriesSent = 0;
+    private long queriesAcknowledged = 0;
+    // set by a reconnect until the server acknowledged the first resubscribeQueries queries
+    private boolean resubscribing = false;
+    private long resubscribeQueries = 0;
+    private volatile Runnable reconnectHandler;
+    private volatile boolean closed = false;
+
+    /**
+     * Connects and authenticates the listener connection.
+     *
+     * @param config host, port, database and credentials to connect with; pool sizes are not used
+     * @param executor runs the handlers
+     * @param reconnectDelay time to wait before the first attempt to reconnect
+     */
+    public PgNotificationListener(PgPoolConfig config, Executor executor, Duration reconnectDelay) {
+        this.config = config;
+        this.executor = executor;
+        this.reconnectDelay = reconnectDelay;
+        this.client = connect();
+        this.reader =
+                Thread.ofVirtual().name("pg-notification-listener").start(this::receiveLoop);
+    }
+
+    /**
+     * Registers a handler for the channel, sending LISTEN if it is the first one. Returns once the
+     * server confirmed the LISTEN, so notifications sent afterwards are received. Channel names are
+     * quoted, i.e. case-sensitive.
+     */
+    public void listen(String channel, Consumer<PgNotification> handler) {
+        subscriptionLock.lock();
+        try {
+            var isNew = new boolean[1];
+            handlers.computeIfAbsent(
+                            channel,
+                            c -> {
+                                isNew[0] = true;
+                                return new CopyOnWriteArrayList<>();
+                            })
+                    .add(handler);
+            if (isNew[0]) {
+                send("LISTEN " + quote(channel));
+            }
+        } finally {
+            subscriptionLock.unlock();
+        }
+    }
+
+    /** Removes all handlers of the channel and sends UNLISTEN. */
+    public void unlisten(String channel) {
+        subscriptionLock.lock();
+        try {
+            if (handlers.remove(channel) != null) {
+                send("UNLISTEN " + quote(channel));
+            }
+        } finally {
+            subscriptionLock.unlock();
+        }
+    }
+
+    /**
+     * Sets an action run on the executor each time the listener reconnected and the server
+     * acknowledged the LISTENs to all channels again.
+     */
+    public void setReconnectHandler(Runnable reconnectHandler) {
+        this.reconnectHandler = reconnectHandler;
+    }
+
+    /** Returns true if the listener connection is currently open. */
+    public boolean isConnected() {
+        lock.lock();
+        try {
+            return client != null && client.isConnected();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // interrupting a read closes the socket; the reading thread then releases the connection
+        reader.interrupt();
+        lock.lock();
+        try {
+            acknowledged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (Thread.currentThread() == reader) {
+            // closed by a handler running on the reading thread, which exits after it returns
+            return;
+        }
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void receiveLoop() {
+        int failures = 0;
+        while (true) {
+            PgClient current;
+            lock.lock();
+            try {
+                current = client;
+            } finally {
+                lock.unlock();
+            }
+            if (current != null) {
+                try {
+                    receive(current);
+                } catch (RuntimeException e) {
+                    if (!closed) {
+                        logger.log(
+                                Level.WARNING,
+                                "listener connection lost: %s".formatted(e.getMessage()));
+                    }
+                }
+                disconnect(current);
+            }
+            if (closed) {
+                return;
+            }
+            try {
+                long factor = 1L << Math.min(failures, MAX_BACKOFF_SHIFT);
+                Thread.sleep(reconnectDelay.multipliedBy(factor));
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                if (resubscribe()) {
+                    runReconnectHandler();
+                }
+                failures = 0;
+            } catch (RuntimeException e) {
+                failures++;
+                logger.log(Level.FINE, "reconnect failed: %s".formatted(e.getMessage()));
+            }
+        }
+    }
+
+    /** Reads messages until the connection fails or is closed. */
+    private void receive(PgClient current) {
+        while (true) {
+            PgMessage msg = current.transport().receive();
+            switch (msg.type()) {
+                case NOTIFICATION_RESPONSE ->
+                        dispatch(PgNotification.fromNotificationResponse(msg.payload()));
+                case READY_FOR_QUERY -> {
+                    boolean resubscribed;
+                    lock.lock();
+                    try {
+                        queriesAcknowledged++;
+                        acknowledged.signalAll();
+                        resubscribed = resubscribing && queriesAcknowledged >= resubscribeQueries;
+                        if (resubscribed) {
+                            resubscribing = false;
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (resubscribed) {
+                        runReconnectHandler();
+                    }
+                }
+                case ERROR ->
+                        logger.log(
+                                Level.WARNING,
+                                PgServerException.fromErrorResponse(msg.payload()).getMessage());
+                default -> {}
+            }
+        }
+    }
+
+    private void runReconnectHandler() {
+        var handler = reconnectHandler;
+        if (handler != null && !closed) {
+            executor.execute(handler);
+        }
+    }
+
+    private void dispatch(PgNotification notification) {
+        var channelHandlers = handlers.get(notification.channel());
+        if (channelHandlers == null) {
+            return;
+        }
+        for (var handler : channelHandlers) {
+            executor.execute(
+                    () -> {
+                        try {
+                            handler.accept(notification);
+                        } catch (RuntimeException e) {
+                            logger.log(
+                                    Level.WARNING,
+                                    "handler for %s failed: %s"
+                                            .formatted(notification.channel(), e.getMessage()));
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Sends a simple query and waits for its ReadyForQuery, which the reading thread counts. If
+     * the connection is down, nothing is sent: resubscribing after the reconnect covers it.
+     */
+    private void send(String sql) {
+        lock.lock();
+        try {
+            if (client == null || closed) {
+                return;
+            }
+            long connection = generation;
+            long sequence;
+            try {
+                client.transport().write(PgClient.buildQueryMessage(sql));
+                sequence = ++queriesSent;
+            } catch (RuntimeException e) {
+                logger.log(Level.FINE, "%s failed: %s".formatted(sql, e.getMessage()));
+                return;
+            }
+            while (!closed && generation == connection && queriesAcknowledged < sequence) {
+                acknowledged.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens a new connection and sends a LISTEN for every channel.
+     *
+     * @return true if there were no channels, otherwise the reading thread runs the reconnect
+     *     handler once the server acknowledged all LISTENs
+     */
+    private boolean resubscribe() {
+        var connected = connect();
+        lock.lock();
+        try {
+            if (closed) {
+                connected.close();
+                return false;
+            }
+            client = connected;
+            generation++;
+            queriesSent = 0;
+            queriesAcknowledged = 0;
+            // replies are counted by the reading thread once this returns
+            for (String channel : handlers.keySet()) {
+                client.transport().queue(PgClient.buildQueryMessage("LISTEN " + quote(channel)));
+                queriesSent++;
+            }
+            client.transport().flush();
+            resubscribeQueries = queriesSent;
+            resubscribing = queriesSent > 0;
+            logger.log(
+                    Level.INFO,
+                    "listener reconnected to %d channels".formatted(handlers.size()));
+            return !resubscribing;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void disconnect(PgClient current) {
+        lock.lock();
+        try {
+            if (client == current) {
+                client = null;
+                generation++;
+                acknowledged.signalAll();
+            }
+            current.close();
+        } catch (RuntimeException e) {
+            logger.log(Level.FINE, "close() failed: %s".formatted(e.getMessage()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PgClient connect() {
+        var connected = new PgClient();
+        connected.connect(config.host(), config.port());
+        try {
+            connected.authenticate(config.database(), config.user(), config.password());
+        } catch (RuntimeException e) {
+            connected.close();
+            throw e;
+        }
+        return connected;
+    }
+
+    private static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+}
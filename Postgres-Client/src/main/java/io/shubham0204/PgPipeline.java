@@ -0,0 +1,191 @@
+package io.shubham0204;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Queues extended-protocol queries on one connection and sends them with a single write, so a
+ * batch of queries costs one network round trip instead of one per query.
+ *
+ * <p>Results are delivered in order through per-query futures, which are completed on the thread
+ * calling {@link #sync()}. Like {@link PgClient}, a pipeline must not be used from several threads
+ * at once.
+ */
+public class PgPipeline {
+
+    private static class PendingQuery {
+        final String query;
+        final boolean parse;
+        // statements closed by messages sent just before this query's
+        final List<String> closedStatements;
+        boolean parsed = false;
+        final PgResultCollector collector = new PgResultCollector();
+        final CompletableFuture<PgQueryResult> result = new CompletableFuture<>();
+
+        PendingQuery(String query, boolean parse, List<String> closedStatements) {
+            this.query = query;
+            this.parse = parse;
+            this.closedStatements = closedStatements;
+        }
+    }
+
+    private final PgClient client;
+    private final boolean syncEachQuery;
+    private final List<PgMessage> messages = new ArrayList<>();
+    private final List<PendingQuery> pending = new ArrayList<>();
+
+    PgPipeline(PgClient client, boolean syncEachQuery) {
+        this.client = client;
+        this.syncEachQuery = syncEachQuery;
+    }
+
+    /**
+     *
+     * Queues a query. Nothing is sent to the server until {@link #sync()} is called.
+     *
+     * @param query Postgres SQL query to be executed
+     * @param params values for the placeholders $1, $2, ... of the query
+     * @return a future completed with the query's result, or with a {@link PgServerException}
+     */
+    public CompletableFuture<PgQueryResult> add(String query, Object... params) {
+        var statementCache = client.statementCache();
+        var statement = statementCache.get(query);
+        boolean parse = statement == null;
+        if (parse) {
+            statement = statementCache.create(query);
+        }
+        var closedStatements = statementCache.drainEvicted();
+        for (String evictedName : closedStatements) {
+            messages.add(PgFrontendMessages.close('S', evictedName));
+        }
+        if (parse) {
+            messages.add(PgFrontendMessages.parse(statement.name, query));
+        }
+        messages.add(PgFrontendMessages.bind("", statement.name, params, new short[0]));
+        messages.add(PgFrontendMessages.describe('P', ""));
+        messages.add(PgFrontendMessages.execute("", 0));
+        if (syncEachQuery) {
+            messages.add(PgFrontendMessages.sync());
+        }
+        var pendingQuery = new PendingQuery(query, parse, closedStatements);
+        pending.add(pendingQuery);
+        return pendingQuery.result;
+    }
+
+    /**
+     * Sends all queued queries in one write and reads their results, completing the futures
+     * returned by {@link #add(String, Object...)} in order.
+     *
+     * @throws PgServerException if the server fails a Sync, e.g. when a deferred constraint fails
+     *     at the implicit commit. The futures of the queries rolled back with it are then failed
+     *     with the same error, even if they were already completed with a result.
+     */
+    public void sync() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (!syncEachQuery) {
+            messages.add(PgFrontendMessages.sync());
+        }
+        var queries = List.copyOf(pending);
+        pending.clear();
+        try {
+            client.closeOpenCursor();
+            client.markBusy();
+            long startNanos = System.nanoTime();
+            client.transport().writeAll(messages);
+            client.startDeadline();
+            messages.clear();
+            readResults(queries, startNanos);
+        } catch (RuntimeException e) {
+            messages.clear();
+            queries.forEach(query -> query.result.completeExceptionally(e));
+            throw e;
+        } finally {
+            for (PendingQuery query : queries) {
+                if (query.parse && !query.parsed) {
+                    client.statementCache().remove(query.query, false);
+                }
+            }
+        }
+    }
+
+    private void readResults(List<PendingQuery> queries, long startNanos) {
+        int current = 0;
+        // the queries up to the next Sync, which run in one implicit transaction
+        int transactionStart = 0;
+        PgServerException syncError = null;
+        int readyForQueryExpected = syncEachQuery ? queries.size() : 1;
+        while (readyForQueryExpected > 0) {
+            PgMessage msg = client.transport().read();
+            switch (msg.type()) {
+                case PARSE_COMPLETE -> queries.get(current).parsed = true;
+                case ROW_DESC -> queries.get(current).collector.onRowDescription(msg);
+                case ROW_DATA -> queries.get(current).collector.onDataRow(msg);
+                case COMMAND_COMPLETE -> {
+                    var query = queries.get(current++);
+                    completed(query, startNanos, null);
+                    query.result.complete(query.collector.onCommandComplete(msg));
+                }
+                case EMPTY_QUERY_RESPONSE -> {
+                    var query = queries.get(current++);
+                    completed(query, startNanos, null);
+                    query.result.complete(query.collector.onEmptyQuery());
+                }
+                case ERROR -> {
+                    var error = PgServerException.fromErrorResponse(msg.payload());
+                    int transactionEnd = syncEachQuery ? transactionStart + 1 : queries.size();
+                    if (current == transactionEnd) {
+                        // an error while processing Sync, e.g. a deferred constraint failing at
+                        // the implicit commit, which rolls back the queries reported as complete
+                        for (int i = transactionStart; i < transactionEnd; i++) {
+                            queries.get(i).result.obtrudeException(error);
+                        }
+                        if (syncError == null) {
+                            syncError = error;
+                        }
+                        continue;
+                    }
+                    var query = queries.get(current++);
+                    completed(query, startNanos, error);
+                    query.result.completeExceptionally(error);
+                    if (PgClient.isStaleStatementError(error)) {
+                        client.statementCache().remove(query.query, !query.parse || query.parsed);
+                    }
+                    if (!syncEachQuery) {
+                        // the server skips everything up to the Sync after an error, including
+                        // the Close messages of later queries, so those are sent again next time
+                        for (; current < queries.size(); current++) {
+                            var skipped = queries.get(current);
+                            client.statementCache().requeueEvicted(skipped.closedStatements);
+                            skipped.result.completeExceptionally(
+                                    new RuntimeException(
+                                            "Query skipped after an earlier pipeline error: %s"
+                                                    .formatted(error.getMessage())));
+                        }
+                    }
+                }
+                case READY_FOR_QUERY -> {
+                    client.handleReadyForQueryMessage(msg);
+                    readyForQueryExpected--;
+                    transactionStart = current;
+                }
+                default -> {}
+            }
+        }
+        if (syncError != null) {
+            throw syncError;
+        }
+    }
+
+    /** Reports a finished query, timed from the write of the whole pipeline. */
+    private void completed(PendingQuery query, long startNanos, PgServerException error) {
+        client.metrics()
+                .queryCompleted(
+                        query.query,
+                        System.nanoTime() - startNanos,
+                        query.collector.rowCount(),
+                        error);
+    }
+}
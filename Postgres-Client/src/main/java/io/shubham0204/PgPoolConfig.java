@@ -0,0 +1,81 @@
+package io.shubham0204;
+
+import java.time.Duration;
+
+/**
+ * Settings for {@link PgConnectionPool}.
+ *
+ * @param host host-name of the Postgres DB server
+ * @param port port of the Postgres DB server
+ * @param database Name of the database to connect
+ * @param user User name
+ * @param password Password (plain-text)
+ * @param minSize number of connections kept open even when idle
+ * @param maxSize upper bound on open connections, idle or checked out
+ * @param idleTimeout idle connections above {@code minSize} are closed after this long
+ * @param validationInterval connections idle for longer than this are pinged before checkout
+ * @param checkoutTimeout how long {@link PgConnectionPool#acquire()} waits for a free connection
+ */
+public record PgPoolConfig(
+        String host,
+        int port,
+        String database,
+        String user,
+        String password,
+        int minSize,
+        int maxSize,
+        Duration idleTimeout,
+        Duration validationInterval,
+        Duration checkoutTimeout) {
+
+    public PgPoolConfig {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException(
+                    "Invalid pool size: minSize=%d, maxSize=%d".formatted(minSize, maxSize));
+        }
+    }
+
+    /** Returns a config with 1 to 10 connections and default timeouts. */
+    public static PgPoolConfig of(
+            String host, int port, String database, String user, String password) {
+        return new PgPoolConfig(
+                host,
+                port,
+                database,
+                user,
+                password,
+                1,
+                10,
+                Duration.ofMinutes(5),
+                Duration.ofSeconds(30),
+                Duration.ofSeconds(30));
+    }
+
+    public PgPoolConfig withSize(int minSize, int maxSize) {
+        return new PgPoolConfig(
+                host,
+                port,
+                database,
+                user,
+                password,
+                minSize,
+                maxSize,
+                idleTimeout,
+                validationInterval,
+                checkoutTimeout);
+    }
+
+    public PgPoolConfig withHost(String host, int port) {
+        return new PgPoolConfig(
+                host,
+                port,
+                database,
+                user,
+                password,
+                minSize,
+                maxSize,
+                idleTimeout,
+                validationInterval,
+                checkoutTimeout);
+    }
+}
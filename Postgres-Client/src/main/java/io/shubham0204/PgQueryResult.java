@@ -0,0 +1,12 @@
+package io.shubham0204;
+
+import java.util.List;
+
+/**
+ * A fully materialized query result with fields decoded as text.
+ *
+ * @param columns column names from the RowDescription message, empty if the query returns no rows
+ * @param rows one array of field values per row, with {@code null} for SQL NULL
+ * @param commandTag tag from the CommandComplete message, e.g. "SELECT 5" or "INSERT 0 1"
+ */
+public record PgQueryResult(List<String> columns, List<String[]> rows, String commandTag) {}
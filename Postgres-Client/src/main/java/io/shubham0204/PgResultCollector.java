@@ -0,0 +1,66 @@
+package io.shubham0204;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accumulates the RowDescription and DataRow messages of one query into a {@link PgQueryResult}.
+ */
+class PgResultCollector {
+
+    private List<String> columns = List.of();
+    private final List<String[]> rows = new ArrayList<>();
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-ROWDESCRIPTION">RowDescription</a> message format.
+     */
+    void onRowDescription(PgMessage message) {
+        var buf = message.payload().duplicate();
+        int columnCount = buf.getShort();
+        var names = new ArrayList<String>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            names.add(CStringUtils.getInternedCString(buf));
+            buf.position(buf.position() + 18); // Skip field info
+        }
+        this.columns = List.copyOf(names);
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-DATAROW">DataRow</a> message format.
+     */
+    void onDataRow(PgMessage message) {
+        var buf = message.payload().duplicate();
+        int fieldCount = buf.getShort();
+        String[] row = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            int fieldLen = buf.getInt();
+            if (fieldLen != -1) {
+                row[i] = CStringUtils.getString(buf, buf.position(), fieldLen);
+                buf.position(buf.position() + fieldLen);
+            }
+        }
+        rows.add(row);
+    }
+
+    int rowCount() {
+        return rows.size();
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-COMMANDCOMPLETE">CommandComplete</a> message format.
+     * Starts over afterwards, so that each statement of a multi-statement simple query gets only
+     * its own rows.
+     */
+    PgQueryResult onCommandComplete(PgMessage message) {
+        String commandTag = PgBackendMessages.commandTag(message.payload());
+        var result = new PgQueryResult(columns, List.copyOf(rows), commandTag);
+        columns = List.of();
+        rows.clear();
+        return result;
+    }
+
+    /** Result of an empty query string, which has neither rows nor a command tag. */
+    PgQueryResult onEmptyQuery() {
+        return new PgQueryResult(List.of(), List.of(), "");
+    }
+}
@@ -0,0 +1,348 @@
+package io.shubham0204;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Routes work across a primary and its read replicas, each with its own {@link
+ * PgConnectionPool}.
+ *
+ * <pre>{@code
+ * var router = new PgRouter(
+ *         config,
+ *         List.of(PgRouter.Host.primary("db-1", 5432), PgRouter.Host.replica("db-2", 5432)),
+ *         PgRouter.Balancing.LEAST_OUTSTANDING,
+ *         Duration.ofSeconds(5));
+ * router.withPrimary(client -> { client.executePrepared("UPDATE ...", id); return null; });
+ * List<User> users = router.withReplica(client -> client.queryAs(User.class, "SELECT ..."));
+ * }</pre>
+ *
+ * <p>The configured roles are only a starting point: every host is asked {@code SELECT
+ * pg_is_in_recovery()} when the router is created and then periodically, and the answer decides
+ * whether it takes writes. When the primary fails over, the promoted replica is picked up by the
+ * next check, or right away when a connection to the old primary fails or the server rejects a
+ * write as read-only (SQLSTATE 25006). Reads go to a healthy replica chosen by {@link Balancing},
+ * or to the primary if no replica is healthy. The work itself is never retried, since it may not
+ * be idempotent; only opening a connection to a host which just went down falls over to another
+ * host.
+ *
+ * <p>Health checks run over one dedicated connection per host rather than through its pool, so a
+ * busy host whose pool has no free connection is not mistaken for a failed one. Likewise, a
+ * checkout that times out only marks the host down if its health check fails too; otherwise the
+ * timeout is passed on as back-pressure.
+ */
+public final class PgRouter implements AutoCloseable {
+
+    public enum Role {
+        PRIMARY,
+        REPLICA
+    }
+
+    public enum Balancing {
+        /** The replica with the fewest calls in progress, taking turns when several are equal. */
+        LEAST_OUTSTANDING,
+        /** The replica with the least calls in progress times its health check round trip. */
+        LATENCY_WEIGHTED
+    }
+
+    /**
+     * @param role the expected role until the first health check
+     */
+    public record Host(String host, int port, Role role) {
+
+        public static Host primary(String host, int port) {
+            return new Host(host, port, Role.PRIMARY);
+        }
+
+        public static Host replica(String host, int port) {
+            return new Host(host, port, Role.REPLICA);
+        }
+
+        @Override
+        public String toString() {
+            return "%s:%d".formatted(host, port);
+        }
+    }
+
+    private static final String RECOVERY_QUERY = "SELECT pg_is_in_recovery()";
+    private static final String READ_ONLY_SQL_TRANSACTION = "25006";
+
+    private static final class Node {
+        final Host host;
+        final PgPoolConfig config;
+        final PgConnectionPool pool;
+        final AtomicInteger outstanding = new AtomicInteger();
+        volatile boolean healthy = true;
+        volatile boolean primary;
+        // moving average of the health check round trip
+        volatile long latencyNanos;
+        // only used for health checks, with the router's health lock held
+        PgClient healthClient;
+
+        Node(Host host, PgPoolConfig config) {
+            this.host = host;
+            this.config = config;
+            this.pool = new PgConnectionPool(config);
+            this.primary = host.role() == Role.PRIMARY;
+        }
+    }
+
+    private final List<Node> nodes;
+    private final Balancing balancing;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+    private final ReentrantLock healthLock = new ReentrantLock();
+    private final Logger logger = Logger.getLogger(PgRouter.class.getName());
+
+    /**
+     * Creates a pool per host and checks their roles before returning. A host which is down is
+     * retried by every health check, so the pools do not open {@link PgPoolConfig#minSize()}
+     * connections up front.
+     *
+     * @param config settings for every pool; its host and port are replaced by each host's
+     * @param healthCheckInterval time between two checks of all hosts
+     */
+    public PgRouter(
+            PgPoolConfig config,
+            List<Host> hosts,
+            Balancing balancing,
+            Duration healthCheckInterval) {
+        if (hosts.isEmpty()) {
+            throw new IllegalArgumentException("No hosts to route to");
+        }
+        var nodes = new ArrayList<Node>();
+        for (Host host : hosts) {
+            var poolConfig =
+                    config.withHost(host.host(), host.port()).withSize(0, config.maxSize());
+            nodes.add(new Node(host, poolConfig));
+        }
+        this.nodes = List.copyOf(nodes);
+        this.balancing = balancing;
+        checkHealth();
+        this.healthChecker =
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> Thread.ofPlatform().name("pg-router-health").daemon().unstarted(r));
+        long periodMillis = healthCheckInterval.toMillis();
+        healthChecker.scheduleWithFixedDelay(
+                this::checkHealth, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs {@code action} with a connection to the primary.
+     *
+     * @throws RuntimeException if no host is known to be the primary
+     */
+    public <T> T withPrimary(Function<PgClient, T> action) {
+        return run(action, true);
+    }
+
+    /**
+     * Runs {@code action} with a connection to a replica, or to the primary if no replica is
+     * healthy. The action should only read, as replicas reject writes.
+     */
+    public <T> T withReplica(Function<PgClient, T> action) {
+        return run(action, false);
+    }
+
+    /**
+     * Asks every host whether it is in recovery, updating which hosts are healthy and which one is
+     * the primary. Called periodically; call it directly to react to a known failover at once.
+     */
+    public void checkHealth() {
+        healthLock.lock();
+        try {
+            nodes.forEach(this::checkHost);
+        } finally {
+            healthLock.unlock();
+        }
+    }
+
+    /** Returns the host currently taking writes, or {@code null} if none is healthy. */
+    public Host primary() {
+        var node = primaryNode();
+        return node == null ? null : node.host;
+    }
+
+    /** Returns the healthy hosts currently serving reads only. */
+    public List<Host> replicas() {
+        var replicas = new ArrayList<Host>();
+        for (Node node : nodes) {
+            if (node.healthy && !node.primary) {
+                replicas.add(node.host);
+            }
+        }
+        return replicas;
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        nodes.forEach(node -> node.pool.close());
+        healthLock.lock();
+        try {
+            nodes.forEach(PgRouter::closeHealthClient);
+        } finally {
+            healthLock.unlock();
+        }
+    }
+
+    private <T> T run(Function<PgClient, T> action, boolean write) {
+        for (int attempt = 0; ; attempt++) {
+            var node = write ? primaryNode() : replicaNode();
+            if (node == null) {
+                throw new RuntimeException(
+                        "No %s available among %s"
+                                .formatted(write ? "primary" : "host", hostNames()));
+            }
+            PgClient client;
+            try {
+                client = node.pool.acquire();
+            } catch (RuntimeException e) {
+                // a saturated pool times out while the host is up, so only move on if the host
+                // fails its check too; nothing was sent yet, so the work can go to another host
+                checkHealth();
+                if (node.healthy || attempt > 0) {
+                    throw e;
+                }
+                continue;
+            }
+            node.outstanding.incrementAndGet();
+            try {
+                return action.apply(client);
+            } catch (PgServerException e) {
+                if (e.getSqlState().equals(READ_ONLY_SQL_TRANSACTION)) {
+                    // the primary was demoted since the last check
+                    node.primary = false;
+                    healthChecker.execute(this::checkHealth);
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                if (!client.isConnected()) {
+                    node.healthy = false;
+                    healthChecker.execute(this::checkHealth);
+                }
+                throw e;
+            } finally {
+                node.outstanding.decrementAndGet();
+                node.pool.release(client);
+            }
+        }
+    }
+
+    /** Asks one host whether it is in recovery, with {@link #healthLock} held. */
+    private void checkHost(Node node) {
+        long startNanos = System.nanoTime();
+        try {
+            if (node.healthClient == null || !node.healthClient.isConnected()) {
+                closeHealthClient(node);
+                node.healthClient = openHealthClient(node.config);
+            }
+            boolean inRecovery = isInRecovery(node.healthClient);
+            long nanos = System.nanoTime() - startNanos;
+            long average = node.latencyNanos == 0 ? nanos : (node.latencyNanos * 7 + nanos) / 8;
+            node.latencyNanos = Math.max(1, average);
+            if (node.primary == inRecovery || !node.healthy) {
+                String role = inRecovery ? "replica" : "primary";
+                logger.log(Level.INFO, "%s is up as %s".formatted(node.host, role));
+            }
+            node.primary = !inRecovery;
+            node.healthy = true;
+        } catch (RuntimeException e) {
+            closeHealthClient(node);
+            if (node.healthy) {
+                String reason = e.getMessage();
+                logger.log(Level.WARNING, "%s is down: %s".formatted(node.host, reason));
+            }
+            node.healthy = false;
+        }
+    }
+
+    private static PgClient openHealthClient(PgPoolConfig config) {
+        var client = new PgClient();
+        client.connect(config.host(), config.port());
+        try {
+            client.authenticate(config.database(), config.user(), config.password());
+        } catch (RuntimeException e) {
+            client.close();
+            throw e;
+        }
+        return client;
+    }
+
+    private static void closeHealthClient(Node node) {
+        if (node.healthClient == null) {
+            return;
+        }
+        try {
+            node.healthClient.close();
+        } catch (RuntimeException e) {
+            // the connection is being replaced or the router is closing anyway
+        }
+        node.healthClient = null;
+    }
+
+    private Node primaryNode() {
+        for (Node node : nodes) {
+            if (node.healthy && node.primary) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private Node replicaNode() {
+        int replicaCount = 0;
+        for (Node node : nodes) {
+            if (node.healthy && !node.primary) {
+                replicaCount++;
+            }
+        }
+        if (replicaCount == 0) {
+            return primaryNode();
+        }
+        // replicas with equal scores take turns, starting at a rotating position
+        int offset = Math.floorMod(nextReplica.getAndIncrement(), replicaCount);
+        Node best = null;
+        long bestScore = Long.MAX_VALUE;
+        int bestTurn = Integer.MAX_VALUE;
+        int replica = 0;
+        for (Node node : nodes) {
+            if (!node.healthy || node.primary) {
+                continue;
+            }
+            long score = node.outstanding.get();
+            if (balancing == Balancing.LATENCY_WEIGHTED) {
+                score = (score + 1) * node.latencyNanos;
+            }
+            int turn = Math.floorMod(replica++ - offset, replicaCount);
+            if (score < bestScore || (score == bestScore && turn < bestTurn)) {
+                best = node;
+                bestScore = score;
+                bestTurn = turn;
+            }
+        }
+        return best == null ? primaryNode() : best;
+    }
+
+    private String hostNames() {
+        return nodes.stream().map(node -> node.host.toString()).toList().toString();
+    }
+
+    private static boolean isInRecovery(PgClient client) {
+        try (RowCursor cursor = client.query(RECOVERY_QUERY)) {
+            if (!cursor.next()) {
+                throw new RuntimeException("%s returned no rows".formatted(RECOVERY_QUERY));
+            }
+            return cursor.row().getBoolean(0);
+        }
+    }
+}
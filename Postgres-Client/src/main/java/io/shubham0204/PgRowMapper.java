@@ -0,0 +1,270 @@
+package io.shubham0204;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps rows to instances of a record or POJO class, see {@link PgClient#queryAs(Class, String,
+ * Object...)}.
+ *
+ * <p>Columns are matched to record components, setters or fields by name, ignoring case and
+ * underscores, so both {@code created_at} and {@code createdat} bind to {@code createdAt}. A
+ * record needs a column for every component; POJO columns without a matching property are
+ * skipped. The binding is resolved once per class and column list and cached. It is compiled into
+ * a single {@link MethodHandle} which reads each column with the typed {@link Row} accessor and
+ * passes it to the canonical constructor or the setters, so primitive values are not boxed and
+ * mapping a row does not use reflection.
+ */
+public final class PgRowMapper<R> {
+
+    private record Shape(Class<?> type, List<String> columnNames) {}
+
+    private static final int MAX_CACHED_MAPPERS = 1024;
+    private static final ConcurrentHashMap<Shape, PgRowMapper<?>> cache = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, MethodHandle> readers = createReaders();
+
+    private final MethodHandle handle;
+
+    private PgRowMapper(MethodHandle handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Returns the mapper for rows described by {@code description}, creating it on first use.
+     *
+     * @throws IllegalArgumentException if the class cannot be bound to the columns
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> PgRowMapper<R> of(Class<R> type, RowDescription description) {
+        var names = new String[description.columnCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = description.name(i);
+        }
+        var shape = new Shape(type, Arrays.asList(names));
+        var mapper = cache.get(shape);
+        if (mapper == null) {
+            mapper = new PgRowMapper<>(bind(type, description));
+            if (cache.size() >= MAX_CACHED_MAPPERS) {
+                cache.clear();
+            }
+            cache.put(shape, mapper);
+        }
+        return (PgRowMapper<R>) mapper;
+    }
+
+    /**
+     * Creates an instance from the current row.
+     *
+     * @throws IllegalStateException if a column mapped to a primitive is NULL
+     */
+    @SuppressWarnings("unchecked")
+    public R map(Row row) {
+        try {
+            return (R) (Object) handle.invokeExact(row);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Mapping a row failed: %s".formatted(e.getMessage()), e);
+        }
+    }
+
+    /** Builds a handle of type (Row)Object creating an instance of {@code type}. */
+    private static MethodHandle bind(Class<?> type, RowDescription description) {
+        try {
+            var lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            var handle =
+                    type.isRecord()
+                            ? bindRecord(lookup, type, description)
+                            : bindPojo(lookup, type, description);
+            return handle.asType(MethodType.methodType(Object.class, Row.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(
+                    "Cannot map rows to %s: %s".formatted(type.getName(), e.getMessage()), e);
+        }
+    }
+
+    private static MethodHandle bindRecord(
+            MethodHandles.Lookup lookup, Class<?> type, RowDescription description)
+            throws ReflectiveOperationException {
+        RecordComponent[] components = type.getRecordComponents();
+        var columnIndex = columnIndex(description);
+        var componentTypes = new Class<?>[components.length];
+        var readersByComponent = new MethodHandle[components.length];
+        for (int i = 0; i < components.length; i++) {
+            componentTypes[i] = components[i].getType();
+            Integer column = columnIndex.get(normalize(components[i].getName()));
+            if (column == null) {
+                throw new IllegalArgumentException(
+                        "No column for component %s of %s"
+                                .formatted(components[i].getName(), type.getName()));
+            }
+            readersByComponent[i] = reader(componentTypes[i], column, description);
+        }
+        var constructor =
+                lookup.findConstructor(type, MethodType.methodType(void.class, componentTypes));
+        // (Row, Row, ...)R, then the same Row for every argument: (Row)R
+        var filtered = MethodHandles.filterArguments(constructor, 0, readersByComponent);
+        return MethodHandles.permuteArguments(
+                filtered, MethodType.methodType(type, Row.class), new int[components.length]);
+    }
+
+    private static MethodHandle bindPojo(
+            MethodHandles.Lookup lookup, Class<?> type, RowDescription description)
+            throws ReflectiveOperationException {
+        var constructor = lookup.findConstructor(type, MethodType.methodType(void.class));
+        var setters = setters(lookup, type);
+        // (T, Row)T returning the instance once all setters ran on it
+        var populate = MethodHandles.dropArguments(MethodHandles.identity(type), 1, Row.class);
+        for (int column = 0; column < description.columnCount(); column++) {
+            var setter = setters.get(normalize(description.name(column)));
+            if (setter == null) {
+                continue;
+            }
+            var valueType = setter.type().parameterType(1);
+            var valueReader = reader(valueType, column, description);
+            var setColumn = MethodHandles.filterArguments(setter, 1, valueReader);
+            populate = MethodHandles.foldArguments(populate, setColumn);
+        }
+        return MethodHandles.foldArguments(populate, constructor);
+    }
+
+    /** Returns setter methods, or else non-final fields, of the class by normalized name. */
+    private static Map<String, MethodHandle> setters(MethodHandles.Lookup lookup, Class<?> type)
+            throws ReflectiveOperationException {
+        var setters = new HashMap<String, MethodHandle>();
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (!Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)) {
+                setters.put(normalize(field.getName()), lookup.unreflectSetter(field));
+            }
+        }
+        for (Method method : type.getMethods()) {
+            String name = method.getName();
+            if (name.length() > 3
+                    && name.startsWith("set")
+                    && method.getParameterCount() == 1
+                    && !Modifier.isStatic(method.getModifiers())) {
+                // setters take precedence over fields
+                var setter = lookup.unreflect(method);
+                setters.put(
+                        normalize(name.substring(3)),
+                        setter.asType(setter.type().changeParameterType(0, type)));
+            }
+        }
+        return setters;
+    }
+
+    /** Returns a handle of type (Row)T reading the column as {@code javaType}. */
+    private static MethodHandle reader(Class<?> javaType, int column, RowDescription description) {
+        var reader = readers.get(javaType);
+        if (reader == null) {
+            throw new IllegalArgumentException(
+                    "Cannot map column %s to %s".formatted(description.name(column), javaType));
+        }
+        return MethodHandles.insertArguments(reader, 1, column);
+    }
+
+    private static Map<String, Integer> columnIndex(RowDescription description) {
+        var index = new HashMap<String, Integer>();
+        for (int i = description.columnCount() - 1; i >= 0; i--) {
+            // the first column wins if several share a name, like in RowDescription.indexOf()
+            index.put(normalize(description.name(i)), i);
+        }
+        return index;
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static Map<Class<?>, MethodHandle> createReaders() {
+        var lookup = MethodHandles.lookup();
+        var readers = new HashMap<Class<?>, MethodHandle>();
+        try {
+            readers.put(int.class, rowAccessor(lookup, "getInt", int.class));
+            readers.put(long.class, rowAccessor(lookup, "getLong", long.class));
+            readers.put(double.class, rowAccessor(lookup, "getDouble", double.class));
+            readers.put(boolean.class, rowAccessor(lookup, "getBoolean", boolean.class));
+            readers.put(String.class, rowAccessor(lookup, "getString", String.class));
+            readers.put(byte[].class, rowAccessor(lookup, "getBytes", byte[].class));
+            readers.put(
+                    LocalDateTime.class, rowAccessor(lookup, "getTimestamp", LocalDateTime.class));
+            readers.put(UUID.class, rowAccessor(lookup, "getUUID", UUID.class));
+            // nullable wrappers, which read NULL as null instead of throwing
+            var boxedTypes =
+                    List.of(
+                            Integer.class,
+                            Long.class,
+                            Double.class,
+                            Boolean.class,
+                            BigDecimal.class);
+            for (var boxed : boxedTypes) {
+                readers.put(boxed, helper(lookup, "read" + boxed.getSimpleName(), boxed));
+            }
+            readers.put(short.class, helper(lookup, "readShort", short.class));
+            readers.put(float.class, helper(lookup, "readFloat", float.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        return readers;
+    }
+
+    private static MethodHandle rowAccessor(
+            MethodHandles.Lookup lookup, String name, Class<?> returnType)
+            throws ReflectiveOperationException {
+        return lookup.findVirtual(Row.class, name, MethodType.methodType(returnType, int.class));
+    }
+
+    private static MethodHandle helper(
+            MethodHandles.Lookup lookup, String name, Class<?> returnType)
+            throws ReflectiveOperationException {
+        var type = MethodType.methodType(returnType, Row.class, int.class);
+        return lookup.findStatic(PgRowMapper.class, name, type);
+    }
+
+    private static Integer readInteger(Row row, int column) {
+        return row.isNull(column) ? null : row.getInt(column);
+    }
+
+    private static Long readLong(Row row, int column) {
+        return row.isNull(column) ? null : row.getLong(column);
+    }
+
+    private static Double readDouble(Row row, int column) {
+        return row.isNull(column) ? null : row.getDouble(column);
+    }
+
+    private static Boolean readBoolean(Row row, int column) {
+        return row.isNull(column) ? null : row.getBoolean(column);
+    }
+
+    private static BigDecimal readBigDecimal(Row row, int column) {
+        return row.isNull(column) ? null : new BigDecimal(row.getString(column));
+    }
+
+    private static short readShort(Row row, int column) {
+        int value = row.getInt(column);
+        if ((short) value != value) {
+            throw new ArithmeticException("short overflow: %d".formatted(value));
+        }
+        return (short) value;
+    }
+
+    private static float readFloat(Row row, int column) {
+        return (float) row.getDouble(column);
+    }
+}
@@ -0,0 +1,190 @@
+package io.shubham0204;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes the rows of a query to a single {@link Flow.Subscriber}, see {@link
+ * PgClient#publish(Function, String, Object...)}.
+ *
+ * <pre>{@code
+ * client.publish(row -> new User(row.getLong(0), row.getString(1)), "SELECT id, name FROM users")
+ *         .subscribe(subscriber);
+ * }</pre>
+ *
+ * <p>The query is sent with the first {@link Flow.Subscription#request(long)} and executed as a
+ * portal with a row limit, like a {@link RowCursor} with a fetch size: the limit of each Execute is
+ * the outstanding demand, up to {@value #MAX_FETCH_SIZE} rows, and the next Execute is only sent
+ * once the subscriber asked for more than the rows already received. Without demand, nothing is
+ * read from the socket and the server keeps the suspended portal, so a slow subscriber holds at
+ * most one batch in flight instead of making the client buffer rows.
+ *
+ * <p>The blocking reads run on a virtual thread, one drain at a time, which also delivers all
+ * signals, so {@code onNext} is never called concurrently and may request more or cancel
+ * re-entrantly. Cancelling closes the portal and leaves the connection ready for the next query;
+ * a server error is passed to {@code onError}.
+ */
+public final class PgRowPublisher<T> implements Flow.Publisher<T> {
+
+    static final int MAX_FETCH_SIZE = 1000;
+
+    private static final Executor drainExecutor =
+            task -> Thread.ofVirtual().name("pg-row-publisher").start(task);
+
+    private final PgClient client;
+    private final Function<Row, T> mapper;
+    private final String query;
+    private final Object[] params;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final Logger logger = Logger.getLogger(PgRowPublisher.class.getName());
+
+    PgRowPublisher(PgClient client, Function<Row, T> mapper, String query, Object[] params) {
+        this.client = client;
+        this.mapper = mapper;
+        this.query = query;
+        this.params = params;
+    }
+
+    /** Accepts one subscriber; any further one is failed with an {@link IllegalStateException}. */
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(
+                    new Flow.Subscription() {
+                        @Override
+                        public void request(long n) {}
+
+                        @Override
+                        public void cancel() {}
+                    });
+            subscriber.onError(
+                    new IllegalStateException("A query publisher accepts only one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new RowSubscription(subscriber));
+    }
+
+    private final class RowSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // requests to run the drain; only the caller which raised it from 0 runs the drain
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile long invalidRequest = 0;
+        // only accessed by the draining thread
+        private RowCursor cursor;
+        private boolean done = false;
+
+        RowSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = n;
+            } else {
+                // demand of Long.MAX_VALUE or more means unbounded
+                demand.getAndAccumulate(
+                        n,
+                        (current, added) -> {
+                            long sum = current + added;
+                            return sum < 0 ? Long.MAX_VALUE : sum;
+                        });
+            }
+            scheduleDrain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (pendingDrains.getAndIncrement() == 0) {
+                drainExecutor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                emit();
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            if (done) {
+                return;
+            }
+            if (cancelled) {
+                finish();
+                return;
+            }
+            if (invalidRequest != 0) {
+                // Reactive Streams rule 3.9
+                fail(
+                        new IllegalArgumentException(
+                                "request() needs a positive number, got %d"
+                                        .formatted(invalidRequest)));
+                return;
+            }
+            try {
+                while (!cancelled && demand.get() > 0) {
+                    if (cursor == null) {
+                        cursor = client.openCursor(query, params, fetchSize());
+                    } else {
+                        cursor.setFetchSize(fetchSize());
+                    }
+                    if (!cursor.next()) {
+                        done = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    T item = mapper.apply(cursor.row());
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    subscriber.onNext(item);
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            if (cancelled) {
+                finish();
+            }
+        }
+
+        /** Returns the row limit for the next Execute: the outstanding demand, within bounds. */
+        private int fetchSize() {
+            return (int) Math.max(1, Math.min(demand.get(), MAX_FETCH_SIZE));
+        }
+
+        private void fail(RuntimeException e) {
+            finish();
+            subscriber.onError(e);
+        }
+
+        /** Closes the portal, so that the connection is ready for the next query. */
+        private void finish() {
+            done = true;
+            if (cursor == null || cursor.isDone()) {
+                return;
+            }
+            try {
+                cursor.close();
+            } catch (RuntimeException e) {
+                logger.log(Level.FINE, "close() failed: %s".formatted(e.getMessage()));
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package io.shubham0204;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Client side of one SCRAM-SHA-256 exchange (<a href="https://www.rfc-editor.org/rfc/rfc7677">RFC
+ * 7677</a>), shared by {@link PgClient} and {@link PgAsyncClient}.
+ *
+ * <p>Deriving the salted password takes thousands of PBKDF2 iterations, which dominates the cost
+ * of opening a connection. The derived keys are kept in a process-wide cache keyed by user, salt,
+ * iteration count and a digest of the password, so reconnecting with the same credentials skips
+ * the derivation until the server's verifier changes. Channel binding is not supported.
+ */
+class PgScramAuthenticator {
+
+    static final String MECHANISM = "SCRAM-SHA-256";
+    private static final int NONCE_LENGTH = 18;
+    private static final int MAX_CACHED_KEYS = 1024;
+
+    private record CacheKey(String user, String salt, int iterations, String passwordDigest) {}
+
+    private record Keys(byte[] clientKey, byte[] storedKey, byte[] serverKey) {}
+
+    private static final ConcurrentHashMap<CacheKey, Keys> keyCache = new ConcurrentHashMap<>();
+    private static final AtomicLong derivations = new AtomicLong();
+    private static final SecureRandom random = new SecureRandom();
+
+    private final String user;
+    private final String password;
+    private final String clientNonce;
+    private String clientFirstMessageBare;
+    private byte[] expectedServerSignature;
+    private boolean serverVerified = false;
+
+    /**
+     * @param user user name, also sent in the exchange although Postgres uses the one of the
+     *     StartupMessage
+     */
+    PgScramAuthenticator(String user, String password) {
+        this(user, password, newNonce());
+    }
+
+    PgScramAuthenticator(String user, String password, String clientNonce) {
+        this.user = user;
+        this.password = password;
+        this.clientNonce = clientNonce;
+    }
+
+    /**
+     * Builds the SASLInitialResponse answering AuthenticationSASL. See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-SASLINITIALRESPONSE">SASLInitialResponse</a> message format.
+     *
+     * @param mechanisms payload of the AuthenticationSASL message, starting at the mechanism list
+     */
+    PgMessage clientFirstMessage(ByteBuffer mechanisms) {
+        boolean supported = false;
+        var buf = mechanisms.duplicate();
+        while (buf.hasRemaining() && buf.get(buf.position()) != 0) {
+            if (CStringUtils.getCString(buf).equals(MECHANISM)) {
+                supported = true;
+            }
+        }
+        if (!supported) {
+            throw new RuntimeException(
+                    "Server does not offer the %s mechanism".formatted(MECHANISM));
+        }
+        String saslName = user.replace("=", "=3D").replace(",", "=2C");
+        clientFirstMessageBare = "n=%s,r=%s".formatted(saslName, clientNonce);
+        byte[] message = ("n,," + clientFirstMessageBare).getBytes(StandardCharsets.UTF_8);
+        var payload = ByteBuffer.allocate(MECHANISM.length() + 1 + 4 + message.length);
+        CStringUtils.putCString(payload, MECHANISM);
+        payload.putInt(message.length);
+        payload.put(message);
+        return new PgMessage(PgMessageType.PASSWORD_RESPONSE, payload.array());
+    }
+
+    /**
+     * Builds the SASLResponse with the client proof. See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-SASLRESPONSE">SASLResponse</a> message format.
+     *
+     * @param serverFirst payload of the AuthenticationSASLContinue message, after the request code
+     */
+    PgMessage clientFinalMessage(ByteBuffer serverFirst) {
+        String serverFirstMessage =
+                StandardCharsets.UTF_8.decode(serverFirst.duplicate()).toString();
+        String nonce = null;
+        String salt = null;
+        int iterations = 0;
+        for (String attribute : serverFirstMessage.split(",")) {
+            if (attribute.startsWith("r=")) {
+                nonce = attribute.substring(2);
+            } else if (attribute.startsWith("s=")) {
+                salt = attribute.substring(2);
+            } else if (attribute.startsWith("i=")) {
+                iterations = Integer.parseInt(attribute.substring(2));
+            }
+        }
+        if (nonce == null || salt == null || iterations <= 0 || !nonce.startsWith(clientNonce)) {
+            throw new RuntimeException(
+                    "Invalid SCRAM server-first-message: %s".formatted(serverFirstMessage));
+        }
+
+        Keys keys = keys(salt, iterations);
+        String clientFinalWithoutProof = "c=biws,r=" + nonce;
+        byte[] authMessage =
+                String.join(
+                                ",",
+                                clientFirstMessageBare,
+                                serverFirstMessage,
+                                clientFinalWithoutProof)
+                        .getBytes(StandardCharsets.UTF_8);
+        byte[] proof = hmac(keys.storedKey(), authMessage);
+        for (int i = 0; i < proof.length; i++) {
+            proof[i] ^= keys.clientKey()[i];
+        }
+        expectedServerSignature = hmac(keys.serverKey(), authMessage);
+
+        String clientFinal =
+                clientFinalWithoutProof + ",p=" + Base64.getEncoder().encodeToString(proof);
+        return new PgMessage(
+                PgMessageType.PASSWORD_RESPONSE, clientFinal.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks the server signature, which proves that the server knows the password too.
+     *
+     * @param serverFinal payload of the AuthenticationSASLFinal message, after the request code
+     */
+    void verifyServerFinal(ByteBuffer serverFinal) {
+        String serverFinalMessage =
+                StandardCharsets.UTF_8.decode(serverFinal.duplicate()).toString();
+        if (expectedServerSignature == null
+                || !serverFinalMessage.startsWith("v=")
+                || !MessageDigest.isEqual(
+                        expectedServerSignature,
+                        Base64.getDecoder().decode(serverFinalMessage.substring(2)))) {
+            throw new RuntimeException(
+                    "SCRAM server signature did not match: %s".formatted(serverFinalMessage));
+        }
+        serverVerified = true;
+    }
+
+    /**
+     * Checks, on AuthenticationOk, that the server signature has been verified. A server which
+     * skips AuthenticationSASLFinal would otherwise be accepted without proving that it knows the
+     * password.
+     */
+    void checkServerVerified() {
+        if (!serverVerified) {
+            throw new RuntimeException(
+                    "Server sent AuthenticationOk without a verified SCRAM server signature");
+        }
+    }
+
+    /** Number of PBKDF2 derivations performed by this process, i.e. key cache misses. */
+    static long derivations() {
+        return derivations.get();
+    }
+
+    private Keys keys(String salt, int iterations) {
+        var cacheKey = new CacheKey(user, salt, iterations, passwordDigest(password));
+        Keys keys = keyCache.get(cacheKey);
+        if (keys == null) {
+            keys = deriveKeys(Base64.getDecoder().decode(salt), iterations);
+            if (keyCache.size() >= MAX_CACHED_KEYS) {
+                keyCache.clear();
+            }
+            keyCache.put(cacheKey, keys);
+        }
+        return keys;
+    }
+
+    private Keys deriveKeys(byte[] salt, int iterations) {
+        derivations.incrementAndGet();
+        byte[] saltedPassword;
+        try {
+            var spec = new PBEKeySpec(password.toCharArray(), salt, iterations, 256);
+            saltedPassword =
+                    SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
+                            .generateSecret(spec)
+                            .getEncoded();
+            spec.clearPassword();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("PBKDF2 failed: %s".formatted(e.getMessage()));
+        }
+        byte[] clientKey = hmac(saltedPassword, "Client Key".getBytes(StandardCharsets.UTF_8));
+        byte[] serverKey = hmac(saltedPassword, "Server Key".getBytes(StandardCharsets.UTF_8));
+        Arrays.fill(saltedPassword, (byte) 0);
+        return new Keys(clientKey, sha256(clientKey), serverKey);
+    }
+
+    private static String passwordDigest(String password) {
+        byte[] digest = sha256(password.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(digest);
+    }
+
+    private static byte[] hmac(byte[] key, byte[] message) {
+        try {
+            var mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(message);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("HMAC failed: %s".formatted(e.getMessage()));
+        }
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("SHA-256 failed: %s".formatted(e.getMessage()));
+        }
+    }
+
+    private static String newNonce() {
+        byte[] bytes = new byte[NONCE_LENGTH];
+        random.nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
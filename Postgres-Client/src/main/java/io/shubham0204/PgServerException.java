@@ -0,0 +1,59 @@
+package io.shubham0204;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Thrown when the server answers with an ErrorResponse. See <a href="https://www.postgresql.org/docs/current/protocol-error-fields.html">Error and Notice Message Fields</a>.
+ */
+public class PgServerException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String severity;
+    private final String sqlState;
+
+    public PgServerException(String severity, String sqlState, String message) {
+        super("%s: %s (SQLSTATE %s)".formatted(severity, message, sqlState));
+        this.severity = severity;
+        this.sqlState = sqlState;
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-ERRORRESPONSE">ErrorResponse</a> message format.
+     */
+    static PgServerException fromErrorResponse(ByteBuffer payload) {
+        var buf = payload.duplicate();
+        String severity = "ERROR";
+        String sqlState = "";
+        String message = "";
+        byte fieldType;
+        while ((fieldType = buf.get()) != 0) {
+            String value = CStringUtils.getCString(buf);
+            switch (fieldType) {
+                case 'V' -> severity = value;
+                case 'C' -> sqlState = value;
+                case 'M' -> message = value;
+                default -> {}
+            }
+        }
+        return new PgServerException(severity, sqlState, message);
+    }
+
+    /** Non-localized severity, e.g. ERROR or FATAL */
+    public String getSeverity() {
+        return severity;
+    }
+
+    /** Five-character SQLSTATE code, e.g. 42P01 for an undefined table */
+    public String getSqlState() {
+        return sqlState;
+    }
+
+    /**
+     * Returns true if the query was cancelled, by {@link PgClient#cancel()} or an expired query
+     * timeout (SQLSTATE 57014, query_canceled).
+     */
+    public boolean isQueryCanceled() {
+        return sqlState.equals("57014");
+    }
+}
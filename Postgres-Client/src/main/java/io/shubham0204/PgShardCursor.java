@@ -0,0 +1,369 @@
+package io.shubham0204;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Merges the rows of one query running on every shard of a {@link PgShardedExecutor}.
+ *
+ * <p>Each shard is read by its own virtual thread, which copies the rows into a buffer of up to
+ * {@value #SHARD_BUFFER_ROWS} rows and then stops reading the connection until the cursor catches
+ * up, so a fast shard cannot run far ahead of the merge. Without an order, {@link #next()} takes
+ * the next buffered row of any shard, taking turns among them. With an order, it keeps the next
+ * row of every shard in a priority queue and returns the smallest, waiting only for the shard the
+ * previous row came from.
+ *
+ * <p>Every shard has {@code shardTimeout} to deliver its rows. The clock stops while the shard's
+ * buffer is full, so the time the application spends on the rows does not count against the
+ * shard. A shard past its deadline is given up on as soon as the merge has to wait for it: its
+ * query is cancelled, and the cursor either fails or, with partial results, goes on without it.
+ * The connections go back to their pools once their shard's query has ended, also when the cursor
+ * is closed early.
+ */
+public class PgShardCursor implements AutoCloseable {
+
+    static final int SHARD_BUFFER_ROWS = 256;
+
+    private static final class ShardStream {
+        final int index;
+        final PgShardedExecutor.Shard shard;
+        // pushed back by the time the shard waits for room in its buffer
+        long deadlineNanos;
+        // set while the shard waits for room in its buffer
+        boolean paused = false;
+        long pausedSinceNanos;
+        final ArrayDeque<Row> rows = new ArrayDeque<>();
+        // set while the shard's query runs, so that closing the cursor can cancel it
+        PgClient client;
+        boolean finished = false;
+        // set when the cursor stops taking rows from the shard
+        boolean abandoned = false;
+        RuntimeException error;
+        boolean reported = false;
+
+        ShardStream(int index, PgShardedExecutor.Shard shard, long deadlineNanos) {
+            this.index = index;
+            this.shard = shard;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private final PgShardedExecutor executor;
+    private final Comparator<Row> order;
+    private final boolean partialResults;
+    private final List<ShardStream> streams = new ArrayList<>();
+    private final PriorityQueue<ShardStream> heads;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition rowAdded = lock.newCondition();
+    private final Condition rowTaken = lock.newCondition();
+    private final List<PgShardedExecutor.Shard> failedShards = new ArrayList<>();
+    private final Logger logger = Logger.getLogger(PgShardCursor.class.getName());
+    private Row row;
+    private ShardStream current;
+    private int nextShard = 0;
+    private boolean started = false;
+    private boolean done = false;
+
+    PgShardCursor(
+            PgShardedExecutor executor, Comparator<Row> order, String query, Object[] params) {
+        this.executor = executor;
+        this.order = order;
+        this.partialResults = executor.partialResults();
+        this.heads =
+                order == null
+                        ? null
+                        : new PriorityQueue<>(
+                                (a, b) -> order.compare(a.rows.peekFirst(), b.rows.peekFirst()));
+        long timeoutNanos = executor.shardTimeout().toNanos();
+        long deadlineNanos =
+                timeoutNanos == 0 ? Long.MAX_VALUE : System.nanoTime() + timeoutNanos;
+        var shards = executor.shards();
+        for (int i = 0; i < shards.size(); i++) {
+            streams.add(new ShardStream(i, shards.get(i), deadlineNanos));
+        }
+        for (ShardStream stream : streams) {
+            Thread.ofVirtual()
+                    .name("pg-shard-" + stream.index)
+                    .start(() -> runShard(stream, query, params));
+        }
+    }
+
+    /**
+     * Advances to the next merged row, blocking until a shard delivers it.
+     *
+     * @return false once every shard has returned all its rows, or been left out
+     * @throws PgServerException if a shard rejects the query, unless partial results are enabled
+     * @throws RuntimeException if a shard misses its deadline, unless partial results are enabled
+     */
+    public boolean next() {
+        if (done) {
+            return false;
+        }
+        lock.lock();
+        try {
+            boolean found = order == null ? nextInArrivalOrder() : nextInOrder();
+            if (!found) {
+                done = true;
+                row = null;
+            }
+            return found;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a shard");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the current row. It stays valid after the cursor moves on. */
+    public Row row() {
+        return row;
+    }
+
+    /** Returns the shard the current row came from. */
+    public PgShardedExecutor.Shard shard() {
+        return current == null ? null : current.shard;
+    }
+
+    /** Returns the shards left out so far because they failed or missed their deadline. */
+    public List<PgShardedExecutor.Shard> failedShards() {
+        lock.lock();
+        try {
+            return List.copyOf(failedShards);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops merging and cancels the queries of the shards which are still running, so their
+     * connections return to the pools without reading the remaining rows.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            done = true;
+            for (ShardStream stream : streams) {
+                // with the lock held, the connection cannot go back to its pool and run another
+                // query before the cancel reaches it
+                if (!stream.finished && stream.client != null) {
+                    cancelQuietly(stream.client);
+                }
+                stream.abandoned = true;
+                stream.rows.clear();
+            }
+            rowTaken.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean nextInArrivalOrder() throws InterruptedException {
+        while (true) {
+            for (int i = 0; i < streams.size(); i++) {
+                var stream = streams.get((nextShard + i) % streams.size());
+                if (!stream.rows.isEmpty()) {
+                    nextShard = stream.index + 1;
+                    take(stream);
+                    return true;
+                }
+            }
+            long waitUntil = Long.MAX_VALUE;
+            boolean running = false;
+            for (ShardStream stream : streams) {
+                if (!stream.finished) {
+                    running = true;
+                    waitUntil = Math.min(waitUntil, stream.deadlineNanos);
+                } else if (stream.error != null) {
+                    report(stream);
+                }
+            }
+            if (!running) {
+                return false;
+            }
+            if (!awaitRow(waitUntil)) {
+                streams.forEach(this::checkDeadline);
+            }
+        }
+    }
+
+    private boolean nextInOrder() throws InterruptedException {
+        if (!started) {
+            started = true;
+            for (ShardStream stream : streams) {
+                if (awaitHead(stream)) {
+                    heads.add(stream);
+                }
+            }
+        } else if (current != null && awaitHead(current)) {
+            heads.add(current);
+        }
+        var stream = heads.poll();
+        if (stream == null) {
+            return false;
+        }
+        take(stream);
+        return true;
+    }
+
+    /** Waits until the shard has a row buffered or has finished; returns true in the first case. */
+    private boolean awaitHead(ShardStream stream) throws InterruptedException {
+        while (stream.rows.isEmpty() && !stream.finished) {
+            if (!awaitRow(stream.deadlineNanos)) {
+                checkDeadline(stream);
+            }
+        }
+        if (!stream.rows.isEmpty()) {
+            return true;
+        }
+        if (stream.error != null) {
+            report(stream);
+        }
+        return false;
+    }
+
+    /** Waits for any shard to add a row or finish; returns false once {@code deadline} passed. */
+    private boolean awaitRow(long deadlineNanos) throws InterruptedException {
+        if (deadlineNanos == Long.MAX_VALUE) {
+            rowAdded.await();
+            return true;
+        }
+        long remaining = deadlineNanos - System.nanoTime();
+        return remaining > 0 && rowAdded.awaitNanos(remaining) > 0;
+    }
+
+    private void take(ShardStream stream) {
+        row = stream.rows.pollFirst();
+        current = stream;
+        if (stream.paused) {
+            // the shard waited for the cursor, which does not count against its deadline
+            if (stream.deadlineNanos != Long.MAX_VALUE) {
+                stream.deadlineNanos += System.nanoTime() - stream.pausedSinceNanos;
+            }
+            stream.paused = false;
+        }
+        rowTaken.signalAll();
+    }
+
+    private void checkDeadline(ShardStream stream) {
+        if (stream.finished || System.nanoTime() - stream.deadlineNanos < 0) {
+            return;
+        }
+        stream.finished = true;
+        stream.abandoned = true;
+        stream.error =
+                new RuntimeException(
+                        "Shard %s did not finish within %d ms"
+                                .formatted(stream.shard, executor.shardTimeout().toMillis()));
+        rowTaken.signalAll();
+        // with the lock held, the connection cannot go back to its pool and run another query
+        if (stream.client != null) {
+            cancelQuietly(stream.client);
+        }
+    }
+
+    private void cancelQuietly(PgClient client) {
+        try {
+            client.cancel();
+        } catch (RuntimeException e) {
+            logger.log(Level.FINE, "cancel() failed: %s".formatted(e.getMessage()));
+        }
+    }
+
+    /** Fails the cursor with the shard's error, or records the shard as left out. */
+    private void report(ShardStream stream) {
+        if (stream.reported) {
+            return;
+        }
+        stream.reported = true;
+        logger.log(
+                Level.WARNING,
+                "shard %s failed: %s".formatted(stream.shard, stream.error.getMessage()));
+        if (partialResults) {
+            failedShards.add(stream.shard);
+            return;
+        }
+        lock.unlock();
+        try {
+            close();
+        } finally {
+            lock.lock();
+        }
+        throw stream.error;
+    }
+
+    private void runShard(ShardStream stream, String query, Object[] params) {
+        var pool = executor.pool(stream.index);
+        PgClient client = null;
+        RuntimeException error = null;
+        try {
+            client = pool.acquire();
+            lock.lock();
+            try {
+                if (stream.abandoned) {
+                    return;
+                }
+                stream.client = client;
+            } finally {
+                lock.unlock();
+            }
+            try (RowCursor cursor = client.query(query, params)) {
+                while (cursor.next()) {
+                    if (!offer(stream, cursor.row().copy())) {
+                        break;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            error = e;
+        } finally {
+            lock.lock();
+            try {
+                stream.client = null;
+                if (!stream.finished) {
+                    stream.finished = true;
+                    stream.error = error;
+                }
+                rowAdded.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (client != null) {
+                pool.release(client);
+            }
+        }
+    }
+
+    /** Buffers a row of the shard; returns false if the cursor does not take its rows anymore. */
+    private boolean offer(ShardStream stream, Row row) {
+        lock.lock();
+        try {
+            if (stream.rows.size() >= SHARD_BUFFER_ROWS) {
+                stream.paused = true;
+                stream.pausedSinceNanos = System.nanoTime();
+            }
+            while (stream.rows.size() >= SHARD_BUFFER_ROWS && !stream.abandoned) {
+                rowTaken.await();
+            }
+            if (stream.abandoned) {
+                return false;
+            }
+            stream.rows.addLast(row);
+            rowAdded.signalAll();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package io.shubham0204;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Runs statements against horizontally partitioned databases, one {@link PgConnectionPool} per
+ * shard.
+ *
+ * <pre>{@code
+ * var shards = new PgShardedExecutor(
+ *         config,
+ *         List.of(new Shard("db-1", 5432), new Shard("db-2", 5432), new Shard("db-3", 5432)),
+ *         Duration.ofMillis(200));
+ * try (PgShardCursor cursor = shards.query(
+ *         Comparator.comparingLong(row -> row.getLong("created_at")),
+ *         "SELECT id, created_at FROM events WHERE user_id = $1 ORDER BY created_at",
+ *         userId)) {
+ *     while (cursor.next()) { ... }
+ * }
+ * User user = shards.withShard(userId, client -> client.queryAs(User.class, "...", userId).get(0));
+ * }</pre>
+ *
+ * <p>A query over all shards runs on every shard in parallel and the rows are merged as they
+ * arrive, see {@link PgShardCursor}: either in arrival order, or with a k-way merge by a key which
+ * every shard already sorts by. Point lookups go to the single shard which holds the key, see
+ * {@link #shardFor(Object)}. Every shard has its own deadline, so a slow shard cannot hold the
+ * whole query up for longer than {@code shardTimeout}: it fails the query or, with {@link
+ * #setPartialResults(boolean)}, is left out of the result.
+ */
+public class PgShardedExecutor implements AutoCloseable {
+
+    /** The host and port of one shard. */
+    public record Shard(String host, int port) {
+
+        @Override
+        public String toString() {
+            return "%s:%d".formatted(host, port);
+        }
+    }
+
+    private final List<Shard> shards;
+    private final List<PgConnectionPool> pools;
+    private final Duration shardTimeout;
+    private volatile boolean partialResults = false;
+
+    /**
+     * Creates a pool per shard.
+     *
+     * @param config settings for every pool; its host and port are replaced by each shard's
+     * @param shards the shards, in the order {@link #shardFor(Object)} numbers them
+     * @param shardTimeout how long a query over all shards waits for each shard's rows, see {@link
+     *     PgShardCursor}, and the query timeout of {@link #withShard(Object, Function)}; zero for
+     *     none
+     */
+    public PgShardedExecutor(PgPoolConfig config, List<Shard> shards, Duration shardTimeout) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("No shards to run on");
+        }
+        if (shardTimeout.isNegative()) {
+            throw new IllegalArgumentException("Shard timeout must be >= 0");
+        }
+        var pools = new ArrayList<PgConnectionPool>();
+        try {
+            for (Shard shard : shards) {
+                pools.add(new PgConnectionPool(config.withHost(shard.host(), shard.port())));
+            }
+        } catch (RuntimeException e) {
+            pools.forEach(PgConnectionPool::close);
+            throw e;
+        }
+        this.shards = List.copyOf(shards);
+        this.pools = List.copyOf(pools);
+        this.shardTimeout = shardTimeout;
+    }
+
+    /**
+     * Runs the query on all shards and returns their rows in the order they arrive. Rows from one
+     * shard keep their order.
+     *
+     * @throws PgServerException from {@link PgShardCursor#next()} if a shard rejects the query
+     */
+    public PgShardCursor query(String query, Object... params) {
+        return new PgShardCursor(this, null, query, params);
+    }
+
+    /**
+     * Runs the query on all shards and merges their rows by {@code order}. Every shard must return
+     * its rows sorted by the same order, e.g. with a matching {@code ORDER BY}; the merge only
+     * compares the next row of each shard, so it streams the result without collecting it.
+     */
+    public PgShardCursor query(Comparator<Row> order, String query, Object... params) {
+        return new PgShardCursor(this, order, query, params);
+    }
+
+    /**
+     * Runs {@code action} with a connection to the shard holding {@code key}, with the shard
+     * timeout as query timeout.
+     */
+    public <T> T withShard(Object key, Function<PgClient, T> action) {
+        var pool = pools.get(shardFor(key));
+        var client = pool.acquire();
+        client.setQueryTimeout(shardTimeout);
+        try {
+            return action.apply(client);
+        } finally {
+            pool.release(client);
+        }
+    }
+
+    /**
+     * Returns the index of the shard holding {@code key}: {@code Math.floorMod(key.hashCode(),
+     * shardCount())}. Keys hash the same in every JVM for strings, boxed integers and UUIDs, so
+     * this also tells the application which shard to write a row to.
+     */
+    public int shardFor(Object key) {
+        return Math.floorMod(key.hashCode(), shards.size());
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public List<Shard> shards() {
+        return shards;
+    }
+
+    /**
+     * Makes queries over all shards leave out a shard which fails or misses its deadline, instead
+     * of failing; {@link PgShardCursor#failedShards()} lists the shards left out. Rows the shard
+     * returned before failing are kept.
+     */
+    public void setPartialResults(boolean partialResults) {
+        this.partialResults = partialResults;
+    }
+
+    @Override
+    public void close() {
+        pools.forEach(PgConnectionPool::close);
+    }
+
+    Duration shardTimeout() {
+        return shardTimeout;
+    }
+
+    boolean partialResults() {
+        return partialResults;
+    }
+
+    PgConnectionPool pool(int shard) {
+        return pools.get(shard);
+    }
+}
@@ -0,0 +1,114 @@
+package io.shubham0204;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-connection LRU cache of named prepared statements keyed by SQL text. Statements evicted from
+ * the cache still exist on the server until {@link #drainEvicted()} is used to send a Close message
+ * for each of them.
+ */
+class PgStatementCache {
+
+    static final int DEFAULT_CAPACITY = 256;
+
+    /** A statement parsed on the server under {@code name}. */
+    static class PreparedStatement {
+        final String name;
+        final String sql;
+
+        /**
+         * Result format codes to request in Bind, known once the statement's columns have been
+         * described by a first execution
+         */
+        short[] resultFormats;
+
+        PreparedStatement(String name, String sql) {
+            this.name = name;
+            this.sql = sql;
+        }
+    }
+
+    private int capacity;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private final List<String> evicted = new ArrayList<>();
+    private long nextId = 0;
+
+    PgStatementCache(int capacity) {
+        this.capacity = capacity;
+        this.statements =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() > PgStatementCache.this.capacity) {
+                            evicted.add(eldest.getValue().name);
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+    }
+
+    /** Returns the cached statement for {@code sql}, marking it most recently used. */
+    PreparedStatement get(String sql) {
+        return statements.get(sql);
+    }
+
+    /**
+     * Creates an entry for a statement that is about to be parsed. With a capacity of zero, the
+     * unnamed statement is used and nothing is cached.
+     */
+    PreparedStatement create(String sql) {
+        if (capacity == 0) {
+            return new PreparedStatement("", sql);
+        }
+        var statement = new PreparedStatement("s" + nextId++, sql);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Forgets {@code sql}, e.g. because parsing it failed on the server or its plan went stale.
+     *
+     * @param parsed whether the statement exists on the server, in which case its name is queued
+     *     for a Close like an evicted one
+     */
+    void remove(String sql, boolean parsed) {
+        var statement = statements.remove(sql);
+        if (statement != null && parsed) {
+            evicted.add(statement.name);
+        }
+    }
+
+    /** Returns and clears the names of evicted statements which still need to be closed. */
+    List<String> drainEvicted() {
+        if (evicted.isEmpty()) {
+            return List.of();
+        }
+        var names = List.copyOf(evicted);
+        evicted.clear();
+        return names;
+    }
+
+    /** Queues names from {@link #drainEvicted()} again, as the server skipped their Close. */
+    void requeueEvicted(List<String> names) {
+        evicted.addAll(names);
+    }
+
+    /** Changes the capacity, evicting the least recently used statements if needed. */
+    void setCapacity(int capacity) {
+        this.capacity = capacity;
+        var iterator = statements.values().iterator();
+        while (statements.size() > capacity) {
+            evicted.add(iterator.next().name);
+            iterator.remove();
+        }
+    }
+
+    int size() {
+        return statements.size();
+    }
+}
@@ -0,0 +1,389 @@
+package io.shubham0204;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Blocking message transport over a {@link SocketChannel}.
+ *
+ * <p>Incoming bytes are read into a direct {@link ByteBuffer} and messages are framed in place, so
+ * the payload of a message returned by {@link #read()} is a view into that buffer rather than a
+ * copy. The view is only valid until the next call to {@link #read()}. Both buffers come from
+ * {@link PgBufferPool}: a message which does not fit swaps the buffer for one of a larger size
+ * class, the buffer shrinks back to the default size once only small messages follow, and {@link
+ * #close()} returns both buffers, so neither new connections nor large messages allocate fresh
+ * direct memory.
+ *
+ * <p>Messages too large to buffer at all, like DataRows with huge field values, can be read
+ * piecewise instead: {@link #beginStreamed()} consumes only the header and {@link
+ * #readStreamed(ByteBuffer)} reads the payload on demand.
+ *
+ * <p>Outgoing messages can be collected with {@link #queue(PgMessage)} and sent together with
+ * {@link #flush()}, so that a sequence like Parse/Bind/Execute/Sync leaves in one write and usually
+ * one TCP segment. Small messages are copied into a write buffer; the payloads of large ones are
+ * referenced instead and sent with a gathering write. Pending messages are flushed before every
+ * {@link #read()}, since the server cannot answer what it has not received.
+ */
+public class PgTransport implements AutoCloseable {
+
+    static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+    static final int GATHER_THRESHOLD = 8 * 1024;
+
+    private final ByteChannel channel;
+    private ByteBuffer readBuffer;
+    private ByteBuffer writeBuffer;
+    // queued data not yet sent: regions of writeBuffer interleaved with large payloads
+    private final List<ByteBuffer> pendingSegments = new ArrayList<>();
+    private int segmentStart = 0;
+    // payload bytes of the message being streamed that have not been read yet
+    private int streamRemaining = 0;
+    private boolean closed = false;
+    private PgMetricsListener metrics = PgMetricsListener.NONE;
+
+    PgTransport(ByteChannel channel) {
+        this.channel = channel;
+        this.readBuffer = PgBufferPool.acquire(DEFAULT_BUFFER_SIZE).flip();
+        this.writeBuffer = PgBufferPool.acquire(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a blocking {@link SocketChannel} to the Postgres DB server at host:port
+     *
+     * @param host host-name of the Postgres DB server
+     * @param port port of the Postgres DB server
+     */
+    public static PgTransport open(String host, int port) {
+        try {
+            var channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            return new PgTransport(channel);
+        } catch (IOException e) {
+            throw new RuntimeException("I/O failed in open(): %s".formatted(e.getMessage()));
+        }
+    }
+
+    /**
+     * Reads the next message from the server, blocking until it has been received completely. The
+     * payload of the returned message is only valid until the next call to this method.
+     */
+    public PgMessage read() {
+        checkOpen();
+        if (hasPendingWrites()) {
+            flush();
+        }
+        return receive();
+    }
+
+    /**
+     * Reads the next message like {@link #read()}, but without sending queued messages first. Lets
+     * one thread read while others write, as long as the writers serialize among themselves and
+     * only the reading thread closes the transport.
+     */
+    PgMessage receive() {
+        checkOpen();
+        if (streamRemaining > 0) {
+            skipStreamed(streamRemaining);
+        }
+        PgMessage message;
+        while ((message = PgMessage.frame(readBuffer)) == null) {
+            int frameLength = PgMessage.frameLength(readBuffer);
+            fill(frameLength == -1 ? PgMessage.HEADER_LENGTH : frameLength);
+        }
+        metrics.messageReceived(message.type(), PgMessage.HEADER_LENGTH + message.length());
+        return message;
+    }
+
+    /**
+     * Returns the type of the next message without consuming it, blocking until its header has been
+     * received. Queued messages are sent first, as with {@link #read()}.
+     */
+    PgMessageType peekType() {
+        bufferHeader();
+        return PgMessageType.fromBackend(readBuffer.get(readBuffer.position()));
+    }
+
+    /** Returns the payload length of the next message without consuming it. */
+    int peekLength() {
+        bufferHeader();
+        return PgMessage.frameLength(readBuffer) - PgMessage.HEADER_LENGTH;
+    }
+
+    /**
+     * Consumes the header of the next message and returns its payload length. The payload is not
+     * buffered; it is read piecewise with {@link #readStreamed(ByteBuffer)}, so a message of any
+     * size passes through without a buffer of its size. The next {@link #read()} discards what is
+     * left of it.
+     */
+    int beginStreamed() {
+        int length = peekLength();
+        metrics.messageReceived(peekType(), PgMessage.HEADER_LENGTH + length);
+        readBuffer.position(readBuffer.position() + PgMessage.HEADER_LENGTH);
+        streamRemaining = length;
+        return length;
+    }
+
+    /**
+     * Reads up to {@code dst.remaining()} bytes of the payload of the message begun with {@link
+     * #beginStreamed()} into {@code dst}, blocking until at least one byte is available. Bytes
+     * already buffered are copied; otherwise large reads go from the socket straight into {@code
+     * dst}.
+     *
+     * @return the number of bytes read, or -1 at the end of the payload
+     */
+    int readStreamed(ByteBuffer dst) {
+        checkOpen();
+        if (streamRemaining == 0) {
+            return -1;
+        }
+        int n = Math.min(dst.remaining(), streamRemaining);
+        if (n == 0) {
+            return 0;
+        }
+        if (!readBuffer.hasRemaining() && n >= DEFAULT_BUFFER_SIZE) {
+            var target = dst.slice(dst.position(), n);
+            long start = System.nanoTime();
+            try {
+                if ((n = channel.read(target)) == -1) {
+                    throw new RuntimeException("Connection closed by the Postgres DB server");
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("I/O failed in read(): %s".formatted(e.getMessage()));
+            } finally {
+                metrics.socketBlocked(System.nanoTime() - start);
+            }
+        } else {
+            if (!readBuffer.hasRemaining()) {
+                fill(1);
+            }
+            n = Math.min(n, readBuffer.remaining());
+            dst.put(dst.position(), readBuffer, readBuffer.position(), n);
+            readBuffer.position(readBuffer.position() + n);
+        }
+        dst.position(dst.position() + n);
+        streamRemaining -= n;
+        return n;
+    }
+
+    /**
+     * Discards the next {@code length} bytes, at most the rest, of the payload of the message begun
+     * with {@link #beginStreamed()}.
+     */
+    void skipStreamed(int length) {
+        int skipped = Math.min(length, streamRemaining);
+        while (skipped > 0) {
+            if (!readBuffer.hasRemaining()) {
+                fill(1);
+            }
+            int n = Math.min(skipped, readBuffer.remaining());
+            readBuffer.position(readBuffer.position() + n);
+            streamRemaining -= n;
+            skipped -= n;
+        }
+    }
+
+    /** Writes the message, and any queued before it, to the server. */
+    public void write(PgMessage message) {
+        queue(message);
+        flush();
+    }
+
+    /** Writes all messages to the server with a single write, so they can share TCP segments. */
+    public void writeAll(List<PgMessage> messages) {
+        for (PgMessage message : messages) {
+            queue(message);
+        }
+        flush();
+    }
+
+    /**
+     * Adds the message to the outgoing data without sending it. Payloads of at least {@value
+     * #GATHER_THRESHOLD} bytes are not copied and must not change until {@link #flush()}.
+     */
+    public void queue(PgMessage message) {
+        checkOpen();
+        int length = message.length();
+        metrics.messageSent(message.type(), PgMessage.HEADER_LENGTH + length);
+        if (length >= GATHER_THRESHOLD) {
+            reserve(PgMessage.HEADER_LENGTH);
+            message.encodeHeader(writeBuffer);
+            pendingSegments.add(pendingRegion());
+            pendingSegments.add(message.payload().duplicate());
+        } else {
+            reserve(PgMessage.HEADER_LENGTH + length);
+            message.encode(writeBuffer);
+        }
+    }
+
+    /**
+     * Writes raw bytes to the server. Used for messages that do not carry a type byte, like the
+     * StartupMessage.
+     */
+    public void writeRaw(ByteBuffer bytes) {
+        checkOpen();
+        reserve(bytes.remaining());
+        writeBuffer.put(bytes);
+        flush();
+    }
+
+    /** Sends all queued messages, with a single gathering write when large payloads are queued. */
+    public void flush() {
+        checkOpen();
+        try {
+            if (pendingSegments.isEmpty()) {
+                writeFully(writeBuffer.flip());
+                return;
+            }
+            pendingSegments.add(pendingRegion());
+            var segments = pendingSegments.toArray(new ByteBuffer[0]);
+            var last = segments[segments.length - 1];
+            if (channel instanceof GatheringByteChannel gatheringChannel) {
+                long start = System.nanoTime();
+                while (last.hasRemaining()) {
+                    gatheringChannel.write(segments);
+                }
+                metrics.socketBlocked(System.nanoTime() - start);
+            } else {
+                for (ByteBuffer segment : segments) {
+                    writeFully(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("I/O failed in flush(): %s".formatted(e.getMessage()));
+        } finally {
+            writeBuffer.clear();
+            pendingSegments.clear();
+            segmentStart = 0;
+            if (writeBuffer.capacity() > DEFAULT_BUFFER_SIZE) {
+                // only keep a large buffer while large messages are written
+                PgBufferPool.release(writeBuffer);
+                writeBuffer = PgBufferPool.acquire(DEFAULT_BUFFER_SIZE);
+            }
+        }
+    }
+
+    /** Reports the messages and socket waits of this transport to the listener. */
+    void setMetricsListener(PgMetricsListener metrics) {
+        this.metrics = metrics;
+    }
+
+    boolean hasPendingWrites() {
+        return writeBuffer.position() > 0 || !pendingSegments.isEmpty();
+    }
+
+    public boolean isOpen() {
+        return !closed && channel.isOpen();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("I/O error in close(): %s".formatted(e.getMessage()));
+        } finally {
+            PgBufferPool.release(readBuffer);
+            PgBufferPool.release(writeBuffer);
+        }
+    }
+
+    /**
+     * Reads from the channel until at least {@code required} unread bytes are buffered. Unread
+     * bytes are moved to the start of the buffer first, or to a buffer of the size class of the
+     * message being received.
+     */
+    private void fill(int required) {
+        boolean small = required > PgMessage.HEADER_LENGTH && required <= DEFAULT_BUFFER_SIZE;
+        if (readBuffer.capacity() < required
+                || (small && readBuffer.capacity() > DEFAULT_BUFFER_SIZE)) {
+            // grow for a large message, or shrink back once a small one follows; the unread
+            // bytes are part of that message, so they fit either way
+            var resized = PgBufferPool.acquire(required);
+            resized.put(readBuffer);
+            PgBufferPool.release(readBuffer);
+            readBuffer = resized;
+        } else {
+            readBuffer.compact();
+        }
+        long start = System.nanoTime();
+        try {
+            while (readBuffer.position() < required) {
+                if (channel.read(readBuffer) == -1) {
+                    throw new RuntimeException("Connection closed by the Postgres DB server");
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("I/O failed in read(): %s".formatted(e.getMessage()));
+        } finally {
+            readBuffer.flip();
+            metrics.socketBlocked(System.nanoTime() - start);
+        }
+    }
+
+    private void bufferHeader() {
+        checkOpen();
+        if (hasPendingWrites()) {
+            flush();
+        }
+        if (streamRemaining > 0) {
+            skipStreamed(streamRemaining);
+        }
+        if (readBuffer.remaining() < PgMessage.HEADER_LENGTH) {
+            fill(PgMessage.HEADER_LENGTH);
+        }
+    }
+
+    private void checkOpen() {
+        // the buffers of a closed transport may already be in use by another connection
+        if (closed) {
+            throw new RuntimeException("Transport is closed");
+        }
+    }
+
+    /**
+     * Makes room for {@code required} bytes in the write buffer. Queued data is flushed first if it
+     * would not fit, so the buffer only grows for a single message larger than it.
+     */
+    private void reserve(int required) {
+        if (writeBuffer.remaining() >= required) {
+            return;
+        }
+        if (hasPendingWrites()) {
+            flush();
+        }
+        if (writeBuffer.capacity() < required) {
+            PgBufferPool.release(writeBuffer);
+            writeBuffer = PgBufferPool.acquire(required);
+        }
+    }
+
+    /** Returns the part of the write buffer queued since the last large payload. */
+    private ByteBuffer pendingRegion() {
+        var region = writeBuffer.duplicate().limit(writeBuffer.position()).position(segmentStart);
+        segmentStart = writeBuffer.position();
+        return region;
+    }
+
+    private void writeFully(ByteBuffer buffer) {
+        long start = System.nanoTime();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("I/O failed in write(): %s".formatted(e.getMessage()));
+        } finally {
+            metrics.socketBlocked(System.nanoTime() - start);
+        }
+    }
+}
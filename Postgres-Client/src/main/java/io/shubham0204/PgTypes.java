@@ -0,0 +1,41 @@
+package io.shubham0204;
+
+/**
+ * OIDs of the built-in data types decoded by {@link Row}. See the <a href="https://www.postgresql.org/docs/current/catalog-pg-type.html">pg_type</a> system catalog.
+ */
+final class PgTypes {
+
+    static final int BOOL = 16;
+    static final int BYTEA = 17;
+    static final int INT8 = 20;
+    static final int INT2 = 21;
+    static final int INT4 = 23;
+    static final int FLOAT4 = 700;
+    static final int FLOAT8 = 701;
+    static final int TIMESTAMP = 1114;
+    static final int TIMESTAMPTZ = 1184;
+    static final int UUID = 2950;
+
+    private PgTypes() {}
+
+    /** Returns true if {@link Row} can decode the binary format of the type. */
+    static boolean hasBinaryDecoder(int typeOid) {
+        return switch (typeOid) {
+            case BOOL, BYTEA, INT8, INT2, INT4, FLOAT4, FLOAT8 -> true;
+            case TIMESTAMP, TIMESTAMPTZ, UUID -> true;
+            default -> false;
+        };
+    }
+
+    /** Returns the result format codes to request in Bind for the given columns. */
+    static short[] resultFormats(RowDescription description) {
+        short[] formats = new short[description.columnCount()];
+        for (int i = 0; i < formats.length; i++) {
+            formats[i] =
+                    hasBinaryDecoder(description.typeOid(i))
+                            ? PgFrontendMessages.BINARY_FORMAT
+                            : PgFrontendMessages.TEXT_FORMAT;
+        }
+        return formats;
+    }
+}
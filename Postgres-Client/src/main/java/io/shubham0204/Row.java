@@ -0,0 +1,598 @@
+package io.shubham0204;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * A flyweight over one DataRow message. See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-DATAROW">DataRow</a> message format.
+ *
+ * <p>{@link RowCursor} reuses a single instance for all rows, pointing it at the message buffer of
+ * the current row, so fields are only decoded when an accessor is called. A row obtained from a
+ * cursor is only valid until the cursor moves on; use {@link #copy()} to keep it around.
+ *
+ * <p>Accessors decode fields in both the text and the binary format, depending on the format code
+ * in the {@link RowDescription}. The primitive accessors do not allocate for binary fields or for
+ * integers in text format.
+ *
+ * <p>A DataRow larger than the streaming threshold set with {@link
+ * PgClient#setStreamingThreshold(int)} is not buffered as a whole. Its fields are read from the
+ * connection in column order as they are accessed, and a field above the threshold can only be
+ * read with {@link #getInputStream(int)} or {@link #getChannel(int)}, straight off the socket.
+ * Accessing a later column skips what is left of that field, so the columns of such a row have to
+ * be read in order.
+ */
+public final class Row {
+
+    /** Seconds from the Unix epoch to the Postgres epoch, 2000-01-01 00:00:00 UTC */
+    private static final long PG_EPOCH_SECONDS = 946_684_800L;
+
+    private static final DateTimeFormatter TIMESTAMP_TEXT_FORMAT =
+            new DateTimeFormatterBuilder()
+                    .append(DateTimeFormatter.ISO_LOCAL_DATE)
+                    .appendLiteral(' ')
+                    .append(DateTimeFormatter.ISO_LOCAL_TIME)
+                    .optionalStart()
+                    .appendOffset("+HH:mm", "Z")
+                    .toFormatter();
+
+    private RowDescription description;
+    private ByteBuffer payload;
+    private int fieldCount;
+    private int[] offsets = new int[0];
+    private int[] lengths = new int[0];
+    // set while a DataRow above the streaming threshold is read field by field
+    private PgTransport source;
+    private int threshold;
+    private int indexedFields;
+    // the field above the threshold whose bytes are next on the connection, if any
+    private PgFieldStream largeField;
+    // holds the fields up to the threshold of a row read field by field, reused for every row
+    private ByteBuffer inlineFields;
+
+    Row() {}
+
+    /** Points this row at the payload of a DataRow message, indexing the field offsets. */
+    void reset(RowDescription description, ByteBuffer payload) {
+        detach();
+        this.description = description;
+        this.payload = payload;
+        int position = payload.position();
+        this.fieldCount = payload.getShort(position);
+        if (offsets.length < fieldCount) {
+            offsets = new int[fieldCount];
+            lengths = new int[fieldCount];
+        }
+        position += 2;
+        for (int i = 0; i < fieldCount; i++) {
+            int length = payload.getInt(position);
+            position += 4;
+            offsets[i] = position;
+            lengths[i] = length;
+            if (length > 0) {
+                position += length;
+            }
+        }
+        this.indexedFields = fieldCount;
+    }
+
+    /**
+     * Points this row at the DataRow message which {@code transport} is about to receive, without
+     * reading its fields yet. Fields up to {@code threshold} bytes are buffered as they are
+     * reached; larger ones are left on the connection for {@link #getInputStream(int)}.
+     */
+    void resetStreamed(RowDescription description, PgTransport transport, int threshold) {
+        detach();
+        transport.beginStreamed();
+        this.description = description;
+        this.source = transport;
+        this.threshold = threshold;
+        if (inlineFields == null) {
+            inlineFields = ByteBuffer.allocate(256);
+        }
+        this.payload = inlineFields.clear();
+        readInline(2);
+        this.fieldCount = payload.getShort(0);
+        if (offsets.length < fieldCount) {
+            offsets = new int[fieldCount];
+            lengths = new int[fieldCount];
+        }
+        this.indexedFields = 0;
+    }
+
+    /**
+     * Cuts off the stream of a field still on the connection, as the connection is about to move
+     * on to the next message.
+     */
+    void detach() {
+        if (largeField != null) {
+            largeField.close();
+            largeField = null;
+        }
+        source = null;
+    }
+
+    public RowDescription description() {
+        return description;
+    }
+
+    public int size() {
+        return fieldCount;
+    }
+
+    public boolean isNull(int column) {
+        return lengths[checkIndex(column)] == -1;
+    }
+
+    public boolean isNull(String column) {
+        return isNull(description.indexOf(column));
+    }
+
+    /**
+     * Returns the field as a string, or {@code null} for SQL NULL. Binary-format fields are
+     * formatted the way the server would format them as text.
+     */
+    public String getString(int column) {
+        if (isNull(column)) {
+            return null;
+        }
+        if (isBinary(column)) {
+            return formatBinary(column);
+        }
+        return CStringUtils.getString(payload, offset(column), lengths[column]);
+    }
+
+    public String getString(String column) {
+        return getString(description.indexOf(column));
+    }
+
+    /**
+     * Returns the field's bytes, or {@code null} for SQL NULL. {@code bytea} values are decoded
+     * from either format; for other types, this is a copy of the raw field value.
+     */
+    public byte[] getBytes(int column) {
+        if (isNull(column)) {
+            return null;
+        }
+        byte[] value = new byte[lengths[column]];
+        payload.get(offset(column), value);
+        if (!isBinary(column) && description.typeOid(column) == PgTypes.BYTEA) {
+            return decodeHexBytea(value);
+        }
+        return value;
+    }
+
+    public byte[] getBytes(String column) {
+        return getBytes(description.indexOf(column));
+    }
+
+    /**
+     * Returns a stream over the field's bytes, or {@code null} for SQL NULL. {@code bytea} values
+     * are decoded from either format, as with {@link #getBytes(int)}, but without holding the whole
+     * value in memory. This is the way to read a field above the streaming threshold, which the
+     * stream reads from the connection; such a stream is cut off by accessing a later column or
+     * moving the cursor on.
+     *
+     * @throws IllegalStateException if the field is above the threshold and a later column was
+     *     accessed already
+     */
+    public InputStream getInputStream(int column) {
+        if (isNull(column)) {
+            return null;
+        }
+        var stream = fieldStream(column);
+        if (isHexBytea(column)) {
+            return new HexByteaStream(stream);
+        }
+        return stream;
+    }
+
+    public InputStream getInputStream(String column) {
+        return getInputStream(description.indexOf(column));
+    }
+
+    /**
+     * Returns the field like {@link #getInputStream(int)}, as a channel. Reading it into a large
+     * buffer, e.g. with {@link java.nio.channels.FileChannel#transferFrom}, reads a field above the
+     * streaming threshold from the socket straight into that buffer.
+     */
+    public ReadableByteChannel getChannel(int column) {
+        if (isNull(column)) {
+            return null;
+        }
+        var stream = fieldStream(column);
+        if (isHexBytea(column)) {
+            return Channels.newChannel(new HexByteaStream(stream));
+        }
+        return stream;
+    }
+
+    public ReadableByteChannel getChannel(String column) {
+        return getChannel(description.indexOf(column));
+    }
+
+    /** Returns an integer field without allocating. */
+    public int getInt(int column) {
+        return Math.toIntExact(getLong(column));
+    }
+
+    public int getInt(String column) {
+        return getInt(description.indexOf(column));
+    }
+
+    /** Returns an integer field without allocating. */
+    public long getLong(int column) {
+        checkNotNull(column);
+        if (!isBinary(column)) {
+            return parseLong(column);
+        }
+        int offset = offset(column);
+        return switch (description.typeOid(column)) {
+            case PgTypes.INT2 -> payload.getShort(offset);
+            case PgTypes.INT4 -> payload.getInt(offset);
+            case PgTypes.INT8 -> payload.getLong(offset);
+            default -> throw unsupportedConversion(column, "long");
+        };
+    }
+
+    public long getLong(String column) {
+        return getLong(description.indexOf(column));
+    }
+
+    /** Returns a numeric field, without allocating if it is in binary format. */
+    public double getDouble(int column) {
+        checkNotNull(column);
+        if (!isBinary(column)) {
+            return Double.parseDouble(getString(column));
+        }
+        int offset = offset(column);
+        return switch (description.typeOid(column)) {
+            case PgTypes.FLOAT4 -> payload.getFloat(offset);
+            case PgTypes.FLOAT8 -> payload.getDouble(offset);
+            case PgTypes.INT2, PgTypes.INT4, PgTypes.INT8 -> getLong(column);
+            default -> throw unsupportedConversion(column, "double");
+        };
+    }
+
+    public double getDouble(String column) {
+        return getDouble(description.indexOf(column));
+    }
+
+    public boolean getBoolean(int column) {
+        checkNotNull(column);
+        byte value = payload.get(offset(column));
+        return isBinary(column) ? value != 0 : value == 't';
+    }
+
+    public boolean getBoolean(String column) {
+        return getBoolean(description.indexOf(column));
+    }
+
+    /**
+     * Returns a {@code timestamp} field, or {@code null} for SQL NULL. {@code timestamptz} values
+     * are converted to UTC. The special values infinity and -infinity map to {@link
+     * LocalDateTime#MAX} and {@link LocalDateTime#MIN}.
+     */
+    public LocalDateTime getTimestamp(int column) {
+        if (isNull(column)) {
+            return null;
+        }
+        if (isBinary(column)) {
+            long micros = payload.getLong(offset(column));
+            if (micros == Long.MAX_VALUE) {
+                return LocalDateTime.MAX;
+            } else if (micros == Long.MIN_VALUE) {
+                return LocalDateTime.MIN;
+            }
+            return LocalDateTime.ofEpochSecond(
+                    PG_EPOCH_SECONDS + Math.floorDiv(micros, 1_000_000L),
+                    (int) Math.floorMod(micros, 1_000_000L) * 1000,
+                    ZoneOffset.UTC);
+        }
+        String text = getString(column);
+        if (text.equals("infinity")) {
+            return LocalDateTime.MAX;
+        } else if (text.equals("-infinity")) {
+            return LocalDateTime.MIN;
+        }
+        var parsed = TIMESTAMP_TEXT_FORMAT.parse(text);
+        var timestamp = LocalDateTime.from(parsed);
+        if (parsed.isSupported(ChronoField.OFFSET_SECONDS)) {
+            int offsetSeconds = parsed.get(ChronoField.OFFSET_SECONDS);
+            timestamp = timestamp.minusSeconds(offsetSeconds);
+        }
+        return timestamp;
+    }
+
+    public LocalDateTime getTimestamp(String column) {
+        return getTimestamp(description.indexOf(column));
+    }
+
+    /**
+     * Returns a non-null binary {@code timestamp} or {@code timestamptz} field as sent, in
+     * microseconds since the Postgres epoch, without allocating.
+     */
+    long getTimestampMicros(int column) {
+        return payload.getLong(offset(column));
+    }
+
+    /** Returns a {@code uuid} field, or {@code null} for SQL NULL. */
+    public UUID getUUID(int column) {
+        if (isNull(column)) {
+            return null;
+        }
+        if (isBinary(column)) {
+            int offset = offset(column);
+            return new UUID(payload.getLong(offset), payload.getLong(offset + 8));
+        }
+        return UUID.fromString(getString(column));
+    }
+
+    public UUID getUUID(String column) {
+        return getUUID(description.indexOf(column));
+    }
+
+    /**
+     * Returns a row which owns a copy of this row's data and stays valid after the cursor moves.
+     *
+     * @throws IllegalStateException if the row is above the streaming threshold
+     */
+    public Row copy() {
+        if (source != null) {
+            throw new IllegalStateException("Rows read field by field cannot be copied");
+        }
+        int start = payload.position();
+        int end = start + 2;
+        if (fieldCount > 0) {
+            end = offsets[fieldCount - 1] + Math.max(0, lengths[fieldCount - 1]);
+        }
+        var data = ByteBuffer.allocate(end - start);
+        data.put(0, payload, start, end - start);
+        var row = new Row();
+        row.reset(description, data);
+        return row;
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder("Row[");
+        for (int i = 0; i < fieldCount; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(description.name(i)).append('=');
+            if (!isNull(i) && offsets[i] == -1) {
+                sb.append("<%d bytes>".formatted(lengths[i]));
+            } else {
+                sb.append(getString(i));
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    /** Returns the length of the raw field value in bytes, or -1 for SQL NULL. */
+    int fieldLength(int column) {
+        return lengths[checkIndex(column)];
+    }
+
+    /** Copies the raw field value to {@code target} at {@code index}, without allocating. */
+    void copyField(int column, ByteBuffer target, int index) {
+        target.put(index, payload, offset(column), lengths[column]);
+    }
+
+    boolean isBinary(int column) {
+        return description.format(column) == PgFrontendMessages.BINARY_FORMAT;
+    }
+
+    private String formatBinary(int column) {
+        return switch (description.typeOid(column)) {
+            case PgTypes.BOOL -> getBoolean(column) ? "t" : "f";
+            case PgTypes.INT2, PgTypes.INT4, PgTypes.INT8 -> Long.toString(getLong(column));
+            case PgTypes.FLOAT4 -> Float.toString(payload.getFloat(offset(column)));
+            case PgTypes.FLOAT8 -> Double.toString(getDouble(column));
+            case PgTypes.TIMESTAMP, PgTypes.TIMESTAMPTZ -> getTimestamp(column).toString();
+            case PgTypes.UUID -> getUUID(column).toString();
+            case PgTypes.BYTEA -> encodeHexBytea(getBytes(column));
+            default -> throw unsupportedConversion(column, "String");
+        };
+    }
+
+    private boolean isHexBytea(int column) {
+        return !isBinary(column) && description.typeOid(column) == PgTypes.BYTEA;
+    }
+
+    private PgFieldStream fieldStream(int column) {
+        if (offsets[column] != -1) {
+            return new PgFieldStream(payload.slice(offsets[column], lengths[column]));
+        }
+        if (largeField == null || column != indexedFields - 1) {
+            throw new IllegalStateException(
+                    "Column %s was skipped by accessing a later column"
+                            .formatted(description.name(column)));
+        }
+        return largeField;
+    }
+
+    /** Returns the offset of a buffered field. */
+    private int offset(int column) {
+        int offset = offsets[column];
+        if (offset == -1) {
+            throw new IllegalStateException(
+                    "Column %s has %d bytes, above the streaming threshold, use getInputStream()"
+                            .formatted(description.name(column), lengths[column]));
+        }
+        return offset;
+    }
+
+    /**
+     * Reads the lengths, and the values up to the threshold, of the fields of a streamed row up to
+     * {@code column}, skipping what is left of a field above the threshold on the way.
+     */
+    private void indexThrough(int column) {
+        while (indexedFields <= column) {
+            if (largeField != null) {
+                largeField.discard();
+                largeField = null;
+            }
+            int i = indexedFields++;
+            int lengthOffset = inlineFields.position();
+            readInline(4);
+            int length = inlineFields.getInt(lengthOffset);
+            lengths[i] = length;
+            if (length > threshold) {
+                offsets[i] = -1;
+                largeField = new PgFieldStream(source, length);
+            } else {
+                offsets[i] = inlineFields.position();
+                readInline(Math.max(0, length));
+            }
+        }
+    }
+
+    /** Appends the next {@code length} bytes of the streamed row to {@link #inlineFields}. */
+    private void readInline(int length) {
+        int end = inlineFields.position() + length;
+        if (end > inlineFields.capacity()) {
+            var grown = ByteBuffer.allocate(Math.max(end, inlineFields.capacity() * 2));
+            grown.put(inlineFields.flip());
+            inlineFields = grown;
+            payload = grown;
+        }
+        inlineFields.limit(end);
+        while (inlineFields.hasRemaining()) {
+            if (source.readStreamed(inlineFields) == -1) {
+                throw new RuntimeException("DataRow ended before all fields were read");
+            }
+        }
+        inlineFields.limit(inlineFields.capacity());
+    }
+
+    /** Decodes the hex output format of bytea, e.g. \x0aff */
+    private static byte[] decodeHexBytea(byte[] text) {
+        if (text.length < 2 || text[0] != '\\' || text[1] != 'x') {
+            return text;
+        }
+        byte[] value = new byte[(text.length - 2) / 2];
+        for (int i = 0; i < value.length; i++) {
+            int high = Character.digit(text[2 + 2 * i], 16);
+            int low = Character.digit(text[3 + 2 * i], 16);
+            value[i] = (byte) ((high << 4) | low);
+        }
+        return value;
+    }
+
+    private static String encodeHexBytea(byte[] value) {
+        return "\\x" + HexFormat.of().formatHex(value);
+    }
+
+    private RuntimeException unsupportedConversion(int column, String javaType) {
+        return new UnsupportedOperationException(
+                "Cannot convert binary column %s of type OID %d to %s"
+                        .formatted(
+                                description.name(column), description.typeOid(column), javaType));
+    }
+
+    private long parseLong(int column) {
+        int offset = offset(column);
+        int length = lengths[column];
+        int i = 0;
+        boolean negative = false;
+        byte first = length > 0 ? payload.get(offset) : 0;
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i = 1;
+        }
+        if (i == length) {
+            throw new NumberFormatException("Not an integer: '%s'".formatted(getString(column)));
+        }
+        // accumulate negatively so that Long.MIN_VALUE does not overflow
+        long value = 0;
+        for (; i < length; i++) {
+            int digit = payload.get(offset + i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(
+                        "Not an integer: '%s'".formatted(getString(column)));
+            }
+            value = Math.subtractExact(Math.multiplyExact(value, 10), digit);
+        }
+        return negative ? value : Math.negateExact(value);
+    }
+
+    private void checkNotNull(int column) {
+        if (isNull(column)) {
+            throw new IllegalStateException(
+                    "Column %s is NULL, check isNull() first".formatted(description.name(column)));
+        }
+    }
+
+    private int checkIndex(int column) {
+        if (column < 0 || column >= fieldCount) {
+            throw new IndexOutOfBoundsException(
+                    "Column index %d out of range for %d columns".formatted(column, fieldCount));
+        }
+        if (column >= indexedFields) {
+            indexThrough(column);
+        }
+        return column;
+    }
+
+    /** Decodes the hex output format of a text-format bytea field while it is read. */
+    private static final class HexByteaStream extends InputStream {
+        private final InputStream hex;
+        private byte[] chars = new byte[0];
+        private final byte[] single = new byte[1];
+        private boolean prefixRead = false;
+
+        HexByteaStream(InputStream hex) {
+            this.hex = hex;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!prefixRead) {
+                prefixRead = true;
+                if (hex.readNBytes(2).length < 2) {
+                    return -1;
+                }
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (chars.length < 2 * len) {
+                chars = new byte[2 * len];
+            }
+            int n = hex.read(chars, 0, 2 * len);
+            if (n == -1) {
+                return -1;
+            }
+            if (n % 2 == 1 && hex.read(chars, n++, 1) == -1) {
+                throw new IOException("Truncated hex bytea value");
+            }
+            for (int i = 0; i < n / 2; i++) {
+                int high = Character.digit(chars[2 * i], 16);
+                int low = Character.digit(chars[2 * i + 1], 16);
+                b[off + i] = (byte) ((high << 4) | low);
+            }
+            return n / 2;
+        }
+
+        @Override
+        public void close() throws IOException {
+            hex.close();
+        }
+    }
+}
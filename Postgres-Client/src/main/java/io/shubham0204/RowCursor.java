@@ -0,0 +1,263 @@
+package io.shubham0204;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the rows of a query as the DataRow messages arrive, instead of collecting the whole
+ * result first.
+ *
+ * <pre>{@code
+ * try (RowCursor cursor = client.query("SELECT id, name FROM users WHERE age > $1", 30)) {
+ *     while (cursor.next()) {
+ *         Row row = cursor.row();
+ *         System.out.println(row.getInt(0) + " " + row.getString("name"));
+ *     }
+ * }
+ * }</pre>
+ *
+ * <p>The connection is busy until the cursor is exhausted or closed; closing it early reads and
+ * discards the remaining rows. With a fetch size, the portal is executed with a row limit and the
+ * server suspends it after each batch; the next batch is only requested once the cursor has
+ * consumed the current one, so the rows buffered anywhere between server and client stay bounded.
+ * Closing such a cursor early skips the batches that were not requested yet.
+ *
+ * <p>With a streaming threshold, see {@link PgClient#setStreamingThreshold(int)}, a DataRow larger
+ * than the threshold never passes through the read buffer: either its fields are read one by one
+ * as the row is accessed, large values as streams straight off the socket, or, with a spill
+ * directory, the whole row is read from the socket into a memory-mapped temporary file, so every
+ * accessor works on it without the row being held on the heap.
+ */
+public class RowCursor implements AutoCloseable {
+
+    private final PgClient client;
+    private final PgStatementCache.PreparedStatement statement;
+    private final String portalName;
+    private int fetchSize;
+    private final int streamingThreshold;
+    private final Path spillDirectory;
+    private boolean syncSent;
+    private boolean closing = false;
+    private boolean parsed;
+    private final Row row = new Row();
+    private RowDescription description;
+    private String commandTag;
+    private PgServerException error;
+    private boolean done = false;
+    private final long startNanos;
+    private long rows = 0;
+
+    RowCursor(
+            PgClient client,
+            PgStatementCache.PreparedStatement statement,
+            boolean parse,
+            String portalName,
+            int fetchSize,
+            long startNanos) {
+        this.client = client;
+        this.statement = statement;
+        this.portalName = portalName;
+        this.fetchSize = fetchSize;
+        this.streamingThreshold = client.streamingThreshold();
+        this.spillDirectory = client.spillDirectory();
+        this.syncSent = fetchSize == 0;
+        this.parsed = !parse;
+        this.startNanos = startNanos;
+        readDescription();
+    }
+
+    /**
+     * Advances to the next row, blocking until it has been received.
+     *
+     * @return false once all rows have been read
+     * @throws PgServerException if the server reports an error while executing the query
+     */
+    public boolean next() {
+        if (done) {
+            return false;
+        }
+        row.detach();
+        while (true) {
+            if (streamingThreshold > 0 && isLargeRow()) {
+                if (spillDirectory != null) {
+                    row.reset(description, spill());
+                } else {
+                    row.resetStreamed(description, client.transport(), streamingThreshold);
+                }
+                rows++;
+                return true;
+            }
+            PgMessage msg = client.transport().read();
+            switch (msg.type()) {
+                case ROW_DATA -> {
+                    row.reset(description, msg.payload());
+                    rows++;
+                    return true;
+                }
+                case READY_FOR_QUERY -> {
+                    finish(msg);
+                    return false;
+                }
+                default -> handleMessage(msg);
+            }
+        }
+    }
+
+    /** Returns the current row. It is only valid until the next call to {@link #next()}. */
+    public Row row() {
+        return row;
+    }
+
+    /** Returns the column metadata, or {@code null} if the query does not return rows. */
+    public RowDescription description() {
+        return description;
+    }
+
+    /** Returns the tag of the CommandComplete message, e.g. "SELECT 5", once all rows were read. */
+    public String commandTag() {
+        return commandTag;
+    }
+
+    /**
+     * Sets the number of rows requested by each following Execute. Only applies to cursors opened
+     * with a fetch size, see {@link PgClient#setFetchSize(int)}; other cursors already asked the
+     * server for all rows.
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be > 0");
+        }
+        if (this.fetchSize == 0) {
+            throw new IllegalStateException("Cursor was opened without a fetch size");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /** Reads and discards the remaining rows, leaving the connection ready for the next query. */
+    @Override
+    public void close() {
+        closing = true;
+        while (next()) {
+            // discard
+        }
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    private boolean isLargeRow() {
+        var transport = client.transport();
+        return transport.peekType() == PgMessageType.ROW_DATA
+                && transport.peekLength() > streamingThreshold;
+    }
+
+    /**
+     * Reads the payload of the next DataRow from the socket straight into a memory-mapped file in
+     * the spill directory. The file is deleted right away; its pages stay mapped until the
+     * returned buffer is garbage-collected.
+     */
+    private ByteBuffer spill() {
+        var transport = client.transport();
+        int length = transport.beginStreamed();
+        try {
+            Path file = Files.createTempFile(spillDirectory, "pg-row-", ".tmp");
+            try (var channel =
+                    FileChannel.open(
+                            file,
+                            StandardOpenOption.READ,
+                            StandardOpenOption.WRITE,
+                            StandardOpenOption.DELETE_ON_CLOSE)) {
+                var mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                while (mapped.hasRemaining()) {
+                    if (transport.readStreamed(mapped) == -1) {
+                        throw new RuntimeException("DataRow ended early");
+                    }
+                }
+                return mapped.clear();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("I/O failed in spill(): %s".formatted(e.getMessage()));
+        }
+    }
+
+    /** Reads up to the RowDescription (or NoData) so that the columns are known before any row. */
+    private void readDescription() {
+        while (description == null && !done) {
+            PgMessage msg = client.transport().read();
+            switch (msg.type()) {
+                case ROW_DESC -> {
+                    description = RowDescription.parse(msg.payload());
+                    if (statement.resultFormats == null) {
+                        statement.resultFormats = PgTypes.resultFormats(description);
+                    }
+                }
+                case NO_DATA -> {
+                    statement.resultFormats = new short[0];
+                    return;
+                }
+                case READY_FOR_QUERY -> finish(msg);
+                default -> handleMessage(msg);
+            }
+        }
+    }
+
+    private void handleMessage(PgMessage msg) {
+        switch (msg.type()) {
+            case PARSE_COMPLETE -> parsed = true;
+            case PORTAL_SUSPENDED -> {
+                if (closing) {
+                    sync();
+                } else {
+                    client.transport().queue(PgFrontendMessages.execute(portalName, fetchSize));
+                    client.transport().write(PgFrontendMessages.flush());
+                }
+            }
+            case COMMAND_COMPLETE -> {
+                commandTag = PgBackendMessages.commandTag(msg.payload());
+                sync();
+            }
+            case EMPTY_QUERY_RESPONSE -> {
+                commandTag = "";
+                sync();
+            }
+            case ERROR -> {
+                error = PgServerException.fromErrorResponse(msg.payload());
+                // the server discards messages up to the next Sync after an error
+                sync();
+            }
+            default -> {}
+        }
+    }
+
+    /**
+     * See <a href="https://www.postgresql.org/docs/current/protocol-flow.html#PROTOCOL-FLOW-EXT-QUERY">Extended Query</a> message flow.
+     */
+    private void sync() {
+        if (!syncSent) {
+            syncSent = true;
+            client.transport().write(PgFrontendMessages.sync());
+        }
+    }
+
+    private void finish(PgMessage readyForQuery) {
+        done = true;
+        client.handleReadyForQueryMessage(readyForQuery);
+        client.cursorFinished(this);
+        client.metrics().queryCompleted(statement.sql, System.nanoTime() - startNanos, rows, error);
+        if (!parsed || (error != null && PgClient.isStaleStatementError(error))) {
+            client.statementCache().remove(statement.sql, parsed);
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
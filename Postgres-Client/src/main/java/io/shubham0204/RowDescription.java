@@ -0,0 +1,74 @@
+package io.shubham0204;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column metadata of a result set. See <a href="https://www.postgresql.org/docs/current/protocol-message-formats.html#PROTOCOL-MESSAGE-FORMATS-ROWDESCRIPTION">RowDescription</a> message format.
+ */
+public final class RowDescription {
+
+    private final String[] names;
+    private final int[] typeOids;
+    private final short[] formats;
+    private final Map<String, Integer> indexByName;
+
+    private RowDescription(String[] names, int[] typeOids, short[] formats) {
+        this.names = names;
+        this.typeOids = typeOids;
+        this.formats = formats;
+        this.indexByName = new HashMap<>(names.length * 2);
+        for (int i = names.length - 1; i >= 0; i--) {
+            // the first column wins if several share a name, like in psql
+            indexByName.put(names[i], i);
+        }
+    }
+
+    static RowDescription parse(ByteBuffer payload) {
+        var buf = payload.duplicate();
+        int columnCount = buf.getShort();
+        String[] names = new String[columnCount];
+        int[] typeOids = new int[columnCount];
+        short[] formats = new short[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            names[i] = CStringUtils.getInternedCString(buf);
+            buf.position(buf.position() + 6); // Skip table OID and column attribute number
+            typeOids[i] = buf.getInt();
+            buf.position(buf.position() + 6); // Skip type size and type modifier
+            formats[i] = buf.getShort();
+        }
+        return new RowDescription(names, typeOids, formats);
+    }
+
+    public int columnCount() {
+        return names.length;
+    }
+
+    public String name(int column) {
+        return names[column];
+    }
+
+    /** OID of the column's data type, see the pg_type system catalog. */
+    public int typeOid(int column) {
+        return typeOids[column];
+    }
+
+    /** Format code of the column: 0 for text, 1 for binary. */
+    public short format(int column) {
+        return formats[column];
+    }
+
+    /**
+     * Returns the index of the column with the given name.
+     *
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public int indexOf(String name) {
+        Integer index = indexByName.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("No column named %s in the result".formatted(name));
+        }
+        return index;
+    }
+}
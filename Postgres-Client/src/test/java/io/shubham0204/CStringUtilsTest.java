@@ -1,8 +1,12 @@
 package io.shubham0204;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Test;
 
 public class CStringUtilsTest {
@@ -29,4 +33,57 @@ public class CStringUtilsTest {
         assertEquals((byte) 'o', data[4]);
         assertEquals((byte) '\0', data[5]);
     }
+
+    @Test
+    public void getCString_utf8DirectBuffer_decodesAndAdvances() {
+        var data = "héllo wörld €\0next\0".getBytes(StandardCharsets.UTF_8);
+        var buffer = ByteBuffer.allocateDirect(data.length).put(data).flip();
+        assertEquals("héllo wörld €", CStringUtils.getCString(buffer));
+        assertEquals("next", CStringUtils.getCString(buffer));
+        assertEquals(data.length, buffer.position());
+    }
+
+    @Test
+    public void getCString_slicedHeapBuffer_usesArrayOffset() {
+        var data = "xxabc\0".getBytes(StandardCharsets.UTF_8);
+        var buffer = ByteBuffer.wrap(data).position(2).slice();
+        assertEquals("abc", CStringUtils.getCString(buffer));
+    }
+
+    @Test
+    public void getCString_missingTerminator_throws() {
+        var buffer = ByteBuffer.wrap("abc".getBytes(StandardCharsets.UTF_8));
+        assertThrows(BufferUnderflowException.class, () -> CStringUtils.getCString(buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void getInternedCString_repeatedName_returnsSameInstance() {
+        var data = "column_name\0column_name\0".getBytes(StandardCharsets.UTF_8);
+        var buffer = ByteBuffer.allocateDirect(data.length).put(data).flip();
+        var first = CStringUtils.getInternedCString(buffer);
+        var second = CStringUtils.getInternedCString(buffer);
+        assertEquals("column_name", first);
+        assertSame(first, second);
+    }
+
+    @Test
+    public void getInternedCString_sameSlotDifferentBytes_returnsEachString() {
+        // equal length and equal first and last eight bytes, so both hash to the same slot
+        var data = "abcdefgh_1_abcdefgh\0abcdefgh_2_abcdefgh\0abcdefgh_1_abcdefgh\0";
+        var buffer = ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
+        assertEquals("abcdefgh_1_abcdefgh", CStringUtils.getInternedCString(buffer));
+        assertEquals("abcdefgh_2_abcdefgh", CStringUtils.getInternedCString(buffer));
+        assertEquals("abcdefgh_1_abcdefgh", CStringUtils.getInternedCString(buffer));
+        assertEquals(data.length(), buffer.position());
+    }
+
+    @Test
+    public void putCString_nonAscii_writesUtf8() {
+        var buffer = ByteBuffer.allocate(16);
+        CStringUtils.putCString(buffer, "naïve");
+        buffer.flip();
+        assertEquals(7, buffer.remaining());
+        assertEquals("naïve", CStringUtils.getCString(buffer));
+    }
 }
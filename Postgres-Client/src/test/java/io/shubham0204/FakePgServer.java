@@ -0,0 +1,915 @@
+package io.shubham0204;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * An in-process server speaking enough of the Postgres wire protocol to run the client end-to-end
+ * without a database: startup, MD5, SCRAM-SHA-256 (or no) authentication, the simple and
+ * extended query protocols with portal suspension, and synthetic result sets.
+ *
+ * <p>Results are registered per SQL text with {@link #onQuery(String, Result)}. Queries of the
+ * form {@code SELECT generate_series(1, N)} produce N int4 rows without registration, so large
+ * results cost no memory on the server. Placeholders are substituted with the bound parameters
+ * before matching. Any other query fails with SQLSTATE 42P01. {@link #setLatency(Duration)} delays
+ * every answer to a Query or Sync to emulate a network round trip, and {@link
+ * #setExecutionTime(Duration)} keeps every query running for a while, until it is cancelled with a
+ * CancelRequest carrying the connection's BackendKeyData. {@code LISTEN "channel"} and {@code
+ * NOTIFY "channel", 'payload'} deliver NotificationResponses between connections, and {@link
+ * #disconnectAll()} drops every client to exercise reconnects, {@link #terminateAll()} after a
+ * FATAL error. Simple queries may hold several statements separated by semicolons, and {@code
+ * BEGIN}, {@code COMMIT} and {@code ROLLBACK} set the transaction status in ReadyForQuery.
+ *
+ * <p>The server binds an ephemeral port on the loopback interface and serves every connection on
+ * its own virtual thread.
+ */
+class FakePgServer implements AutoCloseable {
+
+    static final String USER = "postgres";
+    static final String PASSWORD = "secret";
+    static final String DATABASE = "testdb";
+
+    /** Supplies the text value of a column, or {@code null} for NULL. */
+    interface RowGenerator {
+        String value(long row, int column);
+    }
+
+    /** A synthetic result set; a {@code null} column list makes a command without rows. */
+    record Result(String[] columns, int[] typeOids, long rowCount, RowGenerator generator) {
+
+        static Result command(String commandTag) {
+            return new Result(null, null, 0, (row, column) -> commandTag);
+        }
+
+        static Result rows(String[] columns, int[] typeOids, List<String[]> rows) {
+            return new Result(
+                    columns, typeOids, rows.size(), (row, column) -> rows.get((int) row)[column]);
+        }
+
+        String commandTag() {
+            return columns == null ? generator.value(0, 0) : "SELECT " + rowCount;
+        }
+    }
+
+    private static final byte[] SCRAM_SALT = "fake-pg-salt".getBytes(StandardCharsets.UTF_8);
+    private static final int SCRAM_ITERATIONS = 4096;
+    private static final Pattern GENERATE_SERIES =
+            Pattern.compile("SELECT generate_series\\(1, (\\d+)\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LISTEN =
+            Pattern.compile("(UN)?LISTEN \"(.*)\"", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NOTIFY =
+            Pattern.compile("NOTIFY \"(.*)\"(?:, '(.*)')?", Pattern.CASE_INSENSITIVE);
+
+    private final ServerSocket serverSocket;
+    private final Map<String, Result> results = new ConcurrentHashMap<>();
+    private final List<Socket> sockets = new ArrayList<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger queries = new AtomicInteger();
+    private final AtomicInteger parses = new AtomicInteger();
+    private final AtomicInteger cancelRequests = new AtomicInteger();
+    private final AtomicInteger nextProcessId = new AtomicInteger(4242);
+    private final Map<Integer, Connection> connectionsByProcessId = new ConcurrentHashMap<>();
+    private final Map<String, Set<Connection>> listeners = new ConcurrentHashMap<>();
+    private volatile Duration latency = Duration.ZERO;
+    private volatile Duration executionTime = Duration.ZERO;
+    private volatile boolean md5Authentication = true;
+    private volatile boolean scramAuthentication = false;
+    private volatile boolean scramServerFinal = true;
+    private volatile boolean commitFailure = false;
+    private volatile boolean authenticationNotices = false;
+
+    FakePgServer() throws IOException {
+        serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread.ofPlatform().name("fake-pg-accept").daemon().start(this::acceptLoop);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Registers the result returned for {@code sql}, after placeholder substitution. */
+    FakePgServer onQuery(String sql, Result result) {
+        results.put(sql, result);
+        return this;
+    }
+
+    /** Delays the answer to every Query and Sync message. */
+    FakePgServer setLatency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /** Makes every query take this long to execute, unless it is cancelled. */
+    FakePgServer setExecutionTime(Duration executionTime) {
+        this.executionTime = executionTime;
+        return this;
+    }
+
+    /**
+     * Fails the implicit commit at every Sync which follows no other error with SQLSTATE 23505,
+     * like a deferred unique constraint, sending the ErrorResponse just before ReadyForQuery.
+     */
+    FakePgServer setCommitFailure(boolean commitFailure) {
+        this.commitFailure = commitFailure;
+        return this;
+    }
+
+    /**
+     * Sends a NoticeResponse and a message of a type outside the protocol before every
+     * authentication request, as a server or proxy might during the exchange.
+     */
+    FakePgServer setAuthenticationNotices(boolean authenticationNotices) {
+        this.authenticationNotices = authenticationNotices;
+        return this;
+    }
+
+    /** Accepts every client without a password when disabled. */
+    FakePgServer setMd5Authentication(boolean md5Authentication) {
+        this.md5Authentication = md5Authentication;
+        return this;
+    }
+
+    /**
+     * Authenticates clients with SCRAM-SHA-256 instead of MD5. Without {@code sendServerFinal},
+     * AuthenticationOk follows the client's proof directly, like from a server which cannot prove
+     * that it knows the password.
+     */
+    FakePgServer setScramAuthentication(boolean sendServerFinal) {
+        this.scramAuthentication = true;
+        this.scramServerFinal = sendServerFinal;
+        return this;
+    }
+
+    /** Number of connections accepted so far. */
+    int connections() {
+        return connections.get();
+    }
+
+    /** Number of queries executed so far, with either protocol. */
+    int queries() {
+        return queries.get();
+    }
+
+    /** Number of Parse messages received so far. */
+    int parses() {
+        return parses.get();
+    }
+
+    /** Number of named prepared statements currently held by all connections. */
+    int preparedStatements() {
+        return connectionsByProcessId.values().stream()
+                .mapToInt(Connection::namedStatements)
+                .sum();
+    }
+
+    /** Number of connections currently listening to {@code channel}. */
+    int listeners(String channel) {
+        return listeners.getOrDefault(channel, Set.of()).size();
+    }
+
+    /** Number of CancelRequests received so far, valid or not. */
+    int cancelRequests() {
+        return cancelRequests.get();
+    }
+
+    /** Returns a connected and authenticated client. */
+    PgClient connect() {
+        var client = new PgClient();
+        client.connect("localhost", port());
+        client.authenticate(DATABASE, USER, PASSWORD);
+        return client;
+    }
+
+    PgPoolConfig poolConfig() {
+        return PgPoolConfig.of("localhost", port(), DATABASE, USER, PASSWORD);
+    }
+
+    /** Closes all client connections, but keeps accepting new ones. */
+    void disconnectAll() throws IOException {
+        synchronized (sockets) {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            sockets.clear();
+        }
+    }
+
+    /** Sends every client a FATAL error, as on a server shutdown, and closes the connections. */
+    void terminateAll() throws IOException {
+        connectionsByProcessId.values().forEach(Connection::terminate);
+        disconnectAll();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        disconnectAll();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                synchronized (sockets) {
+                    sockets.add(socket);
+                }
+                connections.incrementAndGet();
+                Thread.ofVirtual().name("fake-pg-connection").start(() -> serve(socket));
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            new Connection(in, out).run();
+        } catch (EOFException e) {
+            // client went away
+        } catch (IOException e) {
+            // connection closed by the client or by close()
+        }
+    }
+
+    /** A portal, i.e. a bound statement with its position in the result. */
+    private static class Portal {
+        final String sql;
+        final short[] resultFormats;
+        Result result;
+        long nextRow = 0;
+
+        Portal(String sql, short[] resultFormats) {
+            this.sql = sql;
+            this.resultFormats = resultFormats;
+        }
+    }
+
+    private class Connection {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final Map<String, String> statements = new ConcurrentHashMap<>();
+        private final Map<String, Portal> portals = new HashMap<>();
+        private boolean skipUntilSync = false;
+        private final int processId = nextProcessId.getAndIncrement();
+        private final int secretKey = processId * 31;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition cancelled = lock.newCondition();
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private boolean executing = false;
+        private byte transactionStatus = 'I';
+        private boolean cancelRequested = false;
+
+        Connection(DataInputStream in, DataOutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        int namedStatements() {
+            return (int) statements.keySet().stream().filter(name -> !name.isEmpty()).count();
+        }
+
+        void run() throws IOException {
+            if (!startUp()) {
+                return;
+            }
+            connectionsByProcessId.put(processId, this);
+            try {
+                serveMessages();
+            } finally {
+                connectionsByProcessId.remove(processId);
+                listeners.values().forEach(channelListeners -> channelListeners.remove(this));
+            }
+        }
+
+        private void serveMessages() throws IOException {
+            while (true) {
+                char type = (char) in.readUnsignedByte();
+                byte[] body = new byte[in.readInt() - 4];
+                in.readFully(body);
+                var payload = ByteBuffer.wrap(body);
+                if (type == 'X') {
+                    return;
+                }
+                if (skipUntilSync && type != 'S') {
+                    continue;
+                }
+                switch (type) {
+                    case 'Q' -> simpleQuery(cString(payload));
+                    case 'P' -> parse(payload);
+                    case 'B' -> bind(payload);
+                    case 'D' -> describe(payload);
+                    case 'E' -> execute(payload);
+                    case 'C' -> close(payload);
+                    case 'S' -> {
+                        boolean failed = skipUntilSync;
+                        skipUntilSync = false;
+                        delay();
+                        portals.remove("");
+                        if (commitFailure && !failed) {
+                            error("23505", "duplicate key value violates unique constraint");
+                            skipUntilSync = false;
+                        }
+                        readyForQuery();
+                    }
+                    case 'H' -> out.flush();
+                    default -> error("08P01", "Unexpected message type " + type);
+                }
+                if (in.available() == 0) {
+                    // the real server flushes whenever it is about to wait for input
+                    out.flush();
+                }
+            }
+        }
+
+        private boolean startUp() throws IOException {
+            byte[] body = new byte[in.readInt() - 4];
+            in.readFully(body);
+            var payload = ByteBuffer.wrap(body);
+            int protocol = payload.getInt();
+            if (protocol == PgClient.CANCEL_REQUEST_CODE) {
+                cancelRequests.incrementAndGet();
+                var target = connectionsByProcessId.get(payload.getInt());
+                if (target != null && target.secretKey == payload.getInt()) {
+                    target.cancel();
+                }
+                // the server closes the connection without answering
+                return false;
+            }
+            if (protocol != 0x00030000) {
+                error("08P01", "Unsupported protocol " + protocol);
+                out.flush();
+                return false;
+            }
+            String user = null;
+            while (payload.get(payload.position()) != 0) {
+                String name = cString(payload);
+                String value = cString(payload);
+                if (name.equals("user")) {
+                    user = value;
+                }
+            }
+            if (scramAuthentication) {
+                if (!scramExchange()) {
+                    return false;
+                }
+            } else if (md5Authentication) {
+                byte[] salt = {1, 2, 3, 4};
+                authenticationNotices();
+                message('R', ByteBuffer.allocate(8).putInt(5).put(salt).array());
+                out.flush();
+                if (in.readUnsignedByte() != 'p') {
+                    return false;
+                }
+                byte[] response = new byte[in.readInt() - 4];
+                in.readFully(response);
+                byte[] expected = PgClient.buildPasswordMessage(salt, USER, PASSWORD).data();
+                if (!USER.equals(user) || !Arrays.equals(expected, response)) {
+                    error("28P01", "password authentication failed for user %s".formatted(user));
+                    out.flush();
+                    return false;
+                }
+            }
+            authenticationNotices();
+            message('R', ByteBuffer.allocate(4).putInt(0).array());
+            parameterStatus("server_version", "16.0");
+            parameterStatus("client_encoding", "UTF8");
+            message('K', ByteBuffer.allocate(8).putInt(processId).putInt(secretKey).array());
+            readyForQuery();
+            out.flush();
+            return true;
+        }
+
+        /** Runs a SCRAM-SHA-256 exchange; returns false if the client did not complete it. */
+        private boolean scramExchange() throws IOException {
+            authenticationRequest(10, "SCRAM-SHA-256\0\0");
+            var initialResponse = passwordMessage();
+            if (initialResponse == null) {
+                return false;
+            }
+            cString(initialResponse);
+            byte[] clientFirst = new byte[initialResponse.getInt()];
+            initialResponse.get(clientFirst);
+            // without channel binding, the client-first-message starts with "n,,"
+            String clientFirstBare = new String(clientFirst, StandardCharsets.UTF_8).substring(3);
+            String nonce = clientFirstBare.substring(clientFirstBare.indexOf(",r=") + 3);
+            String serverFirst =
+                    "r=%s%s,s=%s,i=%d"
+                            .formatted(
+                                    nonce,
+                                    "fakeServerNonce",
+                                    Base64.getEncoder().encodeToString(SCRAM_SALT),
+                                    SCRAM_ITERATIONS);
+            authenticationRequest(11, serverFirst);
+            var finalResponse = passwordMessage();
+            if (finalResponse == null) {
+                return false;
+            }
+            String clientFinal = StandardCharsets.UTF_8.decode(finalResponse).toString();
+            int proofStart = clientFinal.indexOf(",p=");
+            String clientFinalWithoutProof = clientFinal.substring(0, proofStart);
+            String authMessage =
+                    String.join(",", clientFirstBare, serverFirst, clientFinalWithoutProof);
+            byte[] saltedPassword = pbkdf2(PASSWORD, SCRAM_SALT, SCRAM_ITERATIONS);
+            byte[] storedKey = sha256(hmac(saltedPassword, "Client Key"));
+            byte[] clientKey = Base64.getDecoder().decode(clientFinal.substring(proofStart + 3));
+            byte[] clientSignature = hmac(storedKey, authMessage);
+            for (int i = 0; i < clientKey.length; i++) {
+                clientKey[i] ^= clientSignature[i];
+            }
+            if (!Arrays.equals(storedKey, sha256(clientKey))) {
+                error("28P01", "password authentication failed for user %s".formatted(USER));
+                out.flush();
+                return false;
+            }
+            if (scramServerFinal) {
+                byte[] serverKey = hmac(saltedPassword, "Server Key");
+                String serverSignature =
+                        Base64.getEncoder().encodeToString(hmac(serverKey, authMessage));
+                authenticationRequest(12, "v=" + serverSignature);
+            }
+            return true;
+        }
+
+        private void authenticationRequest(int code, String data) throws IOException {
+            byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+            message('R', ByteBuffer.allocate(4 + bytes.length).putInt(code).put(bytes).array());
+            out.flush();
+        }
+
+        /** Reads a PasswordMessage, or returns null if the client sent something else. */
+        private ByteBuffer passwordMessage() throws IOException {
+            if (in.readUnsignedByte() != 'p') {
+                return null;
+            }
+            byte[] body = new byte[in.readInt() - 4];
+            in.readFully(body);
+            return ByteBuffer.wrap(body);
+        }
+
+        private void simpleQuery(String sql) throws IOException {
+            delay();
+            if (sql.isBlank()) {
+                message('I', new byte[0]);
+            }
+            // the statements of a multi-statement query run one by one until one fails
+            for (String statement : sql.split(";")) {
+                if (!statement.isBlank() && !simpleStatement(statement.strip())) {
+                    break;
+                }
+            }
+            readyForQuery();
+        }
+
+        /** Runs one statement of a simple query; returns false if it failed. */
+        private boolean simpleStatement(String sql) throws IOException {
+            queries.incrementAndGet();
+            if (listenOrNotify(sql) || transactionControl(sql)) {
+                return true;
+            }
+            if (!runQuery()) {
+                error("57014", "canceling statement due to user request");
+                skipUntilSync = false;
+                return false;
+            }
+            Result result = lookup(sql);
+            if (result == null) {
+                error("42P01", "relation in \"%s\" does not exist".formatted(sql));
+                // unlike the extended protocol, nothing is skipped after an error
+                skipUntilSync = false;
+                return false;
+            }
+            if (result.columns() != null) {
+                rowDescription(result, new short[0]);
+            }
+            var portal = new Portal(sql, new short[0]);
+            portal.result = result;
+            dataRows(portal, 0);
+            commandComplete(result.commandTag());
+            return true;
+        }
+
+        private boolean transactionControl(String sql) throws IOException {
+            switch (sql.toUpperCase()) {
+                case "BEGIN" -> transactionStatus = 'T';
+                case "COMMIT", "ROLLBACK" -> transactionStatus = 'I';
+                default -> {
+                    return false;
+                }
+            }
+            commandComplete(sql.toUpperCase());
+            return true;
+        }
+
+        private boolean listenOrNotify(String sql) throws IOException {
+            var listen = LISTEN.matcher(sql);
+            var notify = NOTIFY.matcher(sql);
+            if (listen.matches()) {
+                String channel = listen.group(2).replace("\"\"", "\"");
+                if (listen.group(1) == null) {
+                    var channelListeners =
+                            listeners.computeIfAbsent(channel, c -> ConcurrentHashMap.newKeySet());
+                    channelListeners.add(this);
+                    commandComplete("LISTEN");
+                } else {
+                    listeners.getOrDefault(channel, Set.of()).remove(this);
+                    commandComplete("UNLISTEN");
+                }
+                return true;
+            }
+            if (notify.matches()) {
+                String channel = notify.group(1).replace("\"\"", "\"");
+                String payload = notify.group(2) == null ? "" : notify.group(2);
+                for (Connection listener : listeners.getOrDefault(channel, Set.of())) {
+                    listener.notification(processId, channel, payload);
+                }
+                commandComplete("NOTIFY");
+                return true;
+            }
+            return false;
+        }
+
+        /** Sends a FATAL ErrorResponse from another thread, as on a server shutdown. */
+        void terminate() {
+            String fields =
+                    "SFATAL\0VFATAL\0C57P01\0Mterminating connection due to administrator"
+                            + " command\0\0";
+            try {
+                message('E', fields.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } catch (IOException e) {
+                // the client went away
+            }
+        }
+
+        /** Sends a NotificationResponse from another connection's thread. */
+        void notification(int senderProcessId, String channel, String payload) {
+            byte[] channelBytes = (channel + "\0").getBytes(StandardCharsets.UTF_8);
+            byte[] payloadBytes = (payload + "\0").getBytes(StandardCharsets.UTF_8);
+            var body =
+                    ByteBuffer.allocate(4 + channelBytes.length + payloadBytes.length)
+                            .putInt(senderProcessId)
+                            .put(channelBytes)
+                            .put(payloadBytes);
+            try {
+                message('A', body.array());
+                out.flush();
+            } catch (IOException e) {
+                // the listener went away
+            }
+        }
+
+        private void parse(ByteBuffer payload) throws IOException {
+            parses.incrementAndGet();
+            String name = cString(payload);
+            statements.put(name, cString(payload));
+            message('1', new byte[0]);
+        }
+
+        private void bind(ByteBuffer payload) throws IOException {
+            String portalName = cString(payload);
+            String sql = statements.get(cString(payload));
+            if (sql == null) {
+                error("26000", "prepared statement does not exist");
+                return;
+            }
+            short[] paramFormats = new short[payload.getShort()];
+            for (int i = 0; i < paramFormats.length; i++) {
+                paramFormats[i] = payload.getShort();
+            }
+            int paramCount = payload.getShort();
+            for (int i = 1; i <= paramCount; i++) {
+                int length = payload.getInt();
+                String value = "NULL";
+                if (length >= 0) {
+                    byte[] bytes = new byte[length];
+                    payload.get(bytes);
+                    value = new String(bytes, StandardCharsets.UTF_8);
+                }
+                sql = sql.replace("$" + i, value);
+            }
+            short[] resultFormats = new short[payload.getShort()];
+            for (int i = 0; i < resultFormats.length; i++) {
+                resultFormats[i] = payload.getShort();
+            }
+            portals.put(portalName, new Portal(sql, resultFormats));
+            message('2', new byte[0]);
+        }
+
+        private void describe(ByteBuffer payload) throws IOException {
+            char kind = (char) payload.get();
+            String name = cString(payload);
+            if (kind == 'S') {
+                // parameter types are not tracked, report none
+                message('t', new byte[] {0, 0});
+                Result result = lookup(statements.get(name));
+                if (result != null && result.columns() != null) {
+                    rowDescription(result, new short[0]);
+                } else {
+                    message('n', new byte[0]);
+                }
+                return;
+            }
+            Portal portal = portals.get(name);
+            if (portal == null || (portal.result = lookup(portal.sql)) == null) {
+                String sql = portal == null ? name : portal.sql;
+                error("42P01", "relation in \"%s\" does not exist".formatted(sql));
+            } else if (portal.result.columns() == null) {
+                message('n', new byte[0]);
+            } else {
+                rowDescription(portal.result, portal.resultFormats);
+            }
+        }
+
+        private void execute(ByteBuffer payload) throws IOException {
+            Portal portal = portals.get(cString(payload));
+            int maxRows = payload.getInt();
+            if (portal != null && portal.result == null) {
+                portal.result = lookup(portal.sql);
+            }
+            if (portal == null || portal.result == null) {
+                error("34000", "portal does not exist");
+                return;
+            }
+            if (portal.nextRow == 0) {
+                queries.incrementAndGet();
+                if (!runQuery()) {
+                    error("57014", "canceling statement due to user request");
+                    return;
+                }
+            }
+            if (!dataRows(portal, maxRows)) {
+                message('s', new byte[0]);
+                return;
+            }
+            commandComplete(portal.result.commandTag());
+        }
+
+        private void close(ByteBuffer payload) throws IOException {
+            char kind = (char) payload.get();
+            String name = cString(payload);
+            (kind == 'S' ? statements : portals).remove(name);
+            message('3', new byte[0]);
+        }
+
+        private Result lookup(String sql) {
+            Result result = results.get(sql);
+            if (result == null) {
+                var matcher = GENERATE_SERIES.matcher(sql);
+                if (matcher.matches()) {
+                    long count = Long.parseLong(matcher.group(1));
+                    result =
+                            new Result(
+                                    new String[] {"generate_series"},
+                                    new int[] {PgTypes.INT4},
+                                    count,
+                                    (row, column) -> Long.toString(row + 1));
+                }
+            }
+            return result;
+        }
+
+        /** Sends up to {@code maxRows} rows, all if 0; true once the result is exhausted. */
+        private boolean dataRows(Portal portal, int maxRows) throws IOException {
+            Result result = portal.result;
+            if (result.columns() == null) {
+                return true;
+            }
+            long end =
+                    maxRows == 0
+                            ? result.rowCount()
+                            : Math.min(result.rowCount(), portal.nextRow + maxRows);
+            var row = new ByteArrayOutputStream();
+            var rowOut = new DataOutputStream(row);
+            for (; portal.nextRow < end; portal.nextRow++) {
+                row.reset();
+                rowOut.writeShort(result.columns().length);
+                for (int column = 0; column < result.columns().length; column++) {
+                    String value = result.generator().value(portal.nextRow, column);
+                    if (value == null) {
+                        rowOut.writeInt(-1);
+                    } else if (format(portal.resultFormats, column)
+                            == PgFrontendMessages.BINARY_FORMAT) {
+                        byte[] bytes = binary(result.typeOids()[column], value);
+                        rowOut.writeInt(bytes.length);
+                        rowOut.write(bytes);
+                    } else {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        rowOut.writeInt(bytes.length);
+                        rowOut.write(bytes);
+                    }
+                }
+                message('D', row.toByteArray());
+            }
+            return portal.nextRow >= result.rowCount();
+        }
+
+        private void rowDescription(Result result, short[] resultFormats) throws IOException {
+            var description = new ByteArrayOutputStream();
+            var descriptionOut = new DataOutputStream(description);
+            descriptionOut.writeShort(result.columns().length);
+            for (int i = 0; i < result.columns().length; i++) {
+                descriptionOut.write(result.columns()[i].getBytes(StandardCharsets.UTF_8));
+                descriptionOut.writeByte(0);
+                descriptionOut.writeInt(0);
+                descriptionOut.writeShort(0);
+                descriptionOut.writeInt(result.typeOids()[i]);
+                descriptionOut.writeShort(-1);
+                descriptionOut.writeInt(-1);
+                descriptionOut.writeShort(format(resultFormats, i));
+            }
+            message('T', description.toByteArray());
+        }
+
+        private void commandComplete(String commandTag) throws IOException {
+            message('C', (commandTag + "\0").getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void parameterStatus(String name, String value) throws IOException {
+            message('S', (name + "\0" + value + "\0").getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void authenticationNotices() throws IOException {
+            if (authenticationNotices) {
+                String fields = "SNOTICE\0VNOTICE\0C00000\0Mauthenticating\0\0";
+                message('N', fields.getBytes(StandardCharsets.UTF_8));
+                message('~', new byte[] {1, 2, 3, 4});
+            }
+        }
+
+        private void readyForQuery() throws IOException {
+            message('Z', new byte[] {transactionStatus});
+        }
+
+        private void error(String sqlState, String text) throws IOException {
+            String fields = "SERROR\0VERROR\0C" + sqlState + "\0M" + text + "\0\0";
+            message('E', fields.getBytes(StandardCharsets.UTF_8));
+            // like the real server, which flushes errors at once rather than at the next Sync
+            out.flush();
+            skipUntilSync = true;
+        }
+
+        private void message(char type, byte[] payload) throws IOException {
+            // notifications are written by other connections' threads
+            writeLock.lock();
+            try {
+                out.writeByte(type);
+                out.writeInt(4 + payload.length);
+                out.write(payload);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        /** Waits for the execution time; returns false if the query was cancelled meanwhile. */
+        private boolean runQuery() throws IOException {
+            long remaining = executionTime.toNanos();
+            if (remaining == 0) {
+                return true;
+            }
+            out.flush();
+            lock.lock();
+            try {
+                executing = true;
+                while (!cancelRequested && remaining > 0) {
+                    remaining = cancelled.awaitNanos(remaining);
+                }
+                return !cancelRequested;
+            } catch (InterruptedException e) {
+                throw new IOException("interrupted");
+            } finally {
+                executing = false;
+                cancelRequested = false;
+                lock.unlock();
+            }
+        }
+
+        /** Cancels the running query; like the real server, an idle connection ignores it. */
+        void cancel() {
+            lock.lock();
+            try {
+                if (executing) {
+                    cancelRequested = true;
+                    cancelled.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void delay() throws IOException {
+            out.flush();
+            if (!latency.isZero()) {
+                try {
+                    Thread.sleep(latency);
+                } catch (InterruptedException e) {
+                    throw new IOException("interrupted");
+                }
+            }
+        }
+    }
+
+    private static short format(short[] formats, int column) {
+        return switch (formats.length) {
+            case 0 -> PgFrontendMessages.TEXT_FORMAT;
+            case 1 -> formats[0];
+            default -> formats[column];
+        };
+    }
+
+    private static byte[] binary(int typeOid, String value) {
+        return switch (typeOid) {
+            case PgTypes.INT4 -> ByteBuffer.allocate(4).putInt(Integer.parseInt(value)).array();
+            case PgTypes.INT8 -> ByteBuffer.allocate(8).putLong(Long.parseLong(value)).array();
+            case PgTypes.FLOAT8 ->
+                    ByteBuffer.allocate(8).putDouble(Double.parseDouble(value)).array();
+            case PgTypes.BOOL -> new byte[] {(byte) (value.equals("t") ? 1 : 0)};
+            case PgTypes.TIMESTAMP ->
+                    ByteBuffer.allocate(8).putLong(timestampMicros(value)).array();
+            default -> value.getBytes(StandardCharsets.UTF_8);
+        };
+    }
+
+    /** Encodes a text timestamp like the server, in microseconds since 2000-01-01. */
+    private static long timestampMicros(String value) {
+        return switch (value) {
+            case "infinity" -> Long.MAX_VALUE;
+            case "-infinity" -> Long.MIN_VALUE;
+            default -> {
+                var timestamp = LocalDateTime.parse(value.replace(' ', 'T'));
+                var sincePgEpoch = Duration.between(LocalDateTime.of(2000, 1, 1, 0, 0), timestamp);
+                yield sincePgEpoch.toSeconds() * 1_000_000L + sincePgEpoch.toNanosPart() / 1000;
+            }
+        };
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        try {
+            var spec = new PBEKeySpec(password.toCharArray(), salt, iterations, 256);
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
+                    .generateSecret(spec)
+                    .getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String message) {
+        try {
+            var mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String cString(ByteBuffer buffer) {
+        int start = buffer.position();
+        while (buffer.get() != 0) {
+            // find the terminator
+        }
+        int length = buffer.position() - start - 1;
+        return new String(buffer.array(), start, length, StandardCharsets.UTF_8);
+    }
+}
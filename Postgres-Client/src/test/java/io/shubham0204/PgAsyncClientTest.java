@@ -0,0 +1,88 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PgAsyncClientTest {
+
+    private FakePgServer server;
+    private PgEventLoop loop;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakePgServer();
+        server.onQuery("UPDATE users SET name = 'Bob'", FakePgServer.Result.command("UPDATE 3"));
+        server.onQuery(
+                "SELECT name FROM users",
+                FakePgServer.Result.rows(
+                        new String[] {"name"},
+                        new int[] {25},
+                        List.<String[]>of(new String[] {"Alice"}, new String[] {"Bob"})));
+        loop = new PgEventLoop();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        loop.close();
+        server.close();
+    }
+
+    @Test
+    void query_multipleStatements_returnsOnlyLastStatementsRows() throws Exception {
+        var client = connect();
+        var result =
+                client.query(
+                                "SELECT generate_series(1, 3); SELECT name FROM users;"
+                                        + " UPDATE users SET name = 'Bob'")
+                        .get(10, TimeUnit.SECONDS);
+        assertEquals("UPDATE 3", result.commandTag());
+        assertEquals(List.of(), result.columns());
+        assertEquals(0, result.rows().size());
+
+        var rows =
+                client.query("SELECT generate_series(1, 3); SELECT name FROM users")
+                        .get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("name"), rows.columns());
+        assertEquals(2, rows.rows().size());
+        assertArrayEquals(new String[] {"Bob"}, rows.rows().get(1));
+        client.close();
+    }
+
+    @Test
+    void query_fatalErrorWhileIdle_closesConnection() throws Exception {
+        var client = connect();
+        assertEquals(2, client.query("SELECT generate_series(1, 2)").get().rows().size());
+        server.terminateAll();
+
+        // once the loop has read the error, queries fail at once with its reason
+        String message = "";
+        for (int i = 0; i < 100 && !message.startsWith("Connection is closed"); i++) {
+            Thread.sleep(10);
+            var query = client.query("SELECT generate_series(1, 2)");
+            var error =
+                    assertThrows(ExecutionException.class, () -> query.get(10, TimeUnit.SECONDS));
+            message = error.getCause().getMessage();
+        }
+        assertTrue(message.contains("57P01"), message);
+    }
+
+    private PgAsyncClient connect() throws Exception {
+        return PgAsyncClient.connect(
+                        loop,
+                        "localhost",
+                        server.port(),
+                        FakePgServer.DATABASE,
+                        FakePgServer.USER,
+                        FakePgServer.PASSWORD)
+                .get(10, TimeUnit.SECONDS);
+    }
+}
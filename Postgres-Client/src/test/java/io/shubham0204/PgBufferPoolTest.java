@@ -0,0 +1,79 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+
+class PgBufferPoolTest {
+
+    @Test
+    void acquire_afterRelease_reusesBufferOfSameSizeClass() {
+        var buffer = PgBufferPool.acquire(20_000);
+        assertEquals(32 * 1024, buffer.capacity());
+        assertTrue(buffer.isDirect());
+        buffer.putInt(42);
+        PgBufferPool.release(buffer);
+
+        var reused = PgBufferPool.acquire(17_000);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        PgBufferPool.release(reused);
+        assertEquals(PgBufferPool.MIN_CAPACITY, PgBufferPool.capacityFor(1));
+    }
+
+    @Test
+    void release_twice_throws() {
+        assertTrue(PgBufferPool.LEAK_DETECTION);
+        var buffer = PgBufferPool.acquire(100);
+        PgBufferPool.release(buffer);
+        assertThrows(IllegalStateException.class, () -> PgBufferPool.release(buffer));
+        assertThrows(
+                IllegalStateException.class,
+                () -> PgBufferPool.release(ByteBuffer.allocateDirect(PgBufferPool.MIN_CAPACITY)));
+    }
+
+    @Test
+    void acquire_bufferDroppedWithoutRelease_isReportedAsLeak() throws Exception {
+        long leaks = PgBufferPool.leaks();
+        int outstanding = PgBufferPool.outstanding();
+        PgBufferPool.acquire(100);
+        assertEquals(outstanding + 1, PgBufferPool.outstanding());
+        for (int i = 0; i < 100 && PgBufferPool.leaks() == leaks; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(leaks + 1, PgBufferPool.leaks());
+        assertEquals(outstanding, PgBufferPool.outstanding());
+    }
+
+    @Test
+    void query_largeRows_returnsAllBuffersOnClose() throws Exception {
+        try (var server = new FakePgServer()) {
+            server.onQuery(
+                    "SELECT doc FROM docs",
+                    new FakePgServer.Result(
+                            new String[] {"doc"},
+                            new int[] {25},
+                            3,
+                            (row, column) -> Long.toString(row).repeat(100_000)));
+            int outstanding = PgBufferPool.outstanding();
+            var client = server.connect();
+            for (int i = 0; i < 3; i++) {
+                try (var cursor = client.query("SELECT doc FROM docs")) {
+                    while (cursor.next()) {
+                        assertEquals(100_000, cursor.row().getString(0).length());
+                    }
+                }
+                // small messages after the large rows shrink the buffer back
+                assertTrue(client.ping());
+            }
+            assertEquals(outstanding + 2, PgBufferPool.outstanding());
+            client.close();
+            assertEquals(outstanding, PgBufferPool.outstanding());
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Runs the client end-to-end against {@link FakePgServer} over a loopback socket. */
+class PgClientIntegrationTest {
+
+    private FakePgServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new FakePgServer();
+        server.onQuery(
+                "SELECT id, name, score FROM users WHERE id = 7",
+                FakePgServer.Result.rows(
+                        new String[] {"id", "name", "score"},
+                        new int[] {PgTypes.INT8, 25, PgTypes.FLOAT8},
+                        List.<String[]>of(new String[] {"7", "Alice", "91.5"})));
+        server.onQuery("UPDATE users SET name = 'Bob'", FakePgServer.Result.command("UPDATE 3"));
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void query_cachedStatement_switchesToBinaryResults() {
+        var client = server.connect();
+        for (int i = 0; i < 3; i++) {
+            try (var cursor = client.query("SELECT id, name, score FROM users WHERE id = $1", 7)) {
+                assertTrue(cursor.next());
+                assertEquals(7L, cursor.row().getLong("id"));
+                assertEquals("Alice", cursor.row().getString("name"));
+                assertEquals(91.5, cursor.row().getDouble("score"));
+                assertFalse(cursor.next());
+                assertEquals("SELECT 1", cursor.commandTag());
+            }
+        }
+        assertEquals(1, server.parses());
+        client.close();
+    }
+
+    @Test
+    void authenticate_parameterStatus_isKept() {
+        var client = server.connect();
+        assertEquals("16.0", client.getParameterStatus("server_version"));
+        assertEquals("UTF8", client.getParameterStatus("client_encoding"));
+        client.close();
+    }
+
+    @Test
+    void authenticate_noticeAndUnknownMessage_areSkipped() {
+        server.setAuthenticationNotices(true);
+        var client = server.connect();
+        assertTrue(client.isReadyForQuery());
+        assertEquals("16.0", client.getParameterStatus("server_version"));
+        client.close();
+    }
+
+    @Test
+    void authenticate_wrongPassword_throws() {
+        var client = new PgClient();
+        client.connect("localhost", server.port());
+        var error =
+                assertThrows(
+                        PgServerException.class,
+                        () ->
+                                client.authenticate(
+                                        FakePgServer.DATABASE, FakePgServer.USER, "wrong"));
+        assertEquals("28P01", error.getSqlState());
+        client.close();
+    }
+
+    @Test
+    void query_unknownRelation_throwsAndConnectionStaysUsable() {
+        var client = server.connect();
+        var error =
+                assertThrows(PgServerException.class, () -> client.query("SELECT * FROM missing"));
+        assertEquals("42P01", error.getSqlState());
+        try (var cursor = client.query("UPDATE users SET name = 'Bob'")) {
+            assertFalse(cursor.next());
+            assertEquals("UPDATE 3", cursor.commandTag());
+        }
+        client.close();
+    }
+
+    @Test
+    void query_largeResultWithFetchSize_streamsAllRows() {
+        var client = server.connect();
+        client.setFetchSize(1000);
+        long sum = 0;
+        try (var cursor = client.query("SELECT generate_series(1, $1)", 200_000)) {
+            while (cursor.next()) {
+                sum += cursor.row().getInt(0);
+            }
+            assertEquals("SELECT 200000", cursor.commandTag());
+        }
+        assertEquals(200_000L * 200_001 / 2, sum);
+        client.close();
+    }
+
+    @Test
+    void cancel_fromAnotherThread_failsQueryAndKeepsConnection() throws Exception {
+        server.setExecutionTime(Duration.ofSeconds(30));
+        var client = server.connect();
+        var canceller =
+                CompletableFuture.runAsync(
+                        () -> {
+                            // wait until the query is running, a cancel while idle is ignored
+                            while (server.queries() == 0) {
+                                Thread.onSpinWait();
+                            }
+                            client.cancel();
+                        });
+        long start = System.nanoTime();
+        var error =
+                assertThrows(
+                        PgServerException.class,
+                        () -> client.query("SELECT generate_series(1, $1)", 10).close());
+        assertTrue(error.isQueryCanceled());
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(10).toNanos());
+        canceller.get(10, TimeUnit.SECONDS);
+        assertEquals(1, server.cancelRequests());
+
+        server.setExecutionTime(Duration.ZERO);
+        assertEquals(10, countRows(client));
+        client.close();
+    }
+
+    @Test
+    void setQueryTimeout_slowQuery_isCancelledAtDeadline() {
+        var client = server.connect();
+        client.setQueryTimeout(Duration.ofMillis(100));
+        assertEquals(10, countRows(client));
+        assertEquals(0, server.cancelRequests());
+
+        server.setExecutionTime(Duration.ofSeconds(30));
+        var error = assertThrows(PgServerException.class, () -> countRows(client));
+        assertTrue(error.isQueryCanceled());
+        assertEquals("57014", error.getSqlState());
+        assertTrue(client.isReadyForQuery());
+
+        server.setExecutionTime(Duration.ZERO);
+        assertEquals(10, countRows(client));
+        client.close();
+    }
+
+    @Test
+    void pipeline_severalQueries_completeInOrder() throws Exception {
+        server.setLatency(Duration.ofMillis(20));
+        var client = server.connect();
+        var pipeline = client.pipeline();
+        var futures = new ArrayList<CompletableFuture<PgQueryResult>>();
+        for (int n = 1; n <= 10; n++) {
+            futures.add(pipeline.add("SELECT generate_series(1, $1)", n));
+        }
+        pipeline.sync();
+        for (int n = 1; n <= 10; n++) {
+            assertEquals(n, futures.get(n - 1).get().rows().size());
+        }
+        client.close();
+    }
+
+    @Test
+    void pool_concurrentCallers_shareBoundedConnections() throws Exception {
+        server.setLatency(Duration.ofMillis(2));
+        try (var pool = new PgConnectionPool(server.poolConfig().withSize(1, 4));
+                var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<Long>>();
+            for (int task = 0; task < 32; task++) {
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    long rows = 0;
+                                    for (int i = 0; i < 10; i++) {
+                                        rows += pool.withClient(PgClientIntegrationTest::countRows);
+                                    }
+                                    return rows;
+                                }));
+            }
+            for (var future : futures) {
+                assertEquals(100, future.get(30, TimeUnit.SECONDS));
+            }
+            assertTrue(server.connections() <= 4);
+            assertTrue(pool.getOpenConnections() <= 4);
+        }
+    }
+
+    @Test
+    void asyncClient_manyQueriesInFlight_completeInOrder() throws Exception {
+        server.setLatency(Duration.ofMillis(5));
+        try (var loop = new PgEventLoop()) {
+            var client =
+                    PgAsyncClient.connect(
+                                    loop,
+                                    "localhost",
+                                    server.port(),
+                                    FakePgServer.DATABASE,
+                                    FakePgServer.USER,
+                                    FakePgServer.PASSWORD)
+                            .get(10, TimeUnit.SECONDS);
+            var futures = new ArrayList<CompletableFuture<PgQueryResult>>();
+            for (int n = 1; n <= 50; n++) {
+                futures.add(client.query("SELECT generate_series(1, $1)", n));
+            }
+            futures.add(client.query("SELECT id, name, score FROM users WHERE id = 7"));
+            for (int n = 1; n <= 50; n++) {
+                assertEquals(n, futures.get(n - 1).get(10, TimeUnit.SECONDS).rows().size());
+            }
+            assertArrayEquals(
+                    new String[] {"7", "Alice", "91.5"}, futures.get(50).get().rows().get(0));
+
+            var failed = client.query("SELECT * FROM missing");
+            var error =
+                    assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+            assertEquals("42P01", ((PgServerException) error.getCause()).getSqlState());
+            client.close();
+        }
+    }
+
+    private static long countRows(PgClient client) {
+        long rows = 0;
+        try (var cursor = client.query("SELECT generate_series(1, $1)", 10)) {
+            while (cursor.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,152 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PgColumnarResultTest {
+
+    private static final String QUERY = "SELECT id, score, active, name FROM scores";
+    private static final int ROWS = 3000;
+
+    private static FakePgServer serverWithScores() throws Exception {
+        var rows = new ArrayList<String[]>();
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(
+                    new String[] {
+                        Integer.toString(i),
+                        i % 7 == 0 ? null : Double.toString(i * 0.5),
+                        i % 2 == 0 ? "t" : "f",
+                        i % 5 == 0 ? null : "name-" + i
+                    });
+        }
+        var server = new FakePgServer();
+        server.onQuery(
+                QUERY,
+                FakePgServer.Result.rows(
+                        new String[] {"id", "score", "active", "name"},
+                        new int[] {PgTypes.INT4, PgTypes.FLOAT8, PgTypes.BOOL, 25},
+                        rows));
+        return server;
+    }
+
+    private static void assertScores(PgColumnarResult result) {
+        assertEquals(ROWS, result.rowCount());
+        assertEquals("SELECT " + ROWS, result.commandTag());
+        var id = result.column("id");
+        var score = result.column("score");
+        var active = result.column("active");
+        var name = result.column("name");
+        assertEquals(PgColumn.Kind.INT, id.kind());
+        assertEquals(PgColumn.Kind.DOUBLE, score.kind());
+        assertEquals(PgColumn.Kind.BYTES, name.kind());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(i, id.getInt(i));
+            assertEquals(i % 7 == 0, score.isNull(i));
+            assertEquals(i % 7 == 0 ? 0 : i * 0.5, score.getDouble(i));
+            assertEquals(i % 2 == 0, active.getBoolean(i));
+            assertEquals(i % 5 == 0 ? null : "name-" + i, name.getString(i));
+        }
+        assertEquals(ROWS, id.ints().remaining());
+        assertEquals((ROWS + 63) / 64, score.nullBitmap().remaining());
+        assertEquals(ROWS + 1, name.offsets().remaining());
+    }
+
+    @Test
+    void collect_textAndBinaryFormats_decodeSameColumns() throws Exception {
+        try (var server = serverWithScores()) {
+            var client = server.connect();
+            // the first execution returns text, the cached statement then asks for binary
+            for (int execution = 0; execution < 2; execution++) {
+                try (var cursor = client.query(QUERY)) {
+                    var result = PgColumnarResult.collect(cursor);
+                    assertScores(result);
+                    int[] ids = result.column("id").intArray();
+                    assertEquals(ROWS, ids.length);
+                    assertEquals(ROWS - 1, ids[ROWS - 1]);
+                }
+            }
+            assertTrue(client.isReadyForQuery());
+            client.close();
+        }
+    }
+
+    @Test
+    void collect_timestamps_storesEpochMicrosInBothFormats() throws Exception {
+        var values =
+                List.of(
+                        "1970-01-01 00:00:00",
+                        "2024-02-29 12:34:56.789012",
+                        "1999-12-31 23:59:59.5",
+                        "1901-06-30 08:00:00.000001",
+                        "infinity");
+        long[] expected = {
+            0,
+            1_709_210_096_789_012L,
+            946_684_799_500_000L,
+            -2_161_871_999_999_999L,
+            Long.MAX_VALUE
+        };
+        try (var server = new FakePgServer()) {
+            server.onQuery(
+                    "SELECT at FROM events",
+                    FakePgServer.Result.rows(
+                            new String[] {"at"},
+                            new int[] {PgTypes.TIMESTAMP},
+                            values.stream().map(value -> new String[] {value}).toList()));
+            var client = server.connect();
+            // text first, binary from the second execution on
+            for (int execution = 0; execution < 2; execution++) {
+                try (var cursor = client.query("SELECT at FROM events")) {
+                    var at = PgColumnarResult.collect(cursor).column("at");
+                    assertEquals(PgColumn.Kind.LONG, at.kind());
+                    assertArrayEquals(expected, at.longArray());
+                }
+            }
+            client.close();
+        }
+    }
+
+    @Test
+    void collect_offHeap_usesDirectBuffers() throws Exception {
+        try (var server = serverWithScores()) {
+            var client = server.connect();
+            try (var cursor = client.query(QUERY)) {
+                var result = PgColumnarResult.collect(cursor, true);
+                assertScores(result);
+                var id = result.column("id");
+                assertTrue(id.isOffHeap());
+                assertTrue(id.ints().isDirect());
+                assertTrue(result.column("name").bytes().isDirect());
+                assertThrows(IllegalStateException.class, id::intArray);
+            }
+            client.close();
+        }
+    }
+
+    @Test
+    void getters_wrongKind_throw() throws Exception {
+        try (var server = serverWithScores()) {
+            var client = server.connect();
+            try (var cursor = client.query(QUERY)) {
+                var result = PgColumnarResult.collect(cursor);
+                var name = result.column("name");
+                assertThrows(UnsupportedOperationException.class, () -> name.getLong(1));
+                assertThrows(UnsupportedOperationException.class, () -> name.getDouble(1));
+                assertEquals(1.0, result.column("id").getDouble(1));
+                assertArrayEquals("name-1".getBytes(), name.getBytes(1));
+                assertNull(name.getBytes(0));
+                assertFalse(result.column("active").getBoolean(1));
+                assertThrows(IndexOutOfBoundsException.class, () -> name.isNull(ROWS));
+            }
+            client.close();
+        }
+    }
+}
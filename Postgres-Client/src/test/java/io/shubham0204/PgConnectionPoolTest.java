@@ -0,0 +1,229 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import org.junit.jupiter.api.Test;
+
+class PgConnectionPoolTest {
+
+    @Test
+    void acquire_poolExhausted_timesOutUnlessReleased() throws Exception {
+        try (var server = new FakePgServer();
+                var pool = new PgConnectionPool(config(server, 0, 1, Duration.ofSeconds(30)))) {
+            var client = pool.acquire();
+            long start = System.nanoTime();
+            var error = assertThrows(RuntimeException.class, pool::acquire);
+            assertTrue(error.getMessage().startsWith("Timed out after 300 ms"), error.getMessage());
+            assertTrue(System.nanoTime() - start >= Duration.ofMillis(300).toNanos());
+
+            // a release wakes the waiting caller up before its timeout
+            var releaser =
+                    Thread.ofVirtual()
+                            .start(
+                                    () -> {
+                                        sleep(100);
+                                        pool.release(client);
+                                    });
+            assertSame(client, pool.acquire());
+            releaser.join();
+            pool.release(client);
+            assertEquals(1, pool.getOpenConnections());
+        }
+    }
+
+    @Test
+    void evictIdleConnections_idleAboveMinSize_closesDownToMinSize() throws Exception {
+        try (var server = new FakePgServer();
+                var pool = new PgConnectionPool(config(server, 1, 3, Duration.ofMillis(100)))) {
+            var clients = new PgClient[] {pool.acquire(), pool.acquire(), pool.acquire()};
+            for (PgClient client : clients) {
+                pool.release(client);
+            }
+            assertEquals(3, pool.getIdleConnections());
+
+            // the evictor runs every second at most
+            awaitValue(1, pool::getOpenConnections);
+            assertEquals(1, pool.getIdleConnections());
+        }
+    }
+
+    @Test
+    void evictIdleConnections_belowMinSize_topsPoolBackUp() throws Exception {
+        try (var server = new FakePgServer()) {
+            var opened = new AtomicInteger();
+            var config = config(server, 2, 3, Duration.ofMillis(100));
+            try (var pool =
+                    new PgConnectionPool(
+                            config,
+                            () -> {
+                                opened.incrementAndGet();
+                                return server.connect();
+                            })) {
+                assertEquals(2, opened.get());
+                assertEquals(2, pool.getIdleConnections());
+
+                // a connection left in a transaction is closed instead of going back
+                var client = pool.acquire();
+                client.executeQuery("BEGIN");
+                pool.release(client);
+
+                // a new connection counts as open before it is added to the idle ones
+                awaitValue(2, pool::getIdleConnections);
+                assertEquals(3, opened.get());
+                assertEquals(2, pool.getOpenConnections());
+            }
+        }
+    }
+
+    @Test
+    void release_openTransaction_discardsConnection() throws Exception {
+        try (var server = new FakePgServer();
+                var pool = new PgConnectionPool(server.poolConfig().withSize(0, 1))) {
+            var client = pool.acquire();
+            client.executeQuery("BEGIN");
+            pool.release(client);
+            assertEquals(0, pool.getOpenConnections());
+            assertEquals(0, pool.getIdleConnections());
+
+            var next = pool.acquire();
+            assertNotSame(client, next);
+            assertEquals('I', next.getTransactionStatus());
+            next.executeQuery("BEGIN");
+            next.executeQuery("COMMIT");
+            pool.release(next);
+            assertEquals(1, pool.getIdleConnections());
+        }
+    }
+
+    @Test
+    void acquire_idleLongerThanValidationInterval_replacesDeadConnection() throws Exception {
+        try (var server = new FakePgServer()) {
+            // within the validation interval, an idle connection is handed out without a ping
+            try (var pool = new PgConnectionPool(validatedConfig(server, Duration.ofMinutes(1)))) {
+                var client = pool.acquire();
+                pool.release(client);
+                server.disconnectAll();
+                assertSame(client, pool.acquire());
+                pool.release(client);
+            }
+
+            try (var pool = new PgConnectionPool(validatedConfig(server, Duration.ZERO))) {
+                var client = pool.acquire();
+                pool.release(client);
+                server.disconnectAll();
+                var next = pool.acquire();
+                assertNotSame(client, next);
+                assertTrue(next.ping());
+                assertEquals(1, pool.getOpenConnections());
+                pool.release(next);
+            }
+        }
+    }
+
+    @Test
+    void release_sameConnectionTwice_throws() throws Exception {
+        try (var server = new FakePgServer();
+                var pool = new PgConnectionPool(server.poolConfig().withSize(0, 2))) {
+            var client = pool.acquire();
+            pool.release(client);
+            assertThrows(IllegalStateException.class, () -> pool.release(client));
+            assertEquals(1, pool.getIdleConnections());
+
+            // the connection is handed out once, so two callers never share it
+            var first = pool.acquire();
+            var second = pool.acquire();
+            assertSame(client, first);
+            assertEquals(2, pool.getOpenConnections());
+            var stranger = server.connect();
+            assertThrows(IllegalStateException.class, () -> pool.release(stranger));
+            stranger.close();
+            pool.release(first);
+            pool.release(second);
+        }
+    }
+
+    @Test
+    void release_changedSettings_nextCallerGetsDefaults() throws Exception {
+        try (var server = new FakePgServer();
+                var pool = new PgConnectionPool(server.poolConfig().withSize(0, 1))) {
+            var client = pool.acquire();
+            client.setStreamingThreshold(1024);
+            client.setSpillDirectory(Path.of(System.getProperty("java.io.tmpdir")));
+            client.setFetchSize(10);
+            client.setQueryTimeout(Duration.ofMillis(1));
+            client.setStatementCacheSize(0);
+            pool.release(client);
+
+            var next = pool.acquire();
+            assertSame(client, next);
+            assertEquals(0, next.streamingThreshold());
+            assertNull(next.spillDirectory());
+            // the statement cache is back to its default size and the timeout is gone
+            int parses = server.parses();
+            server.setExecutionTime(Duration.ofMillis(50));
+            for (int i = 0; i < 3; i++) {
+                try (var cursor = next.query("SELECT generate_series(1, 3)")) {
+                    while (cursor.next()) {
+                        // drain
+                    }
+                }
+            }
+            assertEquals(1, server.parses() - parses);
+            assertEquals(1, next.statementCache().size());
+            pool.release(next);
+        }
+    }
+
+    private static PgPoolConfig config(
+            FakePgServer server, int minSize, int maxSize, Duration idleTimeout) {
+        return new PgPoolConfig(
+                "localhost",
+                server.port(),
+                FakePgServer.DATABASE,
+                FakePgServer.USER,
+                FakePgServer.PASSWORD,
+                minSize,
+                maxSize,
+                idleTimeout,
+                Duration.ofSeconds(30),
+                Duration.ofMillis(300));
+    }
+
+    private static PgPoolConfig validatedConfig(FakePgServer server, Duration validationInterval) {
+        return new PgPoolConfig(
+                "localhost",
+                server.port(),
+                FakePgServer.DATABASE,
+                FakePgServer.USER,
+                FakePgServer.PASSWORD,
+                0,
+                1,
+                Duration.ofMinutes(5),
+                validationInterval,
+                Duration.ofSeconds(5));
+    }
+
+    private static void awaitValue(int expected, IntSupplier actual) throws InterruptedException {
+        for (int i = 0; i < 100 && actual.getAsInt() != expected; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(expected, actual.getAsInt());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
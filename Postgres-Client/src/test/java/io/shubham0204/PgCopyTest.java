@@ -0,0 +1,79 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class PgCopyTest {
+
+    private static byte[] message(char type, byte[] payload) {
+        var buffer = ByteBuffer.allocate(5 + payload.length);
+        buffer.put((byte) type);
+        buffer.putInt(4 + payload.length);
+        buffer.put(payload);
+        return buffer.array();
+    }
+
+    private static byte[] cString(String value) {
+        return (value + "\0").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] text(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void copyIn_writeRows_sendsEscapedCopyData() {
+        var server = new ByteArrayOutputStream();
+        server.writeBytes(message('G', new byte[] {0, 0, 2, 0, 0, 0, 0}));
+        server.writeBytes(message('C', cString("COPY 2")));
+        server.writeBytes(message('Z', new byte[] {'I'}));
+        var channel = new PgTransportTest.ChunkedChannel(server.toByteArray(), 64);
+        var client = new PgClient(new PgTransport(channel));
+
+        long rows;
+        try (var writer = client.copyIn("COPY t FROM STDIN")) {
+            writer.writeRow(1, "a\tb\\c");
+            writer.writeRow(2, null);
+            rows = writer.finish();
+            assertThrows(IllegalStateException.class, () -> writer.write(1));
+        }
+
+        assertEquals(2, rows);
+        assertEquals('I', client.getTransactionStatus());
+        var written = ByteBuffer.wrap(channel.written.toByteArray());
+        assertEquals('Q', written.get());
+        written.position(1 + written.getInt());
+        assertEquals('d', written.get());
+        byte[] copyData = new byte[written.getInt() - 4];
+        written.get(copyData);
+        assertEquals("1\ta\\tb\\\\c\n2\t\\N\n", new String(copyData, StandardCharsets.UTF_8));
+        assertEquals('c', written.get());
+        assertEquals(4, written.getInt());
+        client.close();
+    }
+
+    @Test
+    void copyOut_readStream_returnsAllChunks() throws Exception {
+        var server = new ByteArrayOutputStream();
+        server.writeBytes(message('H', new byte[] {0, 0, 2, 0, 0, 0, 0}));
+        server.writeBytes(message('d', text("1\tx\n")));
+        server.writeBytes(message('d', text("2\ty\n")));
+        server.writeBytes(message('c', new byte[0]));
+        server.writeBytes(message('C', cString("COPY 2")));
+        server.writeBytes(message('Z', new byte[] {'I'}));
+        var channel = new PgTransportTest.ChunkedChannel(server.toByteArray(), 5);
+        var client = new PgClient(new PgTransport(channel));
+
+        try (var reader = client.copyOut("COPY t TO STDOUT")) {
+            assertEquals("1\tx\n2\ty\n", new String(reader.readAllBytes(), StandardCharsets.UTF_8));
+            assertEquals(2, reader.rowCount());
+        }
+        assertEquals(true, client.isReadyForQuery());
+        client.close();
+    }
+}
@@ -1,12 +1,15 @@
 package io.shubham0204;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 
 class PgMessageTest {
@@ -28,7 +31,7 @@ class PgMessageTest {
     }
 
     @Test
-    void read_invalidMessageType_throws() throws IOException {
+    void read_invalidMessageType_returnsUnknown() throws IOException {
         var buffer = ByteBuffer.allocate(33);
         buffer.put((byte) '\0'); // invalid message type
         buffer.putInt(32);
@@ -36,13 +39,64 @@ class PgMessageTest {
         var byteInputStream = new ByteArrayInputStream(buffer.array());
         var inputStream = new DataInputStream(byteInputStream);
 
-        assertThrowsExactly(
-                RuntimeException.class,
-                () -> {
-                    PgMessage.read(inputStream);
-                },
-                "Could not parse PgMessageType from raw message type received");
+        var message = PgMessage.read(inputStream);
+        assertEquals(PgMessageType.UNKNOWN, message.type());
+        assertEquals(28, message.length());
+        assertThrowsExactly(RuntimeException.class, () -> PgMessageType.UNKNOWN.code());
 
         inputStream.close();
     }
+
+    @Test
+    void fromBackend_sharedTypeBytes_decodeAsBackendMessages() {
+        assertEquals(PgMessageType.COMMAND_COMPLETE, PgMessageType.fromBackend((byte) 'C'));
+        assertEquals(PgMessageType.ROW_DATA, PgMessageType.fromBackend((byte) 'D'));
+        assertEquals(PgMessageType.ERROR, PgMessageType.fromBackend((byte) 'E'));
+        assertEquals(PgMessageType.NOTIFICATION_RESPONSE, PgMessageType.fromBackend((byte) 'A'));
+        assertEquals(PgMessageType.UNKNOWN, PgMessageType.fromBackend((byte) 0xFF));
+        assertEquals('C', PgMessageType.CLOSE.code());
+        assertEquals('C', PgMessageType.COMMAND_COMPLETE.code());
+        assertEquals(PgMessageType.COPY_DATA, PgMessageType.fromBackend((byte) 'd'));
+        assertEquals(PgMessageType.UNKNOWN, PgMessageType.fromBackend((byte) 'X'));
+    }
+
+    @Test
+    void backendMessages_decodeWithoutMovingPayload() {
+        var status = ByteBuffer.wrap("server_version\u000016.0\u0000".getBytes());
+        var parameter = PgBackendMessages.parameterStatus(status);
+        assertEquals(Map.entry("server_version", "16.0"), parameter);
+        var tag = ByteBuffer.wrap("INSERT 0 1\u0000".getBytes());
+        assertEquals("INSERT 0 1", PgBackendMessages.commandTag(tag));
+        var types = ByteBuffer.allocate(10).putShort((short) 2).putInt(23).putInt(25).flip();
+        assertArrayEquals(new int[] {23, 25}, PgBackendMessages.parameterTypes(types));
+        assertEquals(0, status.position());
+        assertEquals(0, tag.position());
+        assertEquals(0, types.position());
+    }
+
+    @Test
+    void frame_incompleteMessage_returnsNull() {
+        var buffer = ByteBuffer.allocate(16);
+        buffer.put((byte) 'Z');
+        buffer.putInt(5);
+        buffer.flip();
+
+        assertNull(PgMessage.frame(buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void frame_completeMessage_returnsView() {
+        var buffer = ByteBuffer.allocate(16);
+        buffer.put((byte) 'Z');
+        buffer.putInt(5);
+        buffer.put((byte) 'I');
+        buffer.flip();
+
+        var message = PgMessage.frame(buffer);
+        assertEquals(PgMessageType.READY_FOR_QUERY, message.type());
+        assertEquals(1, message.length());
+        assertEquals((byte) 'I', message.payload().get(0));
+        assertEquals(6, buffer.position());
+    }
 }
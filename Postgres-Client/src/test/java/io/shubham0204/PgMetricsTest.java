@@ -0,0 +1,80 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PgMetricsTest {
+
+    @Test
+    void percentile_uniformValues_withinBucketPrecision() {
+        var histogram = new PgHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(100_000, histogram.count());
+        assertEquals(100_000_000, histogram.max());
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            double expected = percentile * 1_000_000;
+            double actual = histogram.percentile(percentile);
+            assertTrue(Math.abs(actual - expected) / expected < 1.0 / 64, "p" + percentile);
+        }
+        assertEquals(100_000_000, histogram.percentile(100));
+    }
+
+    @Test
+    void index_bucketBoundaries_containValue() {
+        for (long value : new long[] {0, 127, 128, 129, 255, 256, 1L << 40, Long.MAX_VALUE}) {
+            int index = PgHistogram.index(value);
+            assertTrue(value <= PgHistogram.highestValueOf(index));
+            assertTrue(index == 0 || value > PgHistogram.highestValueOf(index - 1));
+        }
+    }
+
+    @Test
+    void queries_againstFakeServer_recordLatencyRowsAndMessages() throws Exception {
+        var failures = new ArrayList<String>();
+        var metrics =
+                new PgMetrics() {
+                    @Override
+                    public void queryCompleted(
+                            String sql, long nanos, long rows, PgServerException error) {
+                        super.queryCompleted(sql, nanos, rows, error);
+                        if (error != null) {
+                            failures.add(error.getSqlState());
+                        }
+                    }
+                };
+        try (var server = new FakePgServer()) {
+            var client = new PgClient();
+            client.setMetricsListener(metrics);
+            client.connect("localhost", server.port());
+            client.authenticate(FakePgServer.DATABASE, FakePgServer.USER, FakePgServer.PASSWORD);
+
+            for (int n : new int[] {10, 20, 30}) {
+                try (var cursor = client.query("SELECT generate_series(1, $1)", n)) {
+                    while (cursor.next()) {
+                        // count only
+                    }
+                }
+            }
+            assertThrows(PgServerException.class, () -> client.query("SELECT * FROM missing"));
+            client.close();
+        }
+
+        assertEquals(1, metrics.authLatency().count());
+        assertEquals(4, metrics.queries());
+        assertEquals(1, metrics.failedQueries());
+        assertEquals(List.of("42P01"), failures);
+        assertEquals(30, metrics.rowsPerQuery().max());
+        assertEquals(60, metrics.messagesReceived(PgMessageType.ROW_DATA));
+        assertEquals(4, metrics.messagesSent(PgMessageType.EXECUTE));
+        assertEquals(2, metrics.messagesSent(PgMessageType.PARSE));
+        assertTrue(metrics.bytesSent() > 0 && metrics.bytesReceived() > metrics.bytesSent());
+        assertTrue(metrics.queryLatency().percentile(50) > 0);
+    }
+}
@@ -0,0 +1,108 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PgNotificationListenerTest {
+
+    private FakePgServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new FakePgServer();
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void listen_notifyFromAnotherConnection_dispatchesToChannelHandler() throws Exception {
+        var orders = new LinkedBlockingQueue<PgNotification>();
+        var users = new LinkedBlockingQueue<PgNotification>();
+        try (var listener = newListener()) {
+            listener.listen("orders", orders::add);
+            listener.listen("users", users::add);
+            var client = server.connect();
+            client.executeQuery("NOTIFY \"orders\", 'id=7'");
+
+            var notification = orders.poll(10, TimeUnit.SECONDS);
+            assertEquals("orders", notification.channel());
+            assertEquals("id=7", notification.payload());
+            assertTrue(notification.processId() > 0);
+            assertTrue(users.isEmpty());
+
+            listener.unlisten("orders");
+            client.executeQuery("NOTIFY \"orders\", 'id=8'");
+            client.executeQuery("NOTIFY \"users\"");
+            assertEquals("", users.poll(10, TimeUnit.SECONDS).payload());
+            assertNull(orders.poll());
+            client.close();
+        }
+    }
+
+    @Test
+    void listen_connectionLost_reconnectsAndListensAgain() throws Exception {
+        var orders = new LinkedBlockingQueue<PgNotification>();
+        var reconnected = new CountDownLatch(1);
+        try (var listener = newListener()) {
+            listener.listen("orders", orders::add);
+            listener.setReconnectHandler(reconnected::countDown);
+            server.disconnectAll();
+
+            assertTrue(reconnected.await(10, TimeUnit.SECONDS));
+            assertTrue(listener.isConnected());
+            var client = server.connect();
+            client.executeQuery("NOTIFY \"orders\", 'id=9'");
+            assertEquals("id=9", orders.poll(10, TimeUnit.SECONDS).payload());
+            client.close();
+        }
+    }
+
+    @Test
+    void listen_slowListenReply_runsReconnectHandlerAfterAcknowledgement() throws Exception {
+        var listening = new LinkedBlockingQueue<Integer>();
+        // the old connection is gone from the server well before the new one listens
+        try (var listener = newListener(Duration.ofMillis(200))) {
+            listener.listen("orders", notification -> {});
+            listener.listen("users", notification -> {});
+            listener.setReconnectHandler(
+                    () -> listening.add(server.listeners("orders") + server.listeners("users")));
+            server.setLatency(Duration.ofMillis(200));
+            server.disconnectAll();
+
+            assertEquals(2, listening.poll(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void listen_sameChannelWhileListenPending_returnsOnceConfirmed() throws Exception {
+        try (var listener = newListener()) {
+            server.setLatency(Duration.ofMillis(300));
+            var first = Thread.ofVirtual().start(() -> listener.listen("orders", n -> {}));
+            Thread.sleep(50);
+            // the channel is already registered, but its LISTEN is still on its way
+            listener.listen("orders", n -> {});
+            assertEquals(1, server.listeners("orders"));
+            first.join();
+        }
+    }
+
+    private PgNotificationListener newListener() {
+        return newListener(Duration.ofMillis(10));
+    }
+
+    private PgNotificationListener newListener(Duration reconnectDelay) {
+        return new PgNotificationListener(server.poolConfig(), Runnable::run, reconnectDelay);
+    }
+}
@@ -0,0 +1,111 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+class PgPipelineTest {
+
+    @Test
+    void sync_failingQuery_skipsRestAndClosesEvictedStatementsLater() throws Exception {
+        try (var server = new FakePgServer()) {
+            var client = server.connect();
+            client.setStatementCacheSize(1);
+            var pipeline = client.pipeline();
+            var failing = pipeline.add("SELECT * FROM missing");
+            // evicts the failing query's statement, its Close is skipped along with the query
+            var skipped = pipeline.add("SELECT generate_series(1, 2)");
+            pipeline.sync();
+
+            var error = assertThrows(ExecutionException.class, failing::get).getCause();
+            assertEquals("42P01", assertInstanceOf(PgServerException.class, error).getSqlState());
+            assertThrows(ExecutionException.class, skipped::get);
+            assertTrue(client.isReadyForQuery());
+            assertEquals(1, server.preparedStatements());
+
+            // the next pipeline closes the failing query's statement before parsing its own
+            var next = client.pipeline();
+            var rows = next.add("SELECT generate_series(1, 3)");
+            next.sync();
+            assertEquals(3, rows.get().rows().size());
+            assertEquals(1, server.preparedStatements());
+            client.close();
+        }
+    }
+
+    @Test
+    void sync_errorAtImplicitCommit_failsQueriesAndReadsReadyForQuery() throws Exception {
+        try (var server = new FakePgServer()) {
+            var client = server.connect();
+            var pipeline = client.pipeline();
+            var first = pipeline.add("SELECT generate_series(1, 2)");
+            var second = pipeline.add("SELECT generate_series(1, 3)");
+            server.setCommitFailure(true);
+
+            var error = assertThrows(PgServerException.class, pipeline::sync);
+            assertEquals("23505", error.getSqlState());
+            // both queries were rolled back along with the implicit transaction
+            for (var query : List.of(first, second)) {
+                var cause = assertThrows(ExecutionException.class, query::get).getCause();
+                var rolledBack = assertInstanceOf(PgServerException.class, cause);
+                assertEquals("23505", rolledBack.getSqlState());
+            }
+            assertTrue(client.isReadyForQuery());
+
+            // the connection is still in step with the server
+            server.setCommitFailure(false);
+            try (var cursor = client.query("SELECT generate_series(1, 4)")) {
+                int rows = 0;
+                while (cursor.next()) {
+                    rows++;
+                }
+                assertEquals(4, rows);
+            }
+            client.close();
+        }
+    }
+
+    @Test
+    void sync_syncEachQueryAndErrorAtCommit_failsEveryQuery() throws Exception {
+        try (var server = new FakePgServer()) {
+            var client = server.connect();
+            var pipeline = client.pipeline(true);
+            var first = pipeline.add("SELECT generate_series(1, 2)");
+            var second = pipeline.add("SELECT generate_series(1, 3)");
+            server.setCommitFailure(true);
+
+            assertThrows(PgServerException.class, pipeline::sync);
+            // each query's own Sync failed, not the Sync of the query after it
+            for (var query : List.of(first, second)) {
+                var cause = assertThrows(ExecutionException.class, query::get).getCause();
+                var rolledBack = assertInstanceOf(PgServerException.class, cause);
+                assertEquals("23505", rolledBack.getSqlState());
+            }
+            assertTrue(client.isReadyForQuery());
+            client.close();
+        }
+    }
+
+    @Test
+    void sync_syncEachQuery_failingQueryDoesNotAbortOthers() throws Exception {
+        try (var server = new FakePgServer()) {
+            var client = server.connect();
+            var pipeline = client.pipeline(true);
+            var first = pipeline.add("SELECT generate_series(1, 2)");
+            var failing = pipeline.add("SELECT * FROM missing");
+            var last = pipeline.add("SELECT generate_series(1, 4)");
+            pipeline.sync();
+
+            assertEquals(2, first.get().rows().size());
+            assertThrows(ExecutionException.class, failing::get);
+            assertEquals(4, last.get().rows().size());
+            assertTrue(client.isReadyForQuery());
+            client.close();
+        }
+    }
+}
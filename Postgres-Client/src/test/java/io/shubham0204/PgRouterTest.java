@@ -0,0 +1,169 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PgRouterTest {
+
+    private FakePgServer first;
+    private FakePgServer second;
+    private FakePgServer third;
+
+    @BeforeEach
+    void startServers() throws Exception {
+        first = new FakePgServer();
+        second = new FakePgServer();
+        third = new FakePgServer();
+        setInRecovery(first, false);
+        setInRecovery(second, true);
+        setInRecovery(third, true);
+    }
+
+    @AfterEach
+    void stopServers() throws Exception {
+        first.close();
+        second.close();
+        third.close();
+    }
+
+    @Test
+    void withReplica_leastOutstanding_spreadsReadsOverReplicas() {
+        try (var router = router(PgRouter.Balancing.LEAST_OUTSTANDING)) {
+            int[] before = {first.queries(), second.queries(), third.queries()};
+            for (int i = 0; i < 10; i++) {
+                assertEquals(5L, router.withReplica(PgRouterTest::countRows));
+            }
+            router.withPrimary(PgRouterTest::countRows);
+
+            assertEquals(1, first.queries() - before[0]);
+            assertEquals(5, second.queries() - before[1]);
+            assertEquals(5, third.queries() - before[2]);
+        }
+    }
+
+    @Test
+    void withPrimary_primaryDownAndReplicaPromoted_failsOver() throws Exception {
+        try (var router = router(PgRouter.Balancing.LATENCY_WEIGHTED)) {
+            assertEquals(first.port(), router.primary().port());
+            first.close();
+            setInRecovery(second, false);
+            router.checkHealth();
+
+            assertEquals(second.port(), router.primary().port());
+            var replicaPorts = router.replicas().stream().map(PgRouter.Host::port).toList();
+            assertEquals(List.of(third.port()), replicaPorts);
+            int before = second.queries();
+            router.withPrimary(PgRouterTest::countRows);
+            assertEquals(1, second.queries() - before);
+        }
+    }
+
+    @Test
+    void withReplica_noReplicaHealthy_fallsBackToPrimary() throws Exception {
+        try (var router = router(PgRouter.Balancing.LEAST_OUTSTANDING)) {
+            second.close();
+            third.close();
+            router.checkHealth();
+
+            int before = first.queries();
+            assertEquals(5L, router.withReplica(PgRouterTest::countRows));
+            assertEquals(1, first.queries() - before);
+
+            first.close();
+            router.checkHealth();
+            assertThrows(RuntimeException.class, () -> router.withPrimary(PgRouterTest::countRows));
+        }
+    }
+
+    @Test
+    void withPrimary_poolSaturated_keepsPrimaryHealthy() throws Exception {
+        var config =
+                new PgPoolConfig(
+                        "localhost",
+                        first.port(),
+                        FakePgServer.DATABASE,
+                        FakePgServer.USER,
+                        FakePgServer.PASSWORD,
+                        0,
+                        1,
+                        Duration.ofMinutes(10),
+                        Duration.ofSeconds(30),
+                        Duration.ofMillis(100));
+        try (var router = router(config, PgRouter.Balancing.LEAST_OUTSTANDING)) {
+            var holding = new CountDownLatch(1);
+            var done = new CountDownLatch(1);
+            var holder =
+                    Thread.ofVirtual()
+                            .start(
+                                    () ->
+                                            router.withPrimary(
+                                                    client -> {
+                                                        holding.countDown();
+                                                        awaitQuietly(done);
+                                                        return countRows(client);
+                                                    }));
+            holding.await();
+
+            // the checkout times out, but the busy primary stays in place
+            var error =
+                    assertThrows(
+                            RuntimeException.class,
+                            () -> router.withPrimary(PgRouterTest::countRows));
+            assertTrue(error.getMessage().startsWith("Timed out"), error.getMessage());
+            router.checkHealth();
+            assertEquals(first.port(), router.primary().port());
+
+            done.countDown();
+            holder.join();
+            assertEquals(5L, router.withPrimary(PgRouterTest::countRows));
+        }
+    }
+
+    private PgRouter router(PgRouter.Balancing balancing) {
+        return router(first.poolConfig(), balancing);
+    }
+
+    private PgRouter router(PgPoolConfig config, PgRouter.Balancing balancing) {
+        var hosts =
+                List.of(
+                        PgRouter.Host.primary("localhost", first.port()),
+                        PgRouter.Host.replica("localhost", second.port()),
+                        PgRouter.Host.replica("localhost", third.port()));
+        return new PgRouter(config, hosts, balancing, Duration.ofMinutes(10));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void setInRecovery(FakePgServer server, boolean inRecovery) {
+        server.onQuery(
+                "SELECT pg_is_in_recovery()",
+                FakePgServer.Result.rows(
+                        new String[] {"pg_is_in_recovery"},
+                        new int[] {PgTypes.BOOL},
+                        List.<String[]>of(new String[] {inRecovery ? "t" : "f"})));
+    }
+
+    private static long countRows(PgClient client) {
+        long rows = 0;
+        try (var cursor = client.query("SELECT generate_series(1, 5)")) {
+            while (cursor.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
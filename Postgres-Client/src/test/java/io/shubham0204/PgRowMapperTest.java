@@ -0,0 +1,98 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PgRowMapperTest {
+
+    private static final String QUERY = "SELECT id, full_name, score, active FROM users";
+
+    record User(long id, String fullName, Double score, boolean active) {}
+
+    record Named(String fullName, int missing) {}
+
+    record Score(double score) {}
+
+    static class UserBean {
+        long id;
+        private String name;
+        private Double score;
+
+        public void setFullName(String name) {
+            this.name = name.toUpperCase();
+        }
+    }
+
+    private FakePgServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new FakePgServer();
+        server.onQuery(
+                QUERY,
+                FakePgServer.Result.rows(
+                        new String[] {"id", "full_name", "score", "active"},
+                        new int[] {PgTypes.INT8, 25, PgTypes.FLOAT8, PgTypes.BOOL},
+                        List.of(
+                                new String[] {"1", "Alice", "91.5", "t"},
+                                new String[] {"2", "Bob", null, "f"})));
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void queryAs_record_mapsTextAndBinaryRows() {
+        var client = server.connect();
+        // the second execution of the cached statement returns binary fields
+        for (int execution = 0; execution < 2; execution++) {
+            var users = client.queryAs(User.class, QUERY);
+            assertEquals(
+                    List.of(new User(1, "Alice", 91.5, true), new User(2, "Bob", null, false)),
+                    users);
+        }
+        client.close();
+    }
+
+    @Test
+    void queryAs_pojo_usesSettersAndFields() {
+        var client = server.connect();
+        var users = client.queryAs(UserBean.class, QUERY);
+        assertEquals(2, users.size());
+        assertEquals(1, users.get(0).id);
+        assertEquals("ALICE", users.get(0).name);
+        assertEquals(91.5, users.get(0).score);
+        assertNull(users.get(1).score);
+        client.close();
+    }
+
+    @Test
+    void queryAs_nullIntoPrimitive_throws() {
+        var client = server.connect();
+        assertThrows(IllegalStateException.class, () -> client.queryAs(Score.class, QUERY));
+        assertEquals(2, client.queryAs(User.class, QUERY).size());
+        client.close();
+    }
+
+    @Test
+    void of_sameShape_returnsCachedMapper() {
+        var client = server.connect();
+        try (var cursor = client.query(QUERY)) {
+            var mapper = PgRowMapper.of(User.class, cursor.description());
+            assertSame(mapper, PgRowMapper.of(User.class, cursor.description()));
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () -> PgRowMapper.of(Named.class, cursor.description()));
+        }
+        client.close();
+    }
+}
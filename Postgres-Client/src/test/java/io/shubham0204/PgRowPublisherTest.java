@@ -0,0 +1,149 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class PgRowPublisherTest {
+
+    /** Records the signals it receives; requests {@code initialDemand} rows on subscribe. */
+    private static class RecordingSubscriber<T> implements Flow.Subscriber<T> {
+        final List<T> items = new CopyOnWriteArrayList<>();
+        final CompletableFuture<Void> completion = new CompletableFuture<>();
+        final CompletableFuture<Flow.Subscription> subscription = new CompletableFuture<>();
+        private final long initialDemand;
+
+        RecordingSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription.complete(subscription);
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(null);
+        }
+    }
+
+    @Test
+    void subscribe_limitedDemand_readsOnlyRequestedRows() throws Exception {
+        try (var server = new FakePgServer()) {
+            var client = server.connect();
+            var dataRows = new AtomicInteger();
+            client.setMetricsListener(
+                    new PgMetricsListener() {
+                        @Override
+                        public void messageReceived(PgMessageType type, int bytes) {
+                            if (type == PgMessageType.ROW_DATA) {
+                                dataRows.incrementAndGet();
+                            }
+                        }
+                    });
+            var subscriber = new RecordingSubscriber<Integer>(10);
+            client.publish(row -> row.getInt(0), "SELECT generate_series(1, 2500)")
+                    .subscribe(subscriber);
+
+            for (int i = 0; i < 100 && subscriber.items.size() < 10; i++) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+            // the portal was executed with a limit of 10 rows and nothing more was requested
+            assertEquals(10, subscriber.items.size());
+            assertEquals(10, dataRows.get());
+
+            subscriber.subscription.get().request(Long.MAX_VALUE);
+            subscriber.completion.get(10, TimeUnit.SECONDS);
+            assertEquals(IntStream.rangeClosed(1, 2500).boxed().toList(), subscriber.items);
+            assertTrue(client.isReadyForQuery());
+            client.close();
+        }
+    }
+
+    @Test
+    void cancel_fromOnNext_closesPortalAndKeepsConnectionUsable() throws Exception {
+        try (var server = new FakePgServer()) {
+            var client = server.connect();
+            var subscriber =
+                    new RecordingSubscriber<Row>(3) {
+                        @Override
+                        public void onNext(Row item) {
+                            super.onNext(item);
+                            if (items.size() == 3) {
+                                subscription.join().cancel();
+                            }
+                        }
+                    };
+            client.publish("SELECT generate_series(1, 100000)").subscribe(subscriber);
+
+            for (int i = 0; i < 200 && subscriber.items.size() < 3; i++) {
+                Thread.sleep(10);
+            }
+            // the portal is closed by the publisher's thread once onNext returned
+            for (int i = 0; i < 200 && !client.isReadyForQuery(); i++) {
+                Thread.sleep(10);
+            }
+            assertTrue(client.isReadyForQuery());
+            assertEquals(3, subscriber.items.size());
+            assertEquals(3, subscriber.items.get(2).getInt(0));
+            assertFalse(subscriber.completion.isDone());
+            assertTrue(client.ping());
+            client.close();
+        }
+    }
+
+    @Test
+    void subscribe_serverErrorOrSecondSubscriber_signalsOnError() throws Exception {
+        try (var server = new FakePgServer()) {
+            var client = server.connect();
+            var publisher = client.publish("SELECT * FROM missing");
+            var subscriber = new RecordingSubscriber<Row>(1);
+            publisher.subscribe(subscriber);
+            var error =
+                    assertInstanceOf(
+                            ExecutionException.class,
+                            catchThrowable(subscriber.completion)).getCause();
+            assertEquals("42P01", assertInstanceOf(PgServerException.class, error).getSqlState());
+
+            var second = new RecordingSubscriber<Row>(1);
+            publisher.subscribe(second);
+            var secondError = catchThrowable(second.completion).getCause();
+            assertInstanceOf(IllegalStateException.class, secondError);
+            assertTrue(client.ping());
+            client.close();
+        }
+    }
+
+    private static Throwable catchThrowable(CompletableFuture<Void> completion) {
+        try {
+            completion.get(10, TimeUnit.SECONDS);
+            return null;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+}
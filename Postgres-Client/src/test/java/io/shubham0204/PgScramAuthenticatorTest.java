@@ -0,0 +1,127 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class PgScramAuthenticatorTest {
+
+    // test vectors from RFC 7677, section 3
+    private static final String CLIENT_NONCE = "rOprNGfwEbeRWgbNEkqO";
+    private static final String SERVER_FIRST =
+            "r=rOprNGfwEbeRWgbNEkqO%hvYDpWUa2RaTCAfuxFIlj)hNlF$k0,"
+                    + "s=W22ZaJ0SNY7soEsUEjb6gQ==,i=4096";
+    private static final String CLIENT_FINAL =
+            "c=biws,r=rOprNGfwEbeRWgbNEkqO%hvYDpWUa2RaTCAfuxFIlj)hNlF$k0,"
+                    + "p=dHzbZapWIk4jUhN+Ute9ytag9zjfMHgsqmmiz7AndVQ=";
+    private static final String SERVER_FINAL = "v=6rriTRBi23WpRR/wtup+mMhUZUn/dB5nLTJRsjl95G4=";
+
+    private static ByteBuffer bytes(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ByteBuffer mechanisms() {
+        return bytes("SCRAM-SHA-256-PLUS\0SCRAM-SHA-256\0\0");
+    }
+
+    @Test
+    void exchange_rfc7677Vectors_match() {
+        var scram = new PgScramAuthenticator("user", "pencil", CLIENT_NONCE);
+
+        var first = scram.clientFirstMessage(mechanisms()).payload();
+        assertEquals("SCRAM-SHA-256", CStringUtils.getCString(first));
+        byte[] clientFirst = new byte[first.getInt()];
+        first.get(clientFirst);
+        assertEquals(
+                "n,,n=user,r=" + CLIENT_NONCE, new String(clientFirst, StandardCharsets.UTF_8));
+
+        var clientFinal = scram.clientFinalMessage(bytes(SERVER_FIRST));
+        assertEquals(CLIENT_FINAL, new String(clientFinal.data(), StandardCharsets.UTF_8));
+        scram.verifyServerFinal(bytes(SERVER_FINAL));
+    }
+
+    @Test
+    void exchange_sameCredentials_derivesKeysOnce() {
+        var first = new PgScramAuthenticator("cached_user", "pencil", CLIENT_NONCE);
+        first.clientFirstMessage(mechanisms());
+        var proof = first.clientFinalMessage(bytes(SERVER_FIRST)).data();
+        long derivations = PgScramAuthenticator.derivations();
+
+        var second = new PgScramAuthenticator("cached_user", "pencil", CLIENT_NONCE);
+        second.clientFirstMessage(mechanisms());
+        var secondProof = second.clientFinalMessage(bytes(SERVER_FIRST)).data();
+        assertArrayEquals(proof, secondProof);
+        assertEquals(derivations, PgScramAuthenticator.derivations());
+    }
+
+    @Test
+    void verifyServerFinal_wrongSignature_throws() {
+        var scram = new PgScramAuthenticator("user", "not-pencil", CLIENT_NONCE);
+        scram.clientFirstMessage(mechanisms());
+        scram.clientFinalMessage(bytes(SERVER_FIRST));
+        assertThrows(RuntimeException.class, () -> scram.verifyServerFinal(bytes(SERVER_FINAL)));
+    }
+
+    @Test
+    void clientFinalMessage_foreignNonce_throws() {
+        var scram = new PgScramAuthenticator("user", "pencil", "other-nonce");
+        scram.clientFirstMessage(mechanisms());
+        assertThrows(RuntimeException.class, () -> scram.clientFinalMessage(bytes(SERVER_FIRST)));
+    }
+
+    @Test
+    void checkServerVerified_noServerFinal_throws() {
+        var scram = new PgScramAuthenticator("user", "pencil", CLIENT_NONCE);
+        scram.clientFirstMessage(mechanisms());
+        scram.clientFinalMessage(bytes(SERVER_FIRST));
+        assertThrows(RuntimeException.class, scram::checkServerVerified);
+        scram.verifyServerFinal(bytes(SERVER_FINAL));
+        scram.checkServerVerified();
+    }
+
+    @Test
+    void authenticate_scramServer_verifiesSignatureInBothClients() throws Exception {
+        try (var server = new FakePgServer().setScramAuthentication(true);
+                var loop = new PgEventLoop()) {
+            var client = server.connect();
+            assertTrue(client.ping());
+            client.close();
+            var asyncClient = connectAsync(loop, server).get(10, TimeUnit.SECONDS);
+            asyncClient.close();
+        }
+    }
+
+    @Test
+    void authenticate_authenticationOkWithoutServerFinal_isRejected() throws Exception {
+        try (var server = new FakePgServer().setScramAuthentication(false);
+                var loop = new PgEventLoop()) {
+            var error = assertThrows(RuntimeException.class, server::connect);
+            assertTrue(error.getMessage().contains("server signature"), error.getMessage());
+
+            var asyncError =
+                    assertThrows(
+                            ExecutionException.class,
+                            () -> connectAsync(loop, server).get(10, TimeUnit.SECONDS));
+            assertTrue(asyncError.getCause().getMessage().contains("server signature"));
+        }
+    }
+
+    private static CompletableFuture<PgAsyncClient> connectAsync(
+            PgEventLoop loop, FakePgServer server) {
+        return PgAsyncClient.connect(
+                loop,
+                "localhost",
+                server.port(),
+                FakePgServer.DATABASE,
+                FakePgServer.USER,
+                FakePgServer.PASSWORD);
+    }
+}
@@ -0,0 +1,172 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PgShardedExecutorTest {
+
+    private static final String QUERY = "SELECT id FROM items ORDER BY id";
+    private static final int ROWS_PER_SHARD = 1000;
+
+    private final List<FakePgServer> servers = new ArrayList<>();
+
+    @BeforeEach
+    void startServers() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            int shard = i;
+            var server = new FakePgServer();
+            // shard i holds the ids congruent to i modulo 3, sorted
+            server.onQuery(
+                    QUERY,
+                    new FakePgServer.Result(
+                            new String[] {"id"},
+                            new int[] {PgTypes.INT8},
+                            ROWS_PER_SHARD,
+                            (row, column) -> Long.toString(row * 3 + shard)));
+            servers.add(server);
+        }
+    }
+
+    @AfterEach
+    void stopServers() throws Exception {
+        for (FakePgServer server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    void query_withOrder_mergesSortedShardResults() {
+        try (var executor = executor(Duration.ofSeconds(10))) {
+            var ids = new ArrayList<Long>();
+            int[] rowsPerShard = new int[3];
+            var order = Comparator.<Row>comparingLong(row -> row.getLong(0));
+            try (var cursor = executor.query(order, QUERY)) {
+                while (cursor.next()) {
+                    ids.add(cursor.row().getLong(0));
+                    rowsPerShard[executor.shards().indexOf(cursor.shard())]++;
+                }
+            }
+
+            assertEquals(3 * ROWS_PER_SHARD, ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals(i, ids.get(i));
+            }
+            for (int rows : rowsPerShard) {
+                assertEquals(ROWS_PER_SHARD, rows);
+            }
+        }
+    }
+
+    @Test
+    void query_unordered_returnsRowsOfAllShards() {
+        try (var executor = executor(Duration.ofSeconds(10))) {
+            long sum = 0;
+            int rows = 0;
+            try (var cursor = executor.query(QUERY)) {
+                while (cursor.next()) {
+                    sum += cursor.row().getLong(0);
+                    rows++;
+                }
+                assertTrue(cursor.failedShards().isEmpty());
+            }
+
+            long n = 3L * ROWS_PER_SHARD;
+            assertEquals(n, rows);
+            assertEquals(n * (n - 1) / 2, sum);
+        }
+    }
+
+    @Test
+    void query_shardMissesDeadline_failsOrIsLeftOut() throws Exception {
+        servers.get(2).setExecutionTime(Duration.ofSeconds(10));
+        try (var executor = executor(Duration.ofMillis(300))) {
+            long start = System.nanoTime();
+            assertThrows(
+                    RuntimeException.class,
+                    () -> {
+                        try (var cursor = executor.query(QUERY)) {
+                            while (cursor.next()) {
+                                // drain
+                            }
+                        }
+                    });
+
+            executor.setPartialResults(true);
+            int rows = 0;
+            try (var cursor = executor.query(QUERY)) {
+                while (cursor.next()) {
+                    rows++;
+                }
+                assertEquals(List.of(executor.shards().get(2)), cursor.failedShards());
+            }
+            assertEquals(2 * ROWS_PER_SHARD, rows);
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+            // one CancelRequest per query, sent once the merge gave up on the shard
+            for (int i = 0; i < 100 && servers.get(2).cancelRequests() < 2; i++) {
+                Thread.sleep(20);
+            }
+            assertTrue(servers.get(2).cancelRequests() >= 2);
+        }
+    }
+
+    @Test
+    void query_slowConsumer_doesNotCountAgainstShardDeadline() throws Exception {
+        try (var executor = executor(Duration.ofMillis(300))) {
+            long start = System.nanoTime();
+            int rows = 0;
+            try (var cursor = executor.query(QUERY)) {
+                while (cursor.next()) {
+                    if (++rows % 100 == 0) {
+                        Thread.sleep(50);
+                    }
+                }
+            }
+
+            assertEquals(3 * ROWS_PER_SHARD, rows);
+            assertTrue(System.nanoTime() - start > Duration.ofMillis(600).toNanos());
+            for (FakePgServer server : servers) {
+                assertEquals(0, server.cancelRequests());
+            }
+        }
+    }
+
+    @Test
+    void withShard_routesKeyToItsShard() {
+        try (var executor = executor(Duration.ofSeconds(10))) {
+            int[] before = servers.stream().mapToInt(FakePgServer::queries).toArray();
+            for (long key = 0; key < 6; key++) {
+                // the first id of each shard is its index
+                int shard = (int) (long) executor.withShard(key, PgShardedExecutorTest::firstId);
+                assertEquals(executor.shardFor(key), shard);
+                assertEquals(Math.floorMod(Long.hashCode(key), 3), shard);
+            }
+            for (int i = 0; i < 3; i++) {
+                assertEquals(2, servers.get(i).queries() - before[i]);
+            }
+        }
+    }
+
+    private PgShardedExecutor executor(Duration shardTimeout) {
+        var shards =
+                servers.stream()
+                        .map(server -> new PgShardedExecutor.Shard("localhost", server.port()))
+                        .toList();
+        return new PgShardedExecutor(servers.get(0).poolConfig(), shards, shardTimeout);
+    }
+
+    private static long firstId(PgClient client) {
+        try (var cursor = client.query(QUERY)) {
+            assertTrue(cursor.next());
+            return cursor.row().getLong(0);
+        }
+    }
+}
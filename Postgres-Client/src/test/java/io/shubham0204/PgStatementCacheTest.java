@@ -0,0 +1,62 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PgStatementCacheTest {
+
+    @Test
+    void create_beyondCapacity_evictsLeastRecentlyUsed() {
+        var cache = new PgStatementCache(2);
+        var first = cache.create("SELECT 1");
+        cache.create("SELECT 2");
+        cache.get("SELECT 1");
+        var third = cache.create("SELECT 3");
+
+        assertNotNull(cache.get("SELECT 1"));
+        assertNull(cache.get("SELECT 2"));
+        assertEquals(List.of("s1"), cache.drainEvicted());
+        assertEquals(List.of(), cache.drainEvicted());
+        assertEquals("s0", first.name);
+        assertEquals("s2", third.name);
+    }
+
+    @Test
+    void create_zeroCapacity_usesUnnamedStatement() {
+        var cache = new PgStatementCache(0);
+        var statement = cache.create("SELECT 1");
+
+        assertEquals("", statement.name);
+        assertNull(cache.get("SELECT 1"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void setCapacity_smaller_evictsStatements() {
+        var cache = new PgStatementCache(3);
+        cache.create("SELECT 1");
+        cache.create("SELECT 2");
+        cache.create("SELECT 3");
+        cache.setCapacity(1);
+
+        assertEquals(1, cache.size());
+        assertEquals(List.of("s0", "s1"), cache.drainEvicted());
+    }
+
+    @Test
+    void remove_parsedStatement_queuesClose() {
+        var cache = new PgStatementCache(3);
+        cache.create("SELECT 1");
+        cache.create("SELECT 2");
+        cache.remove("SELECT 1", true);
+        cache.remove("SELECT 2", false);
+
+        assertEquals(0, cache.size());
+        // only the statement which exists on the server needs a Close
+        assertEquals(List.of("s0"), cache.drainEvicted());
+    }
+}
@@ -0,0 +1,161 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import org.junit.jupiter.api.Test;
+
+class PgTransportTest {
+
+    /** Serves the given bytes at most {@code chunkSize} bytes per read, recording written bytes. */
+    static class ChunkedChannel implements ByteChannel {
+        private final ByteBuffer input;
+        private final int chunkSize;
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        int writeCount = 0;
+
+        ChunkedChannel(byte[] input, int chunkSize) {
+            this.input = ByteBuffer.wrap(input);
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!input.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(Math.min(chunkSize, dst.remaining()), input.remaining());
+            dst.put(dst.position(), input, input.position(), n);
+            dst.position(dst.position() + n);
+            input.position(input.position() + n);
+            return n;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            writeCount++;
+            int n = src.remaining();
+            while (src.hasRemaining()) {
+                written.write(src.get());
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private static byte[] message(char type, int payloadLength) {
+        var buffer = ByteBuffer.allocate(5 + payloadLength);
+        buffer.put((byte) type);
+        buffer.putInt(4 + payloadLength);
+        for (int i = 0; i < payloadLength; i++) {
+            buffer.put((byte) i);
+        }
+        return buffer.array();
+    }
+
+    @Test
+    void read_messagesSplitAcrossReads_works() {
+        var stream = new ByteArrayOutputStream();
+        stream.writeBytes(message('Z', 1));
+        stream.writeBytes(message('D', 300));
+        stream.writeBytes(message('Z', 1));
+        var transport = new PgTransport(new ChunkedChannel(stream.toByteArray(), 7));
+
+        assertEquals(PgMessageType.READY_FOR_QUERY, transport.read().type());
+        var row = transport.read();
+        assertEquals(PgMessageType.ROW_DATA, row.type());
+        assertEquals(300, row.length());
+        assertEquals((byte) 299, row.payload().get(299));
+        assertEquals(PgMessageType.READY_FOR_QUERY, transport.read().type());
+        transport.close();
+    }
+
+    @Test
+    void read_messageLargerThanBuffer_growsBuffer() {
+        int payloadLength = PgTransport.DEFAULT_BUFFER_SIZE * 3;
+        var transport = new PgTransport(new ChunkedChannel(message('D', payloadLength), 4096));
+
+        var row = transport.read();
+        assertEquals(payloadLength, row.length());
+        assertEquals((byte) (payloadLength - 1), row.payload().get(payloadLength - 1));
+        transport.close();
+    }
+
+    @Test
+    void read_closedConnection_throws() {
+        var transport = new PgTransport(new ChunkedChannel(new byte[] {'Z', 0, 0}, 16));
+        assertThrowsExactly(RuntimeException.class, transport::read);
+        transport.close();
+    }
+
+    @Test
+    void write_message_encodesHeaderAndPayload() {
+        var channel = new ChunkedChannel(new byte[0], 16);
+        var transport = new PgTransport(channel);
+        transport.write(new PgMessage(PgMessageType.QUERY, new byte[] {'x', 0}));
+
+        var written = ByteBuffer.wrap(channel.written.toByteArray());
+        assertEquals((byte) 'Q', written.get());
+        assertEquals(6, written.getInt());
+        assertEquals((byte) 'x', written.get());
+        assertEquals((byte) 0, written.get());
+        transport.close();
+    }
+
+    @Test
+    void queue_severalMessages_sentInOneWriteOnFlush() {
+        var channel = new ChunkedChannel(new byte[0], 1);
+        var transport = new PgTransport(channel);
+
+        transport.queue(PgFrontendMessages.parse("s0", "SELECT 1"));
+        transport.queue(PgFrontendMessages.execute("", 0));
+        transport.queue(PgFrontendMessages.sync());
+        assertEquals(0, channel.writeCount);
+        transport.flush();
+
+        assertEquals(1, channel.writeCount);
+        var written = ByteBuffer.wrap(channel.written.toByteArray());
+        assertEquals('P', written.get(0));
+        written.position(1 + written.getInt(1));
+        assertEquals('E', written.get());
+        written.position(written.position() + written.getInt());
+        assertEquals('S', written.get());
+        assertEquals(4, written.getInt());
+        assertEquals(false, written.hasRemaining());
+        transport.close();
+    }
+
+    @Test
+    void queue_largePayload_keepsMessageOrder() {
+        var channel = new ChunkedChannel(new byte[0], 1);
+        var transport = new PgTransport(channel);
+        var payload =
+                ByteBuffer.wrap(message('x', PgTransport.GATHER_THRESHOLD)).position(5).slice();
+
+        transport.queue(PgFrontendMessages.sync());
+        transport.queue(new PgMessage(PgMessageType.COPY_DATA, payload));
+        transport.queue(PgFrontendMessages.flush());
+        transport.flush();
+
+        var written = ByteBuffer.wrap(channel.written.toByteArray());
+        assertEquals(5 + 5 + PgTransport.GATHER_THRESHOLD + 5, written.remaining());
+        assertEquals('S', written.get(0));
+        assertEquals('d', written.get(5));
+        assertEquals(4 + PgTransport.GATHER_THRESHOLD, written.getInt(6));
+        assertEquals(
+                (byte) (PgTransport.GATHER_THRESHOLD - 1),
+                written.get(10 + PgTransport.GATHER_THRESHOLD - 1));
+        assertEquals('H', written.get(10 + PgTransport.GATHER_THRESHOLD));
+        transport.close();
+    }
+}
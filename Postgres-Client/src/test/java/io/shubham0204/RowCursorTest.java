@@ -0,0 +1,206 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RowCursorTest {
+
+    private static byte[] message(char type, ByteBuffer payload) {
+        var buffer = ByteBuffer.allocate(5 + payload.remaining());
+        buffer.put((byte) type);
+        buffer.putInt(4 + payload.remaining());
+        buffer.put(payload);
+        return buffer.array();
+    }
+
+    private static byte[] message(char type) {
+        return message(type, ByteBuffer.allocate(0));
+    }
+
+    private static byte[] rowDescription(String name) {
+        var payload = ByteBuffer.allocate(64);
+        payload.putShort((short) 1);
+        CStringUtils.putCString(payload, name);
+        payload.putInt(0).putShort((short) 0).putInt(PgTypes.INT4).putShort((short) 4);
+        payload.putInt(-1).putShort(PgFrontendMessages.TEXT_FORMAT);
+        return message('T', payload.flip());
+    }
+
+    private static byte[] textRowDescription(String... names) {
+        var payload = ByteBuffer.allocate(256);
+        payload.putShort((short) names.length);
+        for (String name : names) {
+            CStringUtils.putCString(payload, name);
+            payload.putInt(0).putShort((short) 0).putInt(25).putShort((short) -1);
+            payload.putInt(-1).putShort(PgFrontendMessages.TEXT_FORMAT);
+        }
+        return message('T', payload.flip());
+    }
+
+    private static byte[] textDataRow(String... values) {
+        int length = 2 + Arrays.stream(values).mapToInt(value -> 4 + value.length()).sum();
+        var payload = ByteBuffer.allocate(length);
+        payload.putShort((short) values.length);
+        for (String value : values) {
+            payload.putInt(value.length()).put(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return message('D', payload.flip());
+    }
+
+    /** A result of three rows, the first two with a 100,000-byte document in the middle. */
+    private static byte[] largeRowResult() {
+        var server = new ByteArrayOutputStream();
+        server.writeBytes(message('1'));
+        server.writeBytes(message('2'));
+        server.writeBytes(textRowDescription("id", "doc", "tag"));
+        server.writeBytes(textDataRow("1", "a".repeat(100_000), "first"));
+        server.writeBytes(textDataRow("2", "b".repeat(100_000), "second"));
+        server.writeBytes(textDataRow("3", "c", "third"));
+        server.writeBytes(cString('C', "SELECT 3"));
+        server.writeBytes(message('Z', ByteBuffer.wrap(new byte[] {'I'})));
+        return server.toByteArray();
+    }
+
+    private static byte[] cString(char type, String value) {
+        var payload = ByteBuffer.allocate(value.length() + 1);
+        CStringUtils.putCString(payload, value);
+        return message(type, payload.flip());
+    }
+
+    /** Returns the type bytes of the messages written by the client, skipping their contents. */
+    private static List<Character> messageTypes(byte[] written) {
+        var buffer = ByteBuffer.wrap(written);
+        var types = new ArrayList<Character>();
+        while (buffer.hasRemaining()) {
+            types.add((char) buffer.get());
+            int length = buffer.getInt();
+            buffer.position(buffer.position() + length - 4);
+        }
+        return types;
+    }
+
+    private static ByteArrayOutputStream suspendedResult() {
+        var server = new ByteArrayOutputStream();
+        server.writeBytes(message('1'));
+        server.writeBytes(message('2'));
+        server.writeBytes(rowDescription("id"));
+        server.writeBytes(message('D', RowTest.dataRow("1")));
+        server.writeBytes(message('D', RowTest.dataRow("2")));
+        server.writeBytes(message('s'));
+        return server;
+    }
+
+    @Test
+    void next_withFetchSize_executesPortalPerBatch() {
+        var server = suspendedResult();
+        server.writeBytes(message('D', RowTest.dataRow("3")));
+        server.writeBytes(cString('C', "SELECT 3"));
+        server.writeBytes(message('Z', ByteBuffer.wrap(new byte[] {'I'})));
+        var channel = new PgTransportTest.ChunkedChannel(server.toByteArray(), 16);
+        var client = new PgClient(new PgTransport(channel));
+        client.setFetchSize(2);
+
+        var ids = new ArrayList<Integer>();
+        try (var cursor = client.query("SELECT id FROM t")) {
+            assertEquals(2, cursor.getFetchSize());
+            while (cursor.next()) {
+                ids.add(cursor.row().getInt(0));
+            }
+            assertEquals("SELECT 3", cursor.commandTag());
+        }
+
+        assertEquals(List.of(1, 2, 3), ids);
+        assertTrue(client.isReadyForQuery());
+        assertEquals(
+                List.of('P', 'B', 'D', 'E', 'H', 'E', 'H', 'S'),
+                messageTypes(channel.written.toByteArray()));
+        client.close();
+    }
+
+    @Test
+    void close_withSuspendedPortal_syncsWithoutFetchingMore() {
+        var server = suspendedResult();
+        server.writeBytes(message('Z', ByteBuffer.wrap(new byte[] {'I'})));
+        var channel = new PgTransportTest.ChunkedChannel(server.toByteArray(), 16);
+        var client = new PgClient(new PgTransport(channel));
+        client.setFetchSize(2);
+
+        try (var cursor = client.query("SELECT id FROM t")) {
+            assertTrue(cursor.next());
+            assertEquals(1, cursor.row().getInt(0));
+        }
+
+        assertTrue(client.isReadyForQuery());
+        assertEquals(
+                List.of('P', 'B', 'D', 'E', 'H', 'S'), messageTypes(channel.written.toByteArray()));
+        client.close();
+    }
+
+    @Test
+    void next_rowAboveStreamingThreshold_readsLargeFieldFromConnection() throws Exception {
+        var channel = new PgTransportTest.ChunkedChannel(largeRowResult(), 4096);
+        var client = new PgClient(new PgTransport(channel));
+        client.setStreamingThreshold(1000);
+
+        try (var cursor = client.query("SELECT id, doc, tag FROM docs")) {
+            assertTrue(cursor.next());
+            var row = cursor.row();
+            assertEquals(1, row.getInt(0));
+            assertThrows(IllegalStateException.class, () -> row.getString(1));
+            assertEquals("a".repeat(100_000), new String(row.getInputStream(1).readAllBytes()));
+            assertEquals("first", row.getString("tag"));
+
+            // skipping the large field by accessing a later column
+            assertTrue(cursor.next());
+            assertEquals("second", row.getString(2));
+            assertThrows(IllegalStateException.class, () -> row.getInputStream(1));
+            assertEquals(2, row.getInt(0));
+
+            assertTrue(cursor.next());
+            assertEquals("c", row.getString(1));
+            assertEquals(3, row.getInt(0));
+            assertFalse(cursor.next());
+            assertEquals("SELECT 3", cursor.commandTag());
+        }
+        assertTrue(client.isReadyForQuery());
+        client.close();
+    }
+
+    @Test
+    void next_rowAboveThresholdWithSpillDirectory_mapsRowFromFile(@TempDir Path directory)
+            throws Exception {
+        var channel = new PgTransportTest.ChunkedChannel(largeRowResult(), 4096);
+        var client = new PgClient(new PgTransport(channel));
+        client.setStreamingThreshold(1000);
+        client.setSpillDirectory(directory);
+
+        var tags = new ArrayList<String>();
+        try (var cursor = client.query("SELECT id, doc, tag FROM docs")) {
+            while (cursor.next()) {
+                var row = cursor.row();
+                tags.add(row.getString(2));
+                assertEquals(row.getInt(0) == 3 ? 1 : 100_000, row.getString(1).length());
+            }
+        }
+
+        assertEquals(List.of("first", "second", "third"), tags);
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        assertTrue(client.isReadyForQuery());
+        client.close();
+    }
+}
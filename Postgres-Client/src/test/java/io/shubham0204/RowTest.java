@@ -0,0 +1,190 @@
+package io.shubham0204;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class RowTest {
+
+    static RowDescription description(String... names) {
+        int[] typeOids = new int[names.length];
+        Arrays.fill(typeOids, 25); // text
+        return description(names, typeOids, (short) 0);
+    }
+
+    static RowDescription description(String[] names, int[] typeOids, short format) {
+        var buffer = ByteBuffer.allocate(512);
+        buffer.putShort((short) names.length);
+        for (int i = 0; i < names.length; i++) {
+            CStringUtils.putCString(buffer, names[i]);
+            buffer.putInt(0); // table OID
+            buffer.putShort((short) 0); // column attribute number
+            buffer.putInt(typeOids[i]);
+            buffer.putShort((short) -1); // type size
+            buffer.putInt(-1); // type modifier
+            buffer.putShort(format);
+        }
+        return RowDescription.parse(buffer.flip());
+    }
+
+    static ByteBuffer binaryDataRow(byte[]... values) {
+        var buffer = ByteBuffer.allocate(512);
+        buffer.putShort((short) values.length);
+        for (byte[] value : values) {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+        return buffer.flip();
+    }
+
+    static ByteBuffer dataRow(String... values) {
+        var buffer = ByteBuffer.allocate(256);
+        buffer.putShort((short) values.length);
+        for (String value : values) {
+            if (value == null) {
+                buffer.putInt(-1);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Test
+    void accessors_textFormat_work() {
+        var row = new Row();
+        row.reset(
+                description("id", "name", "score", "active", "missing"),
+                dataRow("-42", "Alice", "1.5", "t", null));
+
+        assertEquals(5, row.size());
+        assertEquals(-42, row.getInt(0));
+        assertEquals(-42L, row.getLong("id"));
+        assertEquals("Alice", row.getString("name"));
+        assertEquals(1.5, row.getDouble(2));
+        assertTrue(row.getBoolean("active"));
+        assertTrue(row.isNull(4));
+        assertFalse(row.isNull(0));
+        assertNull(row.getString("missing"));
+        assertThrows(IllegalStateException.class, () -> row.getInt(4));
+        assertThrows(NumberFormatException.class, () -> row.getInt(1));
+        assertThrows(IllegalArgumentException.class, () -> row.getString("unknown"));
+    }
+
+    @Test
+    void getLong_extremeValues_work() {
+        var row = new Row();
+        row.reset(
+                description("min", "max"),
+                dataRow("-9223372036854775808", "9223372036854775807"));
+
+        assertEquals(Long.MIN_VALUE, row.getLong(0));
+        assertEquals(Long.MAX_VALUE, row.getLong(1));
+        assertThrows(ArithmeticException.class, () -> row.getInt(1));
+    }
+
+    @Test
+    void copy_outlivesReset() {
+        var row = new Row();
+        var description = description("name");
+        row.reset(description, dataRow("first"));
+        var copy = row.copy();
+        row.reset(description, dataRow("second"));
+
+        assertEquals("first", copy.getString(0));
+        assertEquals("second", row.getString(0));
+    }
+
+    @Test
+    void accessors_binaryFormat_work() {
+        var uuid = UUID.randomUUID();
+        var row = new Row();
+        row.reset(
+                description(
+                        new String[] {"i2", "i4", "i8", "f4", "f8", "b", "ts", "id", "data"},
+                        new int[] {
+                            PgTypes.INT2,
+                            PgTypes.INT4,
+                            PgTypes.INT8,
+                            PgTypes.FLOAT4,
+                            PgTypes.FLOAT8,
+                            PgTypes.BOOL,
+                            PgTypes.TIMESTAMP,
+                            PgTypes.UUID,
+                            PgTypes.BYTEA
+                        },
+                        PgFrontendMessages.BINARY_FORMAT),
+                binaryDataRow(
+                        ByteBuffer.allocate(2).putShort((short) -7).array(),
+                        ByteBuffer.allocate(4).putInt(123456).array(),
+                        ByteBuffer.allocate(8).putLong(Long.MIN_VALUE).array(),
+                        ByteBuffer.allocate(4).putFloat(2.5f).array(),
+                        ByteBuffer.allocate(8).putDouble(-0.125).array(),
+                        new byte[] {1},
+                        ByteBuffer.allocate(8).putLong(86_400_000_000L + 1).array(),
+                        ByteBuffer.allocate(16)
+                                .putLong(uuid.getMostSignificantBits())
+                                .putLong(uuid.getLeastSignificantBits())
+                                .array(),
+                        new byte[] {0x0a, (byte) 0xff}));
+
+        assertEquals(-7, row.getInt("i2"));
+        assertEquals(123456, row.getInt("i4"));
+        assertEquals(Long.MIN_VALUE, row.getLong("i8"));
+        assertEquals(2.5, row.getDouble("f4"));
+        assertEquals(-0.125, row.getDouble("f8"));
+        assertEquals(123456.0, row.getDouble("i4"));
+        assertTrue(row.getBoolean("b"));
+        assertEquals("t", row.getString("b"));
+        assertEquals(LocalDateTime.of(2000, 1, 2, 0, 0, 0, 1000), row.getTimestamp("ts"));
+        assertEquals(uuid, row.getUUID("id"));
+        assertArrayEquals(new byte[] {0x0a, (byte) 0xff}, row.getBytes("data"));
+        assertEquals("\\x0aff", row.getString("data"));
+        assertEquals("123456", row.getString("i4"));
+    }
+
+    @Test
+    void accessors_textTemporalAndBytea_work() {
+        var row = new Row();
+        row.reset(
+                description(
+                        new String[] {"ts", "tstz", "data"},
+                        new int[] {PgTypes.TIMESTAMP, PgTypes.TIMESTAMPTZ, PgTypes.BYTEA},
+                        PgFrontendMessages.TEXT_FORMAT),
+                dataRow("2024-03-01 12:30:45.5", "2024-03-01 12:30:45+05:30", "\\x0aff"));
+
+        assertEquals(LocalDateTime.of(2024, 3, 1, 12, 30, 45, 500_000_000), row.getTimestamp(0));
+        assertEquals(LocalDateTime.of(2024, 3, 1, 7, 0, 45), row.getTimestamp(1));
+        assertArrayEquals(new byte[] {0x0a, (byte) 0xff}, row.getBytes(2));
+    }
+
+    @Test
+    void getInputStream_textBytea_decodesHexWhileReading() throws Exception {
+        var row = new Row();
+        row.reset(
+                description(
+                        new String[] {"data", "name"},
+                        new int[] {PgTypes.BYTEA, 25},
+                        PgFrontendMessages.TEXT_FORMAT),
+                dataRow("\\x0aff10", "Alice"));
+
+        try (var stream = row.getInputStream(0)) {
+            assertArrayEquals(new byte[] {0x0a, (byte) 0xff, 0x10}, stream.readAllBytes());
+        }
+        var buffer = ByteBuffer.allocate(8);
+        assertEquals(5, row.getChannel("name").read(buffer));
+        assertEquals("Alice", new String(buffer.array(), 0, 5, StandardCharsets.UTF_8));
+    }
+}